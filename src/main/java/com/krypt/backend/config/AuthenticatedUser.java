@@ -0,0 +1,34 @@
+package com.krypt.backend.config;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.List;
+
+// Principal built from the JWT claims alone, so authenticated requests never need to load the user
+public record AuthenticatedUser(Long id, String email, String role, List<String> scopes) implements Principal {
+
+    public static AuthenticatedUser from(JwtClaims claims) {
+        return new AuthenticatedUser(claims.userId(), claims.subject(), claims.role(), claims.scopes());
+    }
+
+    public List<GrantedAuthority> authorities() {
+        List<GrantedAuthority> authorities = new ArrayList<>(scopes.size() + 1);
+        if (role != null) {
+            authorities.add(new SimpleGrantedAuthority("ROLE_" + role));
+        }
+        scopes.forEach(scope -> authorities.add(new SimpleGrantedAuthority("SCOPE_" + scope)));
+        return authorities;
+    }
+
+    public boolean hasScope(String scope) {
+        return scopes.contains(scope);
+    }
+
+    @Override
+    public String getName() {
+        return email;
+    }
+}
@@ -6,8 +6,6 @@ import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
@@ -17,45 +15,40 @@ import java.io.IOException;
 
 @Component
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
+    private static final String STREAM_PATH = "/api/notes/stream";
+
     private final JwtUtils jwtUtils;
-    private final UserDetailsService userDetailsService;
+    private final TokenRevocationStore tokenRevocationStore;
     private static final Logger logger = LoggerFactory.getLogger(JwtAuthenticationFilter.class);
 
-    public JwtAuthenticationFilter(final JwtUtils jwtUtils, final UserDetailsService userDetailsService) {
+    public JwtAuthenticationFilter(final JwtUtils jwtUtils, final TokenRevocationStore tokenRevocationStore) {
         this.jwtUtils = jwtUtils;
-        this.userDetailsService = userDetailsService;
+        this.tokenRevocationStore = tokenRevocationStore;
     }
 
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
-        String header = request.getHeader("Authorization");
-
-        if (header != null && header.startsWith("Bearer ")) {
-            String token = header.substring(7);
+        String token = resolveToken(request);
 
+        if (token != null) {
             try {
-                String emailFromToken = jwtUtils.extractUsername(token);
-                logger.info("JWT Token receive for email : {}", emailFromToken);
-
-                if (emailFromToken != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-                    UserDetails userDetails = userDetailsService.loadUserByUsername(emailFromToken);
-                    String userNameFromToken = jwtUtils.extractUsername(token);
-                    logger.info("JWT Token receive for username : {}", userNameFromToken);
-
-                    boolean valid = jwtUtils.validateToken(token, userNameFromToken);
-                    logger.info("JWT Token is valid ? {}", valid);
+                JwtClaims claims = jwtUtils.verify(token);
+                String emailFromToken = claims.subject();
+                logger.debug("JWT Token receive for email : {}", emailFromToken);
 
-                    if (valid) {
-                        UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
-                        authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
-                        SecurityContextHolder.getContext().setAuthentication(authentication);
-                        logger.info("Authentication successful for : {}", emailFromToken);
-                    } else {
-                        logger.warn("Authentication failed for user : {}", emailFromToken);
-                    }
+                if (tokenRevocationStore.isRevoked(claims)) {
+                    logger.debug("Revoked JWT Token rejected for : {}", emailFromToken);
+                } else if (emailFromToken != null && claims.userId() != null && SecurityContextHolder.getContext().getAuthentication() == null) {
+                    AuthenticatedUser principal = AuthenticatedUser.from(claims);
+                    UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(principal, null, principal.authorities());
+                    authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+                    SecurityContextHolder.getContext().setAuthentication(authentication);
+                    logger.debug("Authentication successful for : {}", emailFromToken);
+                } else if (claims.userId() == null) {
+                    logger.debug("JWT Token without user id rejected for : {}", emailFromToken);
                 }
             } catch (Exception e) {
-                logger.error("Error during the JWT token validation process : {}", e.getMessage());
+                logger.warn("Error during the JWT token validation process : {}", e.getMessage());
             }
         } else {
             logger.debug("Header empty or compromise");
@@ -63,4 +56,16 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
         filterChain.doFilter(request, response);
     }
+
+    private String resolveToken(HttpServletRequest request) {
+        String header = request.getHeader("Authorization");
+        if (header != null && header.startsWith("Bearer ")) {
+            return header.substring(7);
+        }
+        // Browsers' EventSource cannot set headers, only the note stream accepts the token in the query string
+        if (request.getRequestURI().equals(request.getContextPath() + STREAM_PATH)) {
+            return request.getParameter("access_token");
+        }
+        return null;
+    }
 }
@@ -0,0 +1,30 @@
+package com.krypt.backend.config;
+
+import io.jsonwebtoken.Claims;
+
+import java.util.Date;
+import java.util.List;
+
+public record JwtClaims(String id, String subject, Long userId, String role, List<String> scopes, Date issuedAt, Date expiration) {
+    static final String ISSUED_AT_MILLIS = "iat_ms";
+
+    public static JwtClaims from(Claims claims) {
+        List<?> scope = claims.get("scope", List.class);
+        List<String> scopes = scope == null ? List.of() : scope.stream().map(String::valueOf).toList();
+        // Tokens issued before iat_ms existed fall back to iat, truncated to the second
+        Long issuedAtMillis = claims.get(ISSUED_AT_MILLIS, Long.class);
+        return new JwtClaims(
+                claims.getId(),
+                claims.getSubject(),
+                claims.get("uid", Long.class),
+                claims.get("role", String.class),
+                scopes,
+                issuedAtMillis == null ? claims.getIssuedAt() : new Date(issuedAtMillis),
+                claims.getExpiration()
+        );
+    }
+
+    public boolean isExpired() {
+        return expiration != null && expiration.before(new Date());
+    }
+}
@@ -1,47 +1,115 @@
 package com.krypt.backend.config;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.security.Keys;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.security.Key;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
 import java.util.Date;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 
 @Component
 public class JwtUtils {
-
-    @Value("${jwt.secret}")
-    private String SECRET;
     private final long expirationTime = 1000 * 60 * 60 * 24;
 
-    private Key getKey() {
-        byte[] keyBytes = SECRET.getBytes();
+    private final Key key;
+    private final JwtParser parser;
+    private final MessageDigest digestPrototype;
+    // Verified claims keyed by the SHA-256 of the raw token, evicted at the token's own expiry
+    private final Cache<ByteBuffer, JwtClaims> verifiedTokens;
+
+    public JwtUtils(@Value("${jwt.secret}") String secret,
+                    @Value("${jwt.cache.max-size:10000}") long cacheMaxSize) {
+        byte[] keyBytes = secret.getBytes();
         if (keyBytes.length < 32) {
             throw new RuntimeException("JWT secret must be at least 32 characters long");
         }
-        return Keys.hmacShaKeyFor(keyBytes);
+        this.key = Keys.hmacShaKeyFor(keyBytes);
+        this.parser = Jwts.parserBuilder().setSigningKey(key).build();
+        try {
+            this.digestPrototype = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+        this.verifiedTokens = Caffeine.newBuilder()
+                .maximumSize(cacheMaxSize)
+                .expireAfter(new Expiry<ByteBuffer, JwtClaims>() {
+                    @Override
+                    public long expireAfterCreate(ByteBuffer digest, JwtClaims claims, long currentTime) {
+                        long remainingMillis = claims.expiration().getTime() - System.currentTimeMillis();
+                        return TimeUnit.MILLISECONDS.toNanos(Math.max(remainingMillis, 0));
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(ByteBuffer digest, JwtClaims claims, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+
+                    @Override
+                    public long expireAfterRead(ByteBuffer digest, JwtClaims claims, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
     }
 
     public String generateToken(String email, String... scopes) {
+        return generateToken(null, email, null, scopes);
+    }
+
+    public String generateToken(Long userId, String email, String role, String... scopes) {
+        long now = System.currentTimeMillis();
         return Jwts.builder()
+                .setId(UUID.randomUUID().toString()) // jti, the handle used to revoke this token
                 .setSubject(email)
+                .claim("uid", userId)
+                .claim("role", role)
                 .claim("scope", scopes)
-                .setIssuedAt(new Date())
-                .setExpiration(new Date(System.currentTimeMillis() + expirationTime))
-                .signWith(getKey(), SignatureAlgorithm.HS256)
+                .setIssuedAt(new Date(now))
+                // iat only has second precision, too coarse for the revocation watermark
+                .claim(JwtClaims.ISSUED_AT_MILLIS, now)
+                .setExpiration(new Date(now + expirationTime))
+                .signWith(key, SignatureAlgorithm.HS256)
                 .compact();
     }
 
+    public Duration tokenLifetime() {
+        return Duration.ofMillis(expirationTime);
+    }
+
+    // Single verified-parse path: signature and expiry are checked once, then served from the cache
+    public JwtClaims verify(String token) {
+        ByteBuffer digest = digest(token);
+        JwtClaims cached = verifiedTokens.getIfPresent(digest);
+        if (cached != null && !cached.isExpired()) {
+            return cached;
+        }
+
+        JwtClaims claims = JwtClaims.from(extractAllClaims(token));
+        verifiedTokens.put(digest, claims);
+        return claims;
+    }
+
     public String extractUsername(String token) {
-        return extractClaim(token, Claims::getSubject);
+        return verify(token).subject();
     }
 
     public Date extractExpiration(String token) {
-        return extractClaim(token, Claims::getExpiration);
+        return verify(token).expiration();
     }
 
     public boolean isTokenExpired(String token) {
@@ -49,7 +117,8 @@ public class JwtUtils {
     }
 
     public boolean validateToken(String token, String username) {
-        return extractClaim(token, Claims::getSubject).equals(username) && !isTokenExpired(token);
+        JwtClaims claims = verify(token);
+        return claims.subject().equals(username) && !claims.isExpired();
     }
 
     public <T> T extractClaim(String token, Function<Claims, T> claimsResolver) {
@@ -58,10 +127,15 @@ public class JwtUtils {
     }
 
     private Claims extractAllClaims(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(getKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+        return parser.parseClaimsJws(token).getBody();
+    }
+
+    private ByteBuffer digest(String token) {
+        try {
+            MessageDigest messageDigest = (MessageDigest) digestPrototype.clone();
+            return ByteBuffer.wrap(messageDigest.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException("SHA-256 digest cannot be cloned", e);
+        }
     }
 }
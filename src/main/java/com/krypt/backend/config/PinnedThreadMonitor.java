@@ -0,0 +1,73 @@
+package com.krypt.backend.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+// With virtual threads on, reports the ones that block while pinned to their carrier, which on Java 21 is
+// any blocking call inside a synchronized block or method: a pinned thread holds one of the few carriers,
+// and enough of them waiting on a JDBC connection stall every request. The JDK's own JFR event is streamed
+// in process, every pin longer than the threshold is timed and each code site is logged once with its stack.
+// For a one-off investigation -Djdk.tracePinnedThreads=full prints them all to stdout instead.
+@Component
+@ConditionalOnProperty(name = "spring.threads.virtual.enabled", havingValue = "true")
+public class PinnedThreadMonitor {
+    private static final Logger logger = LoggerFactory.getLogger(PinnedThreadMonitor.class);
+    static final String EVENT = "jdk.VirtualThreadPinned";
+    private static final String APPLICATION_PACKAGE = "com.krypt.";
+    private static final int LOGGED_FRAMES = 12;
+
+    private final Timer pinned;
+    private final Set<String> reportedSites = ConcurrentHashMap.newKeySet();
+    private final RecordingStream stream;
+
+    public PinnedThreadMonitor(MeterRegistry meterRegistry,
+                               @Value("${krypt.threads.pinned-threshold:PT0.02S}") Duration threshold) {
+        this.pinned = Timer.builder("krypt.threads.pinned")
+                .description("Virtual threads blocked while pinned to their carrier for longer than the threshold")
+                .register(meterRegistry);
+        this.stream = new RecordingStream();
+        stream.enable(EVENT).withThreshold(threshold).withStackTrace();
+        stream.onEvent(EVENT, this::onPinned);
+        stream.startAsync();
+        logger.info("Reporting virtual threads pinned for more than {} ms", threshold.toMillis());
+    }
+
+    void onPinned(RecordedEvent event) {
+        pinned.record(event.getDuration());
+        List<RecordedFrame> frames = event.getStackTrace() == null ? List.of() : event.getStackTrace().getFrames();
+        String site = frames.stream()
+                .map(PinnedThreadMonitor::describe)
+                .filter(frame -> frame.startsWith(APPLICATION_PACKAGE))
+                .findFirst()
+                .orElse(frames.isEmpty() ? "unknown" : describe(frames.get(0)));
+        if (reportedSites.add(site)) {
+            logger.warn("Virtual thread pinned for {} ms at {}, further pins there are only counted:\n\t{}",
+                    event.getDuration().toMillis(), site,
+                    frames.stream().limit(LOGGED_FRAMES).map(PinnedThreadMonitor::describe).collect(Collectors.joining("\n\t")));
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        stream.close();
+    }
+
+    private static String describe(RecordedFrame frame) {
+        return frame.getMethod().getType().getName() + "." + frame.getMethod().getName() + ":" + frame.getLineNumber();
+    }
+}
@@ -0,0 +1,149 @@
+package com.krypt.backend.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.krypt.backend.model.RevokedToken;
+import com.krypt.backend.repository.RevokedTokenRepository;
+import com.krypt.backend.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+// Access token revocation checked in memory on every request: logged-out jtis until their token expires,
+// plus a per-user "tokens issued at or before" watermark for logout everywhere.
+// The database only holds the source of truth; other instances pick up new rows with refresh().
+@Component
+public class TokenRevocationStore {
+    private static final Logger log = LoggerFactory.getLogger(TokenRevocationStore.class);
+    // Covers rows committed while the previous refresh was running
+    private static final Duration REFRESH_OVERLAP = Duration.ofSeconds(5);
+
+    private final RevokedTokenRepository revokedTokenRepository;
+    private final UserRepository userRepository;
+    private final Duration tokenLifetime;
+    private final Cache<String, RevokedToken> revokedTokens;
+    private final Map<Long, Instant> tokensNotBefore = new ConcurrentHashMap<>();
+    private volatile Instant lastRefresh;
+
+    public TokenRevocationStore(RevokedTokenRepository revokedTokenRepository, UserRepository userRepository, JwtUtils jwtUtils,
+                                @Value("${jwt.revocation.max-size:100000}") long maxSize) {
+        this.revokedTokenRepository = revokedTokenRepository;
+        this.userRepository = userRepository;
+        this.tokenLifetime = jwtUtils.tokenLifetime();
+        this.lastRefresh = Instant.now().minus(tokenLifetime);
+        this.revokedTokens = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .executor(Runnable::run)
+                .expireAfter(new Expiry<String, RevokedToken>() {
+                    @Override
+                    public long expireAfterCreate(String jti, RevokedToken revoked, long currentTime) {
+                        long remainingMillis = revoked.getExpiresAt().toEpochMilli() - System.currentTimeMillis();
+                        return TimeUnit.MILLISECONDS.toNanos(Math.max(remainingMillis, 0));
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String jti, RevokedToken revoked, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+
+                    @Override
+                    public long expireAfterRead(String jti, RevokedToken revoked, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                // A jti pushed out by the size bound must stay revoked: fall back to the user's watermark,
+                // which may also revoke that user's older tokens but never lets a logged-out token through
+                .removalListener((String jti, RevokedToken revoked, RemovalCause cause) -> {
+                    if (cause == RemovalCause.SIZE && revoked != null) {
+                        raiseWatermark(revoked.getUserId(), revoked.getIssuedAt());
+                    }
+                })
+                .build();
+    }
+
+    public boolean isRevoked(JwtClaims claims) {
+        if (claims.id() != null && revokedTokens.getIfPresent(claims.id()) != null) {
+            return true;
+        }
+        Instant notBefore = claims.userId() == null ? null : tokensNotBefore.get(claims.userId());
+        return notBefore != null && (claims.issuedAt() == null || !claims.issuedAt().toInstant().isAfter(notBefore));
+    }
+
+    @Transactional
+    public void revoke(JwtClaims claims) {
+        Instant issuedAt = claims.issuedAt() == null ? Instant.now() : claims.issuedAt().toInstant();
+        if (claims.id() == null) {
+            // Tokens issued before jtis existed can only be revoked through the watermark
+            revokeIssuedBefore(claims.userId(), issuedAt);
+            return;
+        }
+        RevokedToken revoked = new RevokedToken(claims.id(), claims.userId(), issuedAt, expirationOf(claims, issuedAt));
+        revokedTokenRepository.save(revoked);
+        revokedTokens.put(revoked.getJti(), revoked);
+    }
+
+    @Transactional
+    public void revokeIssuedBefore(Long userId, Instant instant) {
+        if (userId == null) {
+            return;
+        }
+        Instant notBefore = truncate(instant);
+        userRepository.updateTokensNotBefore(userId, notBefore);
+        raiseWatermark(userId, notBefore);
+    }
+
+    // Loads revocations made on other instances since the last refresh, everything still valid on startup
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${jwt.revocation.refresh-interval:PT30S}", initialDelayString = "${jwt.revocation.refresh-interval:PT30S}")
+    public void refresh() {
+        Instant now = Instant.now();
+        Instant since = lastRefresh.minus(REFRESH_OVERLAP);
+        revokedTokenRepository.findByRevokedAtGreaterThanEqualAndExpiresAtAfter(since, now)
+                .forEach(revoked -> revokedTokens.put(revoked.getJti(), revoked));
+        userRepository.findTokenWatermarks(since)
+                .forEach(watermark -> raiseWatermark(watermark.getId(), watermark.getTokensNotBefore()));
+        // Past one token lifetime a watermark no longer matches any valid token
+        Instant oldestUseful = now.minus(tokenLifetime);
+        tokensNotBefore.values().removeIf(notBefore -> notBefore.isBefore(oldestUseful));
+        lastRefresh = now;
+    }
+
+    @Scheduled(cron = "${jwt.revocation.purge-cron:0 15 4 * * *}")
+    @Transactional
+    public void purgeExpired() {
+        int deleted = revokedTokenRepository.deleteExpired(Instant.now());
+        log.info("Purged {} expired revoked tokens", deleted);
+    }
+
+    private void raiseWatermark(Long userId, Instant notBefore) {
+        if (userId != null && notBefore != null) {
+            tokensNotBefore.merge(userId, truncate(notBefore), (current, candidate) -> candidate.isAfter(current) ? candidate : current);
+        }
+    }
+
+    private Instant expirationOf(JwtClaims claims, Instant issuedAt) {
+        Date expiration = claims.expiration();
+        return expiration == null ? issuedAt.plus(tokenLifetime) : expiration.toInstant();
+    }
+
+    // Tokens carry their issue time to the millisecond (iat_ms), so a login right after a logout everywhere
+    // stays valid. Older tokens only have iat in seconds and are revoked for the whole second, never let through.
+    private static Instant truncate(Instant instant) {
+        return instant.truncatedTo(ChronoUnit.MILLIS);
+    }
+}
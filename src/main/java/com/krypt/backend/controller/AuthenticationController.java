@@ -1,6 +1,9 @@
 package com.krypt.backend.controller;
 
+import com.krypt.backend.config.AuthenticatedUser;
+import com.krypt.backend.config.JwtClaims;
 import com.krypt.backend.config.JwtUtils;
+import com.krypt.backend.config.TokenRevocationStore;
 import com.krypt.backend.dto.UserDTO.AuthenticationDTO;
 import com.krypt.backend.dto.UserDTO.PasswordChangeDTO;
 import com.krypt.backend.dto.UserDTO.RegisterDTO;
@@ -10,15 +13,15 @@ import com.krypt.backend.model.User;
 import com.krypt.backend.repository.TokenRepository;
 import com.krypt.backend.repository.UserRepository;
 import com.krypt.backend.service.UserService;
+import io.jsonwebtoken.JwtException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.authentication.AuthenticationManager;
-import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
 
 import java.net.URI;
+import java.time.Instant;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -29,15 +32,15 @@ public class AuthenticationController {
     private final UserService userService;
     private final UserRepository userRepository;
     private final TokenRepository tokenRepository;
-    private final AuthenticationManager authenticationManager;
     private final JwtUtils jwtUtils;
+    private final TokenRevocationStore tokenRevocationStore;
 
-    public AuthenticationController(UserService userService, UserRepository userRepository, TokenRepository tokenRepository, AuthenticationManager authenticationManager, JwtUtils jwtUtils) {
+    public AuthenticationController(UserService userService, UserRepository userRepository, TokenRepository tokenRepository, JwtUtils jwtUtils, TokenRevocationStore tokenRevocationStore) {
         this.userService = userService;
         this.userRepository = userRepository;
         this.tokenRepository = tokenRepository;
-        this.authenticationManager = authenticationManager;
         this.jwtUtils = jwtUtils;
+        this.tokenRevocationStore = tokenRevocationStore;
     }
 
     @PostMapping("/register")
@@ -113,10 +116,7 @@ public class AuthenticationController {
                     ));
         }
 
-        authenticationManager.authenticate(
-                new UsernamePasswordAuthenticationToken(email, authenticationDTO.getPassword())
-        );
-
+        // The password is checked once, inside authenticateUser
         String jwt = userService.authenticateUser(authenticationDTO);
         return ResponseEntity.ok(Map.of("token", jwt));
     }
@@ -126,15 +126,30 @@ public class AuthenticationController {
         if (authHeader == null || !authHeader.startsWith("Bearer ")) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Missing or invalid Authorization header");
         }
-        String tokenValue = authHeader.substring(7);
-        tokenRepository.findByToken(tokenValue).ifPresent(tokenRepository::delete);
+        JwtClaims claims = verifyOrNull(authHeader.substring(7));
+        // An invalid or expired token cannot be used anyway, there is nothing to revoke
+        if (claims != null) {
+            tokenRevocationStore.revoke(claims);
+        }
 
         return ResponseEntity.noContent().build();
     }
 
+    @PostMapping("/logout-all")
+    public ResponseEntity<?> logoutAll(@AuthenticationPrincipal AuthenticatedUser user) {
+        if (user == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        tokenRevocationStore.revokeIssuedBefore(user.id(), Instant.now());
+        return ResponseEntity.noContent().build();
+    }
+
     @PostMapping("/change-password")
-    public ResponseEntity<?> changePassword(@AuthenticationPrincipal String email, @RequestBody PasswordChangeDTO passwordChangeDto) {
-        userService.changePassword(email, passwordChangeDto);
+    public ResponseEntity<?> changePassword(@AuthenticationPrincipal AuthenticatedUser user, @RequestBody PasswordChangeDTO passwordChangeDto) {
+        if (user == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        userService.changePassword(user.email(), passwordChangeDto);
         return ResponseEntity.ok("Password changed successfully");
     }
 
@@ -144,14 +159,23 @@ public class AuthenticationController {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Missing or invalid Authorization header");
         }
 
-        String tokenValue = authHeader.substring(7);
-        Token token = tokenRepository.findByToken(tokenValue)
-                .orElseThrow(() -> new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Token invalide"));
+        JwtClaims claims = verifyOrNull(authHeader.substring(7));
+        if (claims == null) {
+            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Token invalide");
+        }
 
-        if (token.isExpired() || token.isRevoked()) {
+        if (claims.isExpired() || tokenRevocationStore.isRevoked(claims)) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Token expired or revoked");
         }
 
         return ResponseEntity.ok().build();
     }
+
+    private JwtClaims verifyOrNull(String token) {
+        try {
+            return jwtUtils.verify(token);
+        } catch (JwtException | IllegalArgumentException e) {
+            return null;
+        }
+    }
 }
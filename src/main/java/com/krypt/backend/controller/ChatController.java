@@ -0,0 +1,34 @@
+package com.krypt.backend.controller;
+
+import com.krypt.backend.config.AuthenticatedUser;
+import com.krypt.backend.dto.ChatDTO.ChatRequestDTO;
+import com.krypt.backend.model.enums.RoleType;
+import com.krypt.backend.service.ChatService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+@RestController
+@RequestMapping("/api/chat")
+public class ChatController {
+    private final ChatService chatService;
+
+    public ChatController(final ChatService chatService) {
+        this.chatService = chatService;
+    }
+
+    // Events: "queued" at once, then one "token" per piece of the reply and "done", or "error"
+    @PostMapping(produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter chat(@AuthenticationPrincipal AuthenticatedUser user, @RequestBody ChatRequestDTO request) {
+        if (!user.hasScope("chatbot:generate")) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Missing scope chatbot:generate");
+        }
+        return chatService.stream(user.id(), RoleType.valueOf(user.role()), request);
+    }
+}
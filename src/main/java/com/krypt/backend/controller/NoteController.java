@@ -1,43 +1,85 @@
 package com.krypt.backend.controller;
 
+import com.krypt.backend.config.AuthenticatedUser;
+import com.krypt.backend.dto.NoteDTO.NoteChangesDTO;
 import com.krypt.backend.dto.NoteDTO.NoteDTO;
+import com.krypt.backend.dto.NoteDTO.NoteImportResultDTO;
+import com.krypt.backend.dto.NoteDTO.NotePatchDTO;
 import com.krypt.backend.dto.NoteDTO.NoteResponseDTO;
+import com.krypt.backend.dto.NoteDTO.NoteRevisionDTO;
+import com.krypt.backend.dto.NoteDTO.NoteRevisionSummaryDTO;
+import com.krypt.backend.dto.NoteDTO.NoteSearchPageDTO;
+import com.krypt.backend.dto.NoteDTO.NoteSummarizationDTO;
+import com.krypt.backend.dto.NoteDTO.NoteSummaryPageDTO;
+import com.krypt.backend.dto.NoteDTO.NoteTagsDTO;
+import com.krypt.backend.dto.NoteDTO.PassageDTO;
+import com.krypt.backend.dto.NoteDTO.TagDTO;
 import com.krypt.backend.model.Note;
-import com.krypt.backend.model.User;
-import com.krypt.backend.repository.UserRepository;
+import com.krypt.backend.model.enums.RoleType;
+import com.krypt.backend.service.NoteRevisionService;
 import com.krypt.backend.service.NoteService;
+import com.krypt.backend.service.NoteStreamService;
+import com.krypt.backend.service.NoteSummaryService;
+import com.krypt.backend.service.NoteTransferService;
+import com.krypt.backend.service.RetrievalService;
+import com.krypt.backend.service.TagService;
+import com.krypt.backend.service.TagSuggestionService;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.security.Principal;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/api/notes")
 public class NoteController {
+    private static final String NDJSON = "application/x-ndjson";
+    private static final String ZIP = "application/zip";
+
     private final NoteService noteService;
-    private final UserRepository userRepository;
+    private final NoteTransferService noteTransferService;
+    private final NoteRevisionService noteRevisionService;
+    private final NoteStreamService noteStreamService;
+    private final TagService tagService;
+    private final TagSuggestionService tagSuggestionService;
+    private final NoteSummaryService noteSummaryService;
+    private final RetrievalService retrievalService;
 
-    public NoteController(final NoteService noteService, final UserRepository userRepository) {
+    public NoteController(final NoteService noteService, final NoteTransferService noteTransferService,
+                          final NoteRevisionService noteRevisionService, final NoteStreamService noteStreamService,
+                          final TagService tagService, final TagSuggestionService tagSuggestionService,
+                          final NoteSummaryService noteSummaryService, final RetrievalService retrievalService) {
         this.noteService = noteService;
-        this.userRepository = userRepository;
+        this.noteTransferService = noteTransferService;
+        this.noteRevisionService = noteRevisionService;
+        this.noteStreamService = noteStreamService;
+        this.tagService = tagService;
+        this.tagSuggestionService = tagSuggestionService;
+        this.noteSummaryService = noteSummaryService;
+        this.retrievalService = retrievalService;
     }
 
     @PostMapping
-    public ResponseEntity<NoteResponseDTO> createNote(Principal principal, @RequestBody NoteDTO noteDTO) {
-        String email = principal.getName();
-        User user = userRepository.findByEmail(email).orElseThrow(() -> new RuntimeException("User not found: " + email));
-        Note note = noteService.createNote(user, noteDTO);
+    public ResponseEntity<NoteResponseDTO> createNote(@AuthenticationPrincipal AuthenticatedUser user, @RequestBody NoteDTO noteDTO) {
+        Note note = noteService.createNote(user.id(), noteDTO);
         return ResponseEntity.ok(toResponseDTO(note));
     }
 
     @GetMapping
-    public ResponseEntity<List<NoteResponseDTO>> getUserNotes(Principal principal) {
-        String email = principal.getName();
-        User user = userRepository.findByEmail(email).orElseThrow(() -> new RuntimeException("User not found: " + email));
-
-        List<NoteResponseDTO> notes = noteService.getUserNotes(user)
+    public ResponseEntity<List<NoteResponseDTO>> getUserNotes(@AuthenticationPrincipal AuthenticatedUser user) {
+        List<NoteResponseDTO> notes = noteService.getUserNotes(user.id())
                 .stream()
                 .map(this::toResponseDTO)
                 .collect(Collectors.toList());
@@ -45,28 +87,164 @@ public class NoteController {
         return ResponseEntity.ok(notes);
     }
 
+    // Sidebar listing: keyset-paginated summaries without content, enabled by passing ?limit=
+    @GetMapping(params = {"limit", "!tags"})
+    public ResponseEntity<NoteSummaryPageDTO> getUserNoteSummaries(@AuthenticationPrincipal AuthenticatedUser user,
+                                                                   @RequestParam int limit,
+                                                                   @RequestParam(required = false) String cursor,
+                                                                   @RequestParam(defaultValue = "false") boolean snippet) {
+        return ResponseEntity.ok(noteService.getUserNoteSummaries(user.id(), limit, cursor, snippet));
+    }
+
+    // Tag filter over the same summary pages: ?tags=a,b matches notes with any of them, add match=all for all of them
+    @GetMapping(params = "tags")
+    public ResponseEntity<NoteSummaryPageDTO> getNotesByTags(@AuthenticationPrincipal AuthenticatedUser user,
+                                                             @RequestParam String tags,
+                                                             @RequestParam(defaultValue = "any") String match,
+                                                             @RequestParam(defaultValue = "50") int limit,
+                                                             @RequestParam(required = false) String cursor,
+                                                             @RequestParam(defaultValue = "false") boolean snippet) {
+        List<String> names = Arrays.stream(tags.split(",")).map(String::strip).filter(name -> !name.isEmpty()).toList();
+        return ResponseEntity.ok(noteService.getNoteSummariesByTags(user.id(), names, "all".equalsIgnoreCase(match), limit, cursor, snippet));
+    }
+
+    @PutMapping("/tags")
+    public ResponseEntity<Map<String, Integer>> tagNotes(@AuthenticationPrincipal AuthenticatedUser user, @RequestBody NoteTagsDTO noteTagsDTO) {
+        requireScope(user, "notes:tags");
+        return ResponseEntity.ok(Map.of("added", tagService.tagNotes(user.id(), noteTagsDTO)));
+    }
+
+    @DeleteMapping("/tags")
+    public ResponseEntity<Map<String, Integer>> untagNotes(@AuthenticationPrincipal AuthenticatedUser user, @RequestBody NoteTagsDTO noteTagsDTO) {
+        requireScope(user, "notes:tags");
+        return ResponseEntity.ok(Map.of("removed", tagService.untagNotes(user.id(), noteTagsDTO)));
+    }
+
+    @GetMapping("/search")
+    public ResponseEntity<NoteSearchPageDTO> searchNotes(@AuthenticationPrincipal AuthenticatedUser user,
+                                                         @RequestParam("q") String query,
+                                                         @RequestParam(defaultValue = "0") int page,
+                                                         @RequestParam(defaultValue = "20") int size) {
+        return ResponseEntity.ok(noteService.searchNotes(user.id(), query, page, size));
+    }
+
+    // Passages of the notes closest to the query, by words and by embedding, as given to the chatbot
+    @GetMapping("/passages")
+    public ResponseEntity<List<PassageDTO>> findPassages(@AuthenticationPrincipal AuthenticatedUser user,
+                                                         @RequestParam("q") String query,
+                                                         @RequestParam(defaultValue = "5") int limit) {
+        return ResponseEntity.ok(retrievalService.search(user.id(), query, limit));
+    }
+
+    // Delta sync: pass the cursor of the previous response as since, 0 for a full sync
+    @GetMapping("/changes")
+    public ResponseEntity<NoteChangesDTO> getChanges(@AuthenticationPrincipal AuthenticatedUser user,
+                                                     @RequestParam(defaultValue = "0") long since,
+                                                     @RequestParam(defaultValue = "100") int limit) {
+        NoteService.NoteChanges changes = noteService.getChanges(user.id(), since, limit);
+        List<NoteResponseDTO> updated = changes.updated().stream().map(this::toResponseDTO).toList();
+        return ResponseEntity.ok(new NoteChangesDTO(updated, changes.deleted(), changes.cursor(), changes.hasMore()));
+    }
+
+    // Push channel replacing polling: "note" events carry the change cursor, "resync" asks the client to call /changes.
+    // EventSource cannot send headers, so the JWT may also be passed as ?access_token= on this path
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamChanges(@AuthenticationPrincipal AuthenticatedUser user) {
+        if (user == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        return ResponseEntity.ok()
+                .header("X-Accel-Buffering", "no")
+                .body(noteStreamService.subscribe(user.id()));
+    }
+
+    // The body is read as a stream and saved in batches, batches already saved are kept if a later line is invalid
+    @PostMapping(value = "/import", consumes = {NDJSON, ZIP})
+    public ResponseEntity<NoteImportResultDTO> importNotes(@AuthenticationPrincipal AuthenticatedUser user,
+                                                           @RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+                                                           InputStream body) throws IOException {
+        int imported = MediaType.parseMediaType(contentType).isCompatibleWith(MediaType.parseMediaType(ZIP))
+                ? noteTransferService.importMarkdownZip(user.id(), body)
+                : noteTransferService.importNdjson(user.id(), body);
+        return ResponseEntity.ok(new NoteImportResultDTO(imported));
+    }
+
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportNotes(@AuthenticationPrincipal AuthenticatedUser user,
+                                                             @RequestParam(defaultValue = "ndjson") String format) {
+        Long userId = user.id();
+        if ("zip".equalsIgnoreCase(format)) {
+            return ResponseEntity.ok()
+                    .contentType(MediaType.parseMediaType(ZIP))
+                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"krypt-notes.zip\"")
+                    .body(output -> noteTransferService.exportMarkdownZip(userId, output));
+        }
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(NDJSON))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"krypt-notes.ndjson\"")
+                .body(output -> noteTransferService.exportNdjson(userId, output));
+    }
+
     @GetMapping("/{id}")
-    public ResponseEntity<NoteResponseDTO> getNote(Principal principal, @PathVariable Long id) {
-        String email = principal.getName();
-        User user = userRepository.findByEmail(email).orElseThrow(() -> new RuntimeException("User not found: " + email));
-        return ResponseEntity.ok(toResponseDTO(noteService.getNoteById(id, user)));
+    public ResponseEntity<NoteResponseDTO> getNote(@AuthenticationPrincipal AuthenticatedUser user, @PathVariable Long id) {
+        return ResponseEntity.ok(toResponseDTO(noteService.getNoteById(id, user.id())));
     }
 
     @PutMapping("/{id}")
-    public ResponseEntity<NoteResponseDTO> updateNote(Principal principal, @PathVariable Long id, @RequestBody NoteDTO noteDTO) {
-        String email = principal.getName();
-        User user = userRepository.findByEmail(email).orElseThrow(() -> new RuntimeException("User not found: " + email));
-        return ResponseEntity.ok(toResponseDTO(noteService.updateNote(id, user, noteDTO)));
+    public ResponseEntity<NoteResponseDTO> updateNote(@AuthenticationPrincipal AuthenticatedUser user, @PathVariable Long id, @RequestBody NoteDTO noteDTO) {
+        return ResponseEntity.ok(toResponseDTO(noteService.updateNote(id, user.id(), noteDTO)));
+    }
+
+    @PatchMapping("/{id}")
+    public ResponseEntity<NoteResponseDTO> patchNote(@AuthenticationPrincipal AuthenticatedUser user, @PathVariable Long id, @RequestBody NotePatchDTO notePatchDTO) {
+        return ResponseEntity.ok(toResponseDTO(noteService.patchNote(id, user.id(), notePatchDTO)));
+    }
+
+    // Newest first, pass the last revision number received as before to get older ones
+    @GetMapping("/{id}/revisions")
+    public ResponseEntity<List<NoteRevisionSummaryDTO>> getRevisions(@AuthenticationPrincipal AuthenticatedUser user, @PathVariable Long id,
+                                                                     @RequestParam(required = false) Long before,
+                                                                     @RequestParam(defaultValue = "50") int limit) {
+        return ResponseEntity.ok(noteRevisionService.getRevisions(id, user.id(), before, limit));
+    }
+
+    @GetMapping("/{id}/revisions/{revision}")
+    public ResponseEntity<NoteRevisionDTO> getRevision(@AuthenticationPrincipal AuthenticatedUser user, @PathVariable Long id,
+                                                       @PathVariable long revision) {
+        return ResponseEntity.ok(noteRevisionService.getRevision(id, user.id(), revision));
+    }
+
+    @GetMapping("/{id}/tags")
+    public ResponseEntity<List<String>> getNoteTags(@AuthenticationPrincipal AuthenticatedUser user, @PathVariable Long id) {
+        return ResponseEntity.ok(tagService.getNoteTags(id, user.id()));
+    }
+
+    // Catalog tags matching the note's words, those already on the note are left out
+    @GetMapping("/{id}/tags/suggestions")
+    public ResponseEntity<List<TagDTO>> getTagSuggestions(@AuthenticationPrincipal AuthenticatedUser user, @PathVariable Long id) {
+        return ResponseEntity.ok(tagSuggestionService.getSuggestions(id, user.id()));
+    }
+
+    // Counts against the AI quota unless the same content was summarised before
+    @PostMapping("/{id}/summary")
+    public ResponseEntity<NoteSummarizationDTO> summarize(@AuthenticationPrincipal AuthenticatedUser user, @PathVariable Long id,
+                                                          @RequestParam(defaultValue = "3") int sentences) {
+        requireScope(user, "notes:summarize");
+        return ResponseEntity.ok(noteSummaryService.summarize(id, user.id(), RoleType.valueOf(user.role()), sentences));
     }
 
     @DeleteMapping("/{id}")
-    public ResponseEntity<Void> deleteNote(Principal principal, @PathVariable Long id) {
-        String email = principal.getName();
-        User user = userRepository.findByEmail(email).orElseThrow(() -> new RuntimeException("User not found: " + email));
-        noteService.deleteNote(id, user);
+    public ResponseEntity<Void> deleteNote(@AuthenticationPrincipal AuthenticatedUser user, @PathVariable Long id) {
+        noteService.deleteNote(id, user.id());
         return ResponseEntity.noContent().build();
     }
 
+    private static void requireScope(AuthenticatedUser user, String scope) {
+        if (!user.hasScope(scope)) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Missing scope " + scope);
+        }
+    }
+
     private NoteResponseDTO toResponseDTO(Note note) {
         NoteResponseDTO noteResponseDTO = new NoteResponseDTO();
         noteResponseDTO.setId(note.getId());
@@ -74,6 +252,13 @@ public class NoteController {
         noteResponseDTO.setContent(note.getContent());
         noteResponseDTO.setCreationDate(note.getCreationDate());
         noteResponseDTO.setModificationDate(note.getModificationDate());
+        noteResponseDTO.setVersion(note.getVersion());
         return noteResponseDTO;
     }
+
+    // A concurrent write committed between our read and our update of the same version
+    @ExceptionHandler(ObjectOptimisticLockingFailureException.class)
+    public ResponseEntity<Map<String, String>> handleConcurrentUpdate() {
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", "Note was modified concurrently"));
+    }
 }
@@ -0,0 +1,40 @@
+package com.krypt.backend.controller;
+
+import com.krypt.backend.service.TagService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.Duration;
+
+@RestController
+@RequestMapping("/api/tags")
+public class TagController {
+    private final TagService tagService;
+    private final CacheControl cacheControl;
+
+    public TagController(TagService tagService, @Value("${krypt.cache.tags.ttl:PT10M}") Duration ttl) {
+        this.tagService = tagService;
+        this.cacheControl = CacheControl.maxAge(ttl).cachePrivate();
+    }
+
+    // The catalog is sent pre-serialised from memory, a client holding the current ETag gets an empty 304
+    @GetMapping
+    public ResponseEntity<byte[]> getTags(@RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch) {
+        TagService.TagCatalog catalog = tagService.getCatalog();
+        if (catalog.etag().equals(ifNoneMatch)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(catalog.etag()).cacheControl(cacheControl).build();
+        }
+        return ResponseEntity.ok()
+                .eTag(catalog.etag())
+                .cacheControl(cacheControl)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(catalog.json());
+    }
+}
@@ -1,60 +1,59 @@
 package com.krypt.backend.controller;
 
-import com.krypt.backend.config.JwtUtils;
+import com.krypt.backend.config.AuthenticatedUser;
 import com.krypt.backend.dto.UserDTO.PatchUserDTO;
+import com.krypt.backend.dto.UserDTO.UsageDTO;
 import com.krypt.backend.dto.UserDTO.UserDTO;
+import com.krypt.backend.model.enums.RoleType;
+import com.krypt.backend.service.AiQuotaService;
+import com.krypt.backend.service.StorageQuotaService;
 import com.krypt.backend.service.UserService;
-import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 
 @RestController
 @RequestMapping("/api/users")
 public class UserController {
     private final UserService userService;
-    private final JwtUtils jwtUtils;
+    private final AiQuotaService aiQuotaService;
+    private final StorageQuotaService storageQuotaService;
 
-    public UserController(UserService userService, JwtUtils jwtUtils) {
+    public UserController(UserService userService, AiQuotaService aiQuotaService, StorageQuotaService storageQuotaService) {
         this.userService = userService;
-        this.jwtUtils = jwtUtils;
+        this.aiQuotaService = aiQuotaService;
+        this.storageQuotaService = storageQuotaService;
     }
 
     @GetMapping("/me")
-    public ResponseEntity<UserDTO> getCurrentUser(HttpServletRequest request) {
-        String authHeader = request.getHeader("Authorization");
-        if (authHeader == null || !authHeader.startsWith("Bearer ")) {
+    public ResponseEntity<UserDTO> getCurrentUser(@AuthenticationPrincipal AuthenticatedUser user) {
+        if (user == null) {
             return ResponseEntity.status(401).build();
         }
-        String token = authHeader.substring(7);
 
-        String email;
-        try {
-            email = jwtUtils.extractUsername(token);
-        } catch (Exception e) {
-            return ResponseEntity.status(401).build();
-        }
-
-        return userService.getUserInfoByEmail(email)
+        return userService.getUserInfoByEmail(user.email())
                 .map(ResponseEntity::ok)
                 .orElseGet(() -> ResponseEntity.notFound().build());
     }
 
     @PatchMapping("/me")
-    public ResponseEntity<UserDTO> updateCurrentUser(@Valid @RequestBody PatchUserDTO patchUserDTO, HttpServletRequest request) {
-        String authHeader = request.getHeader("Authorization");
-        if(authHeader == null || !authHeader.startsWith("Bearer ")) {
-            return ResponseEntity.status(401).build();
-        }
-        String token = authHeader.substring(7);
-            String email;
-        try{
-            email = jwtUtils.extractUsername(token);
-        }catch(Exception e){
+    public ResponseEntity<UserDTO> updateCurrentUser(@Valid @RequestBody PatchUserDTO patchUserDTO, @AuthenticationPrincipal AuthenticatedUser user) {
+        if (user == null) {
             return ResponseEntity.status(401).build();
         }
-        return userService.PatchUserInfoByEmail(email, patchUserDTO)
+        return userService.PatchUserInfoByEmail(user.email(), patchUserDTO)
                 .map(ResponseEntity::ok)
                 .orElseGet(() -> ResponseEntity.notFound().build());
     }
+
+    // AI usage comes from the in-memory meters, storage from the counter kept on the user row
+    @GetMapping("/me/usage")
+    public ResponseEntity<UsageDTO> getCurrentUsage(@AuthenticationPrincipal AuthenticatedUser user) {
+        if (user == null) {
+            return ResponseEntity.status(401).build();
+        }
+        return ResponseEntity.ok(new UsageDTO(aiQuotaService.getUsage(user.id(), RoleType.valueOf(user.role())),
+                storageQuotaService.getUsage(user.id())));
+    }
 }
@@ -0,0 +1,4 @@
+package com.krypt.backend.dto.ChatDTO;
+
+// role is "user" or "assistant"
+public record ChatMessageDTO(String role, String content) {}
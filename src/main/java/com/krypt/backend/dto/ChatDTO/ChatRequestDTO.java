@@ -0,0 +1,6 @@
+package com.krypt.backend.dto.ChatDTO;
+
+import java.util.List;
+
+// history: earlier turns of the conversation, oldest first, the client keeps it
+public record ChatRequestDTO(String message, List<ChatMessageDTO> history) {}
@@ -0,0 +1,4 @@
+package com.krypt.backend.dto.NoteDTO;
+
+// Pushed on /api/notes/stream; the client fetches the note itself through /api/notes/changes?since=
+public record NoteChangeEventDTO(String type, Long noteId, long changeSeq, long version) {}
@@ -0,0 +1,5 @@
+package com.krypt.backend.dto.NoteDTO;
+
+import java.util.List;
+
+public record NoteChangesDTO(List<NoteResponseDTO> updated, List<Long> deleted, long cursor, boolean hasMore) {}
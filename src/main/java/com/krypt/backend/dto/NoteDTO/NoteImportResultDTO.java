@@ -0,0 +1,3 @@
+package com.krypt.backend.dto.NoteDTO;
+
+public record NoteImportResultDTO(int imported) {}
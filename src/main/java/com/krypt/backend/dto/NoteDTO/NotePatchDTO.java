@@ -0,0 +1,35 @@
+package com.krypt.backend.dto.NoteDTO;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class NotePatchDTO {
+    private Long baseVersion;
+    private String title;
+    private List<TextEditDTO> edits = new ArrayList<>();
+
+    // Getter & Setter
+    public Long getBaseVersion() {
+        return baseVersion;
+    }
+
+    public void setBaseVersion(Long baseVersion) {
+        this.baseVersion = baseVersion;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public void setTitle(String title) {
+        this.title = title;
+    }
+
+    public List<TextEditDTO> getEdits() {
+        return edits;
+    }
+
+    public void setEdits(List<TextEditDTO> edits) {
+        this.edits = edits;
+    }
+}
@@ -11,6 +11,7 @@ public class NoteResponseDTO {
     private String content;
     private LocalDateTime creationDate;
     private LocalDateTime modificationDate;
+    private long version;
 
     // Getter & Setter
     public Long getId() {
@@ -52,4 +53,12 @@ public class NoteResponseDTO {
     public void setModificationDate(LocalDateTime modificationDate) {
         this.modificationDate = modificationDate;
     }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
 }
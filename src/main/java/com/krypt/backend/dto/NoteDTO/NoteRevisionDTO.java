@@ -0,0 +1,5 @@
+package com.krypt.backend.dto.NoteDTO;
+
+import java.time.LocalDateTime;
+
+public record NoteRevisionDTO(long revision, String title, String content, LocalDateTime creationDate) {}
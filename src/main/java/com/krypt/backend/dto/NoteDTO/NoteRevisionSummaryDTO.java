@@ -0,0 +1,5 @@
+package com.krypt.backend.dto.NoteDTO;
+
+import java.time.LocalDateTime;
+
+public record NoteRevisionSummaryDTO(long revision, String title, LocalDateTime creationDate, boolean snapshot) {}
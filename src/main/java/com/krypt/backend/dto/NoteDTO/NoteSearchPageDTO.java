@@ -0,0 +1,5 @@
+package com.krypt.backend.dto.NoteDTO;
+
+import java.util.List;
+
+public record NoteSearchPageDTO(List<NoteSearchResultDTO> items, int page, int size, boolean hasMore) {}
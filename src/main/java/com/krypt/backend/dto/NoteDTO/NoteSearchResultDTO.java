@@ -0,0 +1,5 @@
+package com.krypt.backend.dto.NoteDTO;
+
+import java.time.LocalDateTime;
+
+public record NoteSearchResultDTO(Long id, String title, LocalDateTime modificationDate, double rank, String snippet) {}
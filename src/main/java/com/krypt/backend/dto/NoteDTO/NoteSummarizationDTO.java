@@ -0,0 +1,6 @@
+package com.krypt.backend.dto.NoteDTO;
+
+import java.util.List;
+
+// cached: served from an earlier summary of the same content, without using AI quota
+public record NoteSummarizationDTO(Long noteId, List<String> sentences, boolean cached) {}
@@ -0,0 +1,73 @@
+package com.krypt.backend.dto.NoteDTO;
+
+import java.time.LocalDateTime;
+
+public class NoteSummaryDTO {
+    private Long id;
+    private String title;
+    private LocalDateTime creationDate;
+    private LocalDateTime modificationDate;
+    private Integer contentLength;
+    private String snippet;
+
+    public NoteSummaryDTO() {}
+
+    // Used by the JPQL constructor expressions in NoteRepository, content itself is never selected
+    public NoteSummaryDTO(Long id, String title, LocalDateTime creationDate, LocalDateTime modificationDate, Integer contentLength, String snippet) {
+        this.id = id;
+        this.title = title;
+        this.creationDate = creationDate;
+        this.modificationDate = modificationDate;
+        this.contentLength = contentLength == null ? 0 : contentLength;
+        this.snippet = snippet == null || snippet.isEmpty() ? null : snippet;
+    }
+
+    // Getter & Setter
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public void setTitle(String title) {
+        this.title = title;
+    }
+
+    public LocalDateTime getCreationDate() {
+        return creationDate;
+    }
+
+    public void setCreationDate(LocalDateTime creationDate) {
+        this.creationDate = creationDate;
+    }
+
+    public LocalDateTime getModificationDate() {
+        return modificationDate;
+    }
+
+    public void setModificationDate(LocalDateTime modificationDate) {
+        this.modificationDate = modificationDate;
+    }
+
+    public Integer getContentLength() {
+        return contentLength;
+    }
+
+    public void setContentLength(Integer contentLength) {
+        this.contentLength = contentLength;
+    }
+
+    public String getSnippet() {
+        return snippet;
+    }
+
+    public void setSnippet(String snippet) {
+        this.snippet = snippet;
+    }
+}
@@ -0,0 +1,5 @@
+package com.krypt.backend.dto.NoteDTO;
+
+import java.util.List;
+
+public record NoteSummaryPageDTO(List<NoteSummaryDTO> items, String nextCursor) {}
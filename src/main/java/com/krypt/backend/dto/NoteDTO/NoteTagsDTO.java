@@ -0,0 +1,6 @@
+package com.krypt.backend.dto.NoteDTO;
+
+import java.util.List;
+
+// Bulk tagging: every tag is added to or removed from every note
+public record NoteTagsDTO(List<Long> noteIds, List<String> tags) {}
@@ -0,0 +1,4 @@
+package com.krypt.backend.dto.NoteDTO;
+
+// A passage of a note matching a query. score only orders the passages of one response.
+public record PassageDTO(Long noteId, String title, String text, double score) {}
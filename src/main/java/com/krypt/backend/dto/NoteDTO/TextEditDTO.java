@@ -0,0 +1,4 @@
+package com.krypt.backend.dto.NoteDTO;
+
+// Replaces `delete` characters at offset `at` of the base content with `insert` (UTF-16 offsets, as in JS strings)
+public record TextEditDTO(int at, int delete, String insert) {}
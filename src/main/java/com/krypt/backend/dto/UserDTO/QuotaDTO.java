@@ -0,0 +1,4 @@
+package com.krypt.backend.dto.UserDTO;
+
+// limit is -1 when the plan has none
+public record QuotaDTO(long used, long limit) {}
@@ -0,0 +1,13 @@
+package com.krypt.backend.dto.UserDTO;
+
+import com.krypt.backend.model.Role;
+import com.krypt.backend.model.enums.RoleType;
+
+import java.math.BigDecimal;
+
+public record RoleDTO(Long id, RoleType roleType, Integer maxStorageGb, Integer aiQuota, BigDecimal pricePerMonth, String description) {
+
+    public static RoleDTO from(Role role) {
+        return new RoleDTO(role.getId(), role.getRoleType(), role.getMaxStorageGb(), role.getAiQuota(), role.getPricePerMonth(), role.getDescription());
+    }
+}
@@ -0,0 +1,3 @@
+package com.krypt.backend.dto.UserDTO;
+
+public record UsageDTO(QuotaDTO ai, QuotaDTO storageBytes) {}
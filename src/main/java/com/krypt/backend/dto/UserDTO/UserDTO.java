@@ -1,15 +1,13 @@
 package com.krypt.backend.dto.UserDTO;
 
-import com.krypt.backend.model.Role;
-
 public class UserDTO {
     private String firstName;
     private String lastName;
     private String email;
-    private Role role;
+    private RoleDTO role;
     private String creationDate;
 
-    public UserDTO(String firstName, String lastName, String email, Role role, String creationDate) {
+    public UserDTO(String firstName, String lastName, String email, RoleDTO role, String creationDate) {
         this.firstName = firstName;
         this.lastName = lastName;
         this.email = email;
@@ -42,11 +40,11 @@ public class UserDTO {
         this.email = email;
     }
 
-    public Role getRole() {
+    public RoleDTO getRole() {
         return role;
     }
 
-    public void setRole(Role role) {
+    public void setRole(RoleDTO role) {
         this.role = role;
     }
 
@@ -1,14 +1,21 @@
 package com.krypt.backend.model;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.DynamicUpdate;
 
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "note_table")
+@DynamicUpdate // only changed columns are written, a title-only update leaves the TOASTed content untouched
+@Table(name = "note_table", indexes = {
+        @Index(name = "idx_note_user_title_id", columnList = "user_id, title, note_id"),
+        @Index(name = "idx_note_user_change_seq", columnList = "user_id, change_seq"),
+        @Index(name = "idx_note_user_modification_date", columnList = "user_id, modification_date")
+})
 public class Note {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "note_seq")
+    @SequenceGenerator(name = "note_seq", sequenceName = "note_seq", allocationSize = 50) // pooled ids, IDENTITY disables insert batching
     @Column(name = "note_id")
     private Long id;
 
@@ -27,11 +34,23 @@ public class Note {
 
     private LocalDateTime modificationDate;
 
+    @Column(name = "change_seq", nullable = false)
+    private long changeSeq;
+
+    @Version
+    @Column(nullable = false)
+    private long version;
+
     // Date
     @PrePersist
     protected void onCreate() {
-        creationDate = LocalDateTime.now();
-        modificationDate = LocalDateTime.now();
+        // Imported notes keep their original dates
+        if (creationDate == null) {
+            creationDate = LocalDateTime.now();
+        }
+        if (modificationDate == null) {
+            modificationDate = creationDate;
+        }
     }
 
     @PreUpdate
@@ -87,4 +106,20 @@ public class Note {
     public void setModificationDate(LocalDateTime modificationDate) {
         this.modificationDate = modificationDate;
     }
+
+    public long getChangeSeq() {
+        return changeSeq;
+    }
+
+    public void setChangeSeq(long changeSeq) {
+        this.changeSeq = changeSeq;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
 }
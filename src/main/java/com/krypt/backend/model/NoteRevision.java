@@ -0,0 +1,118 @@
+package com.krypt.backend.model;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+// One saved state of a note: the full content for snapshots, otherwise the edits from the previous revision
+@Entity
+@Table(name = "note_revision_table", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_note_revision_note_number", columnNames = {"note_id", "revision_number"})
+})
+public class NoteRevision {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "note_revision_seq")
+    @SequenceGenerator(name = "note_revision_seq", sequenceName = "note_revision_seq", allocationSize = 50)
+    @Column(name = "revision_id")
+    private Long id;
+
+    @Column(name = "note_id", nullable = false)
+    private Long noteId;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    // Equal to the note version the revision was written at
+    @Column(name = "revision_number", nullable = false)
+    private long revisionNumber;
+
+    @Column(nullable = false)
+    private boolean snapshot;
+
+    @Column(nullable = false)
+    private String title;
+
+    @Column(columnDefinition = "TEXT", nullable = false)
+    private String data;
+
+    @Column(nullable = false)
+    private LocalDateTime creationDate;
+
+    // Constructor
+    public NoteRevision() {}
+
+    public NoteRevision(Long noteId, Long userId, long revisionNumber, boolean snapshot, String title, String data) {
+        this.noteId = noteId;
+        this.userId = userId;
+        this.revisionNumber = revisionNumber;
+        this.snapshot = snapshot;
+        this.title = title;
+        this.data = data;
+        this.creationDate = LocalDateTime.now();
+    }
+
+    // Getter & Setter
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getNoteId() {
+        return noteId;
+    }
+
+    public void setNoteId(Long noteId) {
+        this.noteId = noteId;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+
+    public long getRevisionNumber() {
+        return revisionNumber;
+    }
+
+    public void setRevisionNumber(long revisionNumber) {
+        this.revisionNumber = revisionNumber;
+    }
+
+    public boolean isSnapshot() {
+        return snapshot;
+    }
+
+    public void setSnapshot(boolean snapshot) {
+        this.snapshot = snapshot;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public void setTitle(String title) {
+        this.title = title;
+    }
+
+    public String getData() {
+        return data;
+    }
+
+    public void setData(String data) {
+        this.data = data;
+    }
+
+    public LocalDateTime getCreationDate() {
+        return creationDate;
+    }
+
+    public void setCreationDate(LocalDateTime creationDate) {
+        this.creationDate = creationDate;
+    }
+}
@@ -0,0 +1,33 @@
+package com.krypt.backend.model;
+
+import jakarta.persistence.*;
+
+// Note-tag link. user_id is copied from the note so that tag filters are answered from
+// idx_note_tag_user_tag_note alone, without reading note_table first.
+@Entity
+@Table(name = "note_tag_table", indexes = {
+        @Index(name = "idx_note_tag_user_tag_note", columnList = "user_id, tag_id, note_id")
+})
+public class NoteTag {
+    @EmbeddedId
+    private NoteTagId id;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    // Constructor
+    public NoteTag() {}
+    public NoteTag(Long noteId, Long tagId, Long userId) {
+        this.id = new NoteTagId(noteId, tagId);
+        this.userId = userId;
+    }
+
+    // Getter & Setter
+    public NoteTagId getId() {
+        return id;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+}
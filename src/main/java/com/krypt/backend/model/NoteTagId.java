@@ -0,0 +1,42 @@
+package com.krypt.backend.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+@Embeddable
+public class NoteTagId implements Serializable {
+    @Column(name = "note_id", nullable = false)
+    private Long noteId;
+
+    @Column(name = "tag_id", nullable = false)
+    private Long tagId;
+
+    // Constructor
+    public NoteTagId() {}
+    public NoteTagId(Long noteId, Long tagId) {
+        this.noteId = noteId;
+        this.tagId = tagId;
+    }
+
+    // Getter & Setter
+    public Long getNoteId() {
+        return noteId;
+    }
+
+    public Long getTagId() {
+        return tagId;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof NoteTagId other && Objects.equals(noteId, other.noteId) && Objects.equals(tagId, other.tagId);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(noteId, tagId);
+    }
+}
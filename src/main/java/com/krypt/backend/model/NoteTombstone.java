@@ -0,0 +1,80 @@
+package com.krypt.backend.model;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+// Left behind by NoteService.deleteNote so that delta-sync clients learn about deletions
+@Entity
+@Table(name = "note_tombstone_table", indexes = {
+        @Index(name = "idx_note_tombstone_user_change_seq", columnList = "user_id, change_seq")
+})
+public class NoteTombstone {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "tombstone_id")
+    private Long id;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "note_id", nullable = false)
+    private Long noteId;
+
+    @Column(name = "change_seq", nullable = false)
+    private long changeSeq;
+
+    @Column(nullable = false)
+    private LocalDateTime deletionDate;
+
+    // Constructor
+    public NoteTombstone() {}
+
+    public NoteTombstone(Long userId, Long noteId, long changeSeq) {
+        this.userId = userId;
+        this.noteId = noteId;
+        this.changeSeq = changeSeq;
+        this.deletionDate = LocalDateTime.now();
+    }
+
+    // Getter & Setter
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+
+    public Long getNoteId() {
+        return noteId;
+    }
+
+    public void setNoteId(Long noteId) {
+        this.noteId = noteId;
+    }
+
+    public long getChangeSeq() {
+        return changeSeq;
+    }
+
+    public void setChangeSeq(long changeSeq) {
+        this.changeSeq = changeSeq;
+    }
+
+    public LocalDateTime getDeletionDate() {
+        return deletionDate;
+    }
+
+    public void setDeletionDate(LocalDateTime deletionDate) {
+        this.deletionDate = deletionDate;
+    }
+}
@@ -7,7 +7,8 @@ import jakarta.persistence.*;
 @Table(name = "token_table")
 public class Token {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "token_seq")
+    @SequenceGenerator(name = "token_seq", sequenceName = "token_seq", allocationSize = 50)
     @Column(name = "token_id")
     private Long id;
 
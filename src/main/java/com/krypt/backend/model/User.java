@@ -4,13 +4,15 @@ import com.fasterxml.jackson.annotation.JsonBackReference;
 import jakarta.persistence.*;
 
 import java.math.BigDecimal;
+import java.time.Instant;
 import java.time.LocalDateTime;
 
 @Entity
 @Table(name = "user_table")
 public class User {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "user_seq")
+    @SequenceGenerator(name = "user_seq", sequenceName = "user_seq", allocationSize = 50)
     @Column(name = "user_id")
     private Long id;
 
@@ -20,13 +22,14 @@ public class User {
     @Column(nullable = false, length = 50)
     private String firstName;
 
-    @Column(nullable = false, length = 100, unique = true)
+    // Unique whatever its case, through the index on lower(email)
+    @Column(nullable = false, length = 100)
     private String email;
 
     @Column(nullable = false)
     private String password;
 
-    @ManyToOne(optional = false, fetch = FetchType.EAGER)
+    @ManyToOne(optional = false, fetch = FetchType.LAZY)
     @JoinColumn(name = "role_id", nullable = false)
     @JsonBackReference
     private Role role;
@@ -42,6 +45,18 @@ public class User {
     @Column(nullable = false)
     private boolean emailVerified = false;
 
+    // Per-user note change counter used as the delta-sync cursor, only ever written by UserRepository.incrementNoteChangeSeq
+    @Column(columnDefinition = "bigint default 0 not null", insertable = false, updatable = false)
+    private long noteChangeSeq;
+
+    // UTF-8 bytes of the titles and contents of the user's notes, kept by the same statements as noteChangeSeq
+    @Column(columnDefinition = "bigint default 0 not null", insertable = false, updatable = false)
+    private long storageUsedBytes;
+
+    // Access tokens issued at or before this instant are revoked, only ever written by UserRepository.updateTokensNotBefore
+    @Column(insertable = false, updatable = false)
+    private Instant tokensNotBefore;
+
     // Date
     @PrePersist
     protected void onCreate() {
@@ -122,4 +137,16 @@ public class User {
     public void setEmailVerified(boolean emailVerified) {
         this.emailVerified = emailVerified;
     }
+
+    public long getStorageUsedBytes() {
+        return storageUsedBytes;
+    }
+
+    public long getNoteChangeSeq() {
+        return noteChangeSeq;
+    }
+
+    public Instant getTokensNotBefore() {
+        return tokensNotBefore;
+    }
 }
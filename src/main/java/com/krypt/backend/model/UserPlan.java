@@ -29,6 +29,13 @@ public class UserPlan {
     @Column(precision = 10, scale = 2)
     private BigDecimal currentPricePerMonth;
 
+    // AI calls used during aiPeriod (yyyy-MM), only ever written by the batched flush of AiQuotaService
+    @Column(columnDefinition = "bigint default 0 not null", insertable = false, updatable = false)
+    private long aiUsed;
+
+    @Column(length = 7, insertable = false, updatable = false)
+    private String aiPeriod;
+
     @PrePersist
     protected void onCreate() {
         if (baseRole != null) {
@@ -98,4 +105,12 @@ public class UserPlan {
     public void setCurrentPricePerMonth(BigDecimal currentPricePerMonth) {
         this.currentPricePerMonth = currentPricePerMonth;
     }
+
+    public long getAiUsed() {
+        return aiUsed;
+    }
+
+    public String getAiPeriod() {
+        return aiPeriod;
+    }
 }
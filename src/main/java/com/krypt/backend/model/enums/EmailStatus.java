@@ -0,0 +1,7 @@
+package com.krypt.backend.model.enums;
+
+public enum EmailStatus {
+    PENDING,
+    SENT,
+    FAILED
+}
@@ -1,13 +1,101 @@
 package com.krypt.backend.repository;
 
+import com.krypt.backend.dto.NoteDTO.NoteSummaryDTO;
 import com.krypt.backend.model.Note;
-import com.krypt.backend.model.User;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface NoteRepository extends JpaRepository<Note, Long> {
-    List<Note> findByUserOrderByTitleAsc(User user);
-}
\ No newline at end of file
+    List<Note> findByUserIdOrderByTitleAsc(Long userId);
+    Optional<Note> findByIdAndUserId(Long id, Long userId);
+    List<Note> findByUserIdAndChangeSeqGreaterThanOrderByChangeSeqAsc(Long userId, long changeSeq, Pageable pageable);
+
+    // Server-side cursor for exports: PostgreSQL only honours the fetch size inside a transaction
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "200"))
+    Stream<Note> streamByUserIdOrderByIdAsc(Long userId);
+
+    // Keyset pagination on (user_id, title, note_id), served by idx_note_user_title_id
+    @Query("""
+            select new com.krypt.backend.dto.NoteDTO.NoteSummaryDTO(
+                n.id, n.title, n.creationDate, n.modificationDate, length(n.content), substring(n.content, 1, :snippetLength))
+            from Note n
+            where n.user.id = :userId
+            order by n.title asc, n.id asc
+            """)
+    List<NoteSummaryDTO> findSummaries(Long userId, int snippetLength, Pageable pageable);
+
+    @Query("""
+            select new com.krypt.backend.dto.NoteDTO.NoteSummaryDTO(
+                n.id, n.title, n.creationDate, n.modificationDate, length(n.content), substring(n.content, 1, :snippetLength))
+            from Note n
+            where n.user.id = :userId
+              and (n.title > :afterTitle or (n.title = :afterTitle and n.id > :afterId))
+            order by n.title asc, n.id asc
+            """)
+    List<NoteSummaryDTO> findSummariesAfter(Long userId, String afterTitle, Long afterId, int snippetLength, Pageable pageable);
+
+    // Notes carrying at least minTags of tagIds: 1 for any of them, all of them when minTags is their count.
+    // The subquery is an index-only scan of idx_note_tag_user_tag_note, the page is then walked in title order.
+    @Query("""
+            select new com.krypt.backend.dto.NoteDTO.NoteSummaryDTO(
+                n.id, n.title, n.creationDate, n.modificationDate, length(n.content), substring(n.content, 1, :snippetLength))
+            from Note n
+            where n.user.id = :userId
+              and n.id in (select t.id.noteId from NoteTag t where t.userId = :userId and t.id.tagId in :tagIds
+                           group by t.id.noteId having count(t) >= :minTags)
+            order by n.title asc, n.id asc
+            """)
+    List<NoteSummaryDTO> findSummariesByTags(Long userId, Collection<Long> tagIds, long minTags, int snippetLength, Pageable pageable);
+
+    @Query("""
+            select new com.krypt.backend.dto.NoteDTO.NoteSummaryDTO(
+                n.id, n.title, n.creationDate, n.modificationDate, length(n.content), substring(n.content, 1, :snippetLength))
+            from Note n
+            where n.user.id = :userId
+              and (n.title > :afterTitle or (n.title = :afterTitle and n.id > :afterId))
+              and n.id in (select t.id.noteId from NoteTag t where t.userId = :userId and t.id.tagId in :tagIds
+                           group by t.id.noteId having count(t) >= :minTags)
+            order by n.title asc, n.id asc
+            """)
+    List<NoteSummaryDTO> findSummariesByTagsAfter(Long userId, Collection<Long> tagIds, long minTags, String afterTitle, Long afterId,
+                                                  int snippetLength, Pageable pageable);
+
+    @Query("select n.id from Note n where n.user.id = :userId and n.id in :noteIds")
+    List<Long> findOwnedIds(Long userId, Collection<Long> noteIds);
+
+    // Ranks on the GIN-indexed search_vector (V1 migration), ts_headline only runs on the returned page.
+    // Matches are delimited by the control characters chr(1) and chr(2), removed from the content beforehand:
+    // the snippet is raw note text, NoteService escapes it before turning them into <mark> tags.
+    @Query(value = """
+            SELECT r.note_id AS id, r.title AS title, r.modification_date AS modificationDate, r.rank AS rank,
+                   ts_headline('simple', translate(coalesce(r.content, ''), chr(1) || chr(2), ''), r.query,
+                               'StartSel=' || chr(1) || ', StopSel=' || chr(2) || ', MaxFragments=2, MaxWords=25, MinWords=8') AS snippet
+            FROM (
+                SELECT n.note_id, n.title, n.modification_date, n.content, q.query,
+                       ts_rank_cd(n.search_vector, q.query) AS rank
+                FROM note_table n, websearch_to_tsquery('simple', :query) AS q(query)
+                WHERE n.user_id = :userId AND n.search_vector @@ q.query
+                ORDER BY rank DESC, n.note_id
+                LIMIT :limit OFFSET :offset
+            ) r
+            ORDER BY r.rank DESC, r.note_id
+            """, nativeQuery = true)
+    List<NoteSearchHit> search(Long userId, String query, int limit, long offset);
+
+    @Query(value = """
+            SELECT sum(octet_length(content)) AS rawBytes, sum(pg_column_size(content)) AS storedBytes
+            FROM note_table TABLESAMPLE SYSTEM (:samplePercent)
+            """, nativeQuery = true)
+    NoteStorageSample sampleContentStorage(double samplePercent);
+}
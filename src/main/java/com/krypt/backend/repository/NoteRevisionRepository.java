@@ -0,0 +1,51 @@
+package com.krypt.backend.repository;
+
+import com.krypt.backend.dto.NoteDTO.NoteRevisionSummaryDTO;
+import com.krypt.backend.model.NoteRevision;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+public interface NoteRevisionRepository extends JpaRepository<NoteRevision, Long> {
+    boolean existsByNoteIdAndRevisionNumber(Long noteId, long revisionNumber);
+
+    List<NoteRevision> findByNoteIdAndRevisionNumberBetweenOrderByRevisionNumberAsc(Long noteId, long from, long to);
+
+    @Query("""
+            select new com.krypt.backend.dto.NoteDTO.NoteRevisionSummaryDTO(r.revisionNumber, r.title, r.creationDate, r.snapshot)
+            from NoteRevision r
+            where r.noteId = :noteId and r.userId = :userId and r.revisionNumber < :before
+            order by r.revisionNumber desc
+            """)
+    List<NoteRevisionSummaryDTO> findSummaries(Long noteId, Long userId, long before, Pageable pageable);
+
+    // Latest snapshot at or before a revision: the starting point to rebuild it
+    @Query("""
+            select max(r.revisionNumber) from NoteRevision r
+            where r.noteId = :noteId and r.userId = :userId and r.snapshot = true and r.revisionNumber <= :revisionNumber
+            """)
+    Optional<Long> findBaseSnapshot(Long noteId, Long userId, long revisionNumber);
+
+    @Modifying
+    @Query("delete from NoteRevision r where r.noteId = :noteId and r.revisionNumber < :revisionNumber")
+    int deleteByNoteIdAndRevisionNumberLessThan(Long noteId, long revisionNumber);
+
+    @Modifying
+    @Query("delete from NoteRevision r where r.noteId = :noteId")
+    int deleteByNoteId(Long noteId);
+
+    // Revisions older than the last snapshot taken before the cutoff are not needed to rebuild anything newer
+    @Modifying
+    @Query("""
+            delete from NoteRevision r
+            where r.revisionNumber < (
+                select max(s.revisionNumber) from NoteRevision s
+                where s.noteId = r.noteId and s.snapshot = true and s.creationDate < :cutoff)
+            """)
+    int deleteExpired(LocalDateTime cutoff);
+}
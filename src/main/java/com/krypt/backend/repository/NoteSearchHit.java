@@ -0,0 +1,12 @@
+package com.krypt.backend.repository;
+
+import java.time.LocalDateTime;
+
+// Projection of NoteRepository.search, column aliases must match the getters
+public interface NoteSearchHit {
+    Long getId();
+    String getTitle();
+    LocalDateTime getModificationDate();
+    Double getRank();
+    String getSnippet();
+}
@@ -0,0 +1,7 @@
+package com.krypt.backend.repository;
+
+// Projection of NoteRepository.sampleContentStorage
+public interface NoteStorageSample {
+    Long getRawBytes();
+    Long getStoredBytes();
+}
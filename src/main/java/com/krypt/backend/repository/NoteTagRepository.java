@@ -0,0 +1,23 @@
+package com.krypt.backend.repository;
+
+import com.krypt.backend.model.NoteTag;
+import com.krypt.backend.model.NoteTagId;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface NoteTagRepository extends JpaRepository<NoteTag, NoteTagId> {
+    @Query("select t.id.tagId from NoteTag t where t.id.noteId = :noteId and t.userId = :userId")
+    List<Long> findTagIds(Long noteId, Long userId);
+
+    @Modifying
+    @Query("delete from NoteTag t where t.userId = :userId and t.id.noteId in :noteIds and t.id.tagId in :tagIds")
+    int deleteLinks(Long userId, Collection<Long> noteIds, Collection<Long> tagIds);
+
+    @Modifying
+    @Query("delete from NoteTag t where t.id.noteId = :noteId")
+    int deleteByNoteId(Long noteId);
+}
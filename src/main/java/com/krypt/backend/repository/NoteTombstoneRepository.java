@@ -0,0 +1,11 @@
+package com.krypt.backend.repository;
+
+import com.krypt.backend.model.NoteTombstone;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.List;
+
+public interface NoteTombstoneRepository extends JpaRepository<NoteTombstone, Long> {
+    List<NoteTombstone> findByUserIdAndChangeSeqGreaterThanOrderByChangeSeqAsc(Long userId, long changeSeq, Pageable pageable);
+}
@@ -0,0 +1,29 @@
+package com.krypt.backend.repository;
+
+import com.krypt.backend.model.OutboundEmail;
+import com.krypt.backend.model.enums.EmailStatus;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+
+import java.time.Instant;
+import java.util.List;
+
+public interface OutboundEmailRepository extends JpaRepository<OutboundEmail, Long> {
+    // SKIP LOCKED (lock timeout -2): concurrent dispatchers claim disjoint batches instead of waiting on each other
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @Query("select e from OutboundEmail e where e.status = :status and e.nextAttemptAt <= :now order by e.nextAttemptAt")
+    List<OutboundEmail> findDue(EmailStatus status, Instant now, Pageable pageable);
+
+    long countByStatus(EmailStatus status);
+
+    @Modifying
+    @Query("delete from OutboundEmail e where e.status = :status and e.sentAt < :cutoff")
+    int deleteSentBefore(EmailStatus status, Instant cutoff);
+}
@@ -0,0 +1,10 @@
+package com.krypt.backend.repository;
+
+import com.krypt.backend.model.Tag;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.List;
+
+public interface TagRepository extends JpaRepository<Tag, Long> {
+    List<Tag> findAllByOrderByNameAsc();
+}
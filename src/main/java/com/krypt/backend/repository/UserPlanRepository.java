@@ -0,0 +1,17 @@
+package com.krypt.backend.repository;
+
+import com.krypt.backend.model.UserPlan;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public interface UserPlanRepository extends JpaRepository<UserPlan, Long> {
+    @Query("select p.user.id as userId, p.currentAiQuota as aiQuota, p.aiUsed as aiUsed, p.aiPeriod as aiPeriod from UserPlan p where p.user.id = :userId")
+    Optional<UserPlanUsage> findUsage(Long userId);
+
+    @Query("select p.user.id as userId, p.currentAiQuota as aiQuota, p.aiUsed as aiUsed, p.aiPeriod as aiPeriod from UserPlan p where p.user.id in :userIds")
+    List<UserPlanUsage> findUsages(Collection<Long> userIds);
+}
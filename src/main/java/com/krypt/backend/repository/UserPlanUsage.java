@@ -0,0 +1,8 @@
+package com.krypt.backend.repository;
+
+public interface UserPlanUsage {
+    Long getUserId();
+    Integer getAiQuota();
+    Long getAiUsed();
+    String getAiPeriod();
+}
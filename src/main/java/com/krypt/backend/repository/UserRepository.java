@@ -2,11 +2,56 @@ package com.krypt.backend.repository;
 
 import com.krypt.backend.model.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.time.Instant;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface UserRepository extends JpaRepository<User, Long> {
+    // Case-insensitive, on the unique index of lower(email)
+    @Query("select u from User u where lower(u.email) = lower(:emailUser)")
     Optional<User> findByEmail(String emailUser);
+
+    @Modifying
+    @Query("update User u set u.password = :password where lower(u.email) = lower(:email)")
+    int updatePassword(String email, String password);
+
+    // The row lock taken here serialises note writes of one user, so sequence order matches commit order.
+    // The storage delta rides on the same statement; a growth past storageLimit updates nothing.
+    @Modifying
+    @Query("""
+            update User u set u.noteChangeSeq = u.noteChangeSeq + 1, u.storageUsedBytes = u.storageUsedBytes + :storageDelta
+            where u.id = :userId and (:storageDelta <= 0 or u.storageUsedBytes + :storageDelta <= :storageLimit)
+            """)
+    int incrementNoteChangeSeq(Long userId, long storageDelta, long storageLimit);
+
+    // Reserves count sequence numbers at once for batch writes
+    @Modifying
+    @Query("""
+            update User u set u.noteChangeSeq = u.noteChangeSeq + :count, u.storageUsedBytes = u.storageUsedBytes + :storageDelta
+            where u.id = :userId and (:storageDelta <= 0 or u.storageUsedBytes + :storageDelta <= :storageLimit)
+            """)
+    int incrementNoteChangeSeqBy(Long userId, long count, long storageDelta, long storageLimit);
+
+    @Query("select u.noteChangeSeq from User u where u.id = :userId")
+    Optional<Long> findNoteChangeSeq(Long userId);
+
+    @Query("select u.storageUsedBytes from User u where u.id = :userId")
+    Optional<Long> findStorageUsedBytes(Long userId);
+
+    // The plan overrides the limit of the role once it exists
+    @Query("select coalesce((select p.currentStorageGb from UserPlan p where p.user.id = u.id), u.role.maxStorageGb) from User u where u.id = :userId")
+    Optional<Integer> findStorageLimitGb(Long userId);
+
+    // Revokes every access token of the user issued at or before notBefore
+    @Modifying
+    @Query("update User u set u.tokensNotBefore = :notBefore where u.id = :userId")
+    int updateTokensNotBefore(Long userId, Instant notBefore);
+
+    @Query("select u.id as id, u.tokensNotBefore as tokensNotBefore from User u where u.tokensNotBefore >= :since")
+    List<UserTokenWatermark> findTokenWatermarks(Instant since);
 }
@@ -0,0 +1,8 @@
+package com.krypt.backend.repository;
+
+import java.time.Instant;
+
+public interface UserTokenWatermark {
+    Long getId();
+    Instant getTokensNotBefore();
+}
@@ -0,0 +1,261 @@
+package com.krypt.backend.service;
+
+import com.krypt.backend.dto.UserDTO.QuotaDTO;
+import com.krypt.backend.model.Role;
+import com.krypt.backend.model.enums.RoleType;
+import com.krypt.backend.repository.UserPlanRepository;
+import com.krypt.backend.repository.UserPlanUsage;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Monthly AI quota of each user, metered in memory and written to userplan_table in batches.
+// A check reads a counter and a couple of fields, the database is only hit the first time a user is
+// seen and by the flush. Concurrent calls at the very edge of the quota may overshoot it by a few units,
+// and so may several instances between two flushes: this is a soft limit, not a billing ledger.
+@Service
+public class AiQuotaService {
+    private static final Logger log = LoggerFactory.getLogger(AiQuotaService.class);
+    // Usage is written to the month it was counted in, never over a month another instance already moved to
+    static final String FLUSH_SQL = "update userplan_table set ai_used = case when ai_period = ? then ai_used + ? else ? end, ai_period = ? "
+            + "where user_id = ? and (ai_period is null or ai_period <= ?)";
+    // A plan created concurrently by another request is kept, without failing the caller's transaction
+    static final String CREATE_PLAN_SQL = "insert into userplan_table(user_id, role_id, current_storage_gb, current_ai_quota, current_price_per_month) "
+            + "values (?, ?, ?, ?, ?) on conflict (user_id) do nothing";
+    private static final int REFRESH_CHUNK = 500;
+
+    private final UserPlanRepository userPlanRepository;
+    private final RoleService roleService;
+    private final JdbcTemplate jdbcTemplate;
+    private final MeterRegistry meterRegistry;
+    private final long idleMillis;
+    private final Map<Long, Meter> meters = new ConcurrentHashMap<>();
+    private final Map<String, Counter> consumed = new ConcurrentHashMap<>();
+    private final Map<String, Counter> rejected = new ConcurrentHashMap<>();
+    private final Timer flushTimer;
+
+    public AiQuotaService(UserPlanRepository userPlanRepository, RoleService roleService,
+                          JdbcTemplate jdbcTemplate, MeterRegistry meterRegistry,
+                          @Value("${krypt.quota.ai.idle-eviction:PT30M}") Duration idleEviction) {
+        this.userPlanRepository = userPlanRepository;
+        this.roleService = roleService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.meterRegistry = meterRegistry;
+        this.idleMillis = idleEviction.toMillis();
+
+        Gauge.builder("krypt.quota.ai.meters", meters, Map::size)
+                .description("Users whose AI usage is metered in memory")
+                .register(meterRegistry);
+        this.flushTimer = Timer.builder("krypt.quota.ai.flush")
+                .description("Batched writes of AI usage to userplan_table")
+                .register(meterRegistry);
+    }
+
+    // Counts one AI call of the user, or refuses it with 429 once the monthly quota is used up
+    public void consume(Long userId, RoleType roleType, String feature) {
+        if (!tryConsume(userId, roleType, feature)) {
+            throw new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS, "AI quota exceeded");
+        }
+    }
+
+    // Refuses with 429 once the quota is used up without counting a call, for work only charged once it succeeded
+    public void requireAvailable(Long userId, RoleType roleType, String feature) {
+        Meter meter = meter(userId, roleType);
+        meter.lastUsed = System.currentTimeMillis();
+        if (meter.used() >= meter.limit) {
+            rejected.computeIfAbsent(feature, name -> counter("krypt.quota.ai.rejected", name)).increment();
+            throw new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS, "AI quota exceeded");
+        }
+    }
+
+    public boolean tryConsume(Long userId, RoleType roleType, String feature) {
+        Meter meter;
+        do {
+            meter = meter(userId, roleType);
+            meter.lastUsed = System.currentTimeMillis();
+            if (meter.used() >= meter.limit) {
+                rejected.computeIfAbsent(feature, name -> counter("krypt.quota.ai.rejected", name)).increment();
+                return false;
+            }
+            // Refused once the flush has closed the meter, the call is then counted on a fresh one
+        } while (!meter.add());
+        consumed.computeIfAbsent(feature, name -> counter("krypt.quota.ai.consumed", name)).increment();
+        return true;
+    }
+
+    public QuotaDTO getUsage(Long userId, RoleType roleType) {
+        Meter meter = meter(userId, roleType);
+        return new QuotaDTO(Math.min(meter.used(), meter.limit), meter.limit);
+    }
+
+    // Writes every pending delta in one JDBC batch, then reloads the persisted usage so that calls counted
+    // by other instances and plan changes are seen. Idle meters and meters of a past month are dropped,
+    // their last delta still written to the month it belongs to.
+    @Scheduled(fixedDelayString = "${krypt.quota.ai.flush-interval:PT10S}")
+    public void flush() {
+        if (meters.isEmpty()) {
+            return;
+        }
+        flushTimer.record(() -> {
+            String period = currentPeriod();
+            long idleBefore = System.currentTimeMillis() - idleMillis;
+            List<Object[]> batch = new ArrayList<>();
+            List<Meter> flushed = new ArrayList<>();
+            List<Long> refreshed = new ArrayList<>();
+            for (Map.Entry<Long, Meter> entry : meters.entrySet()) {
+                Meter meter = entry.getValue();
+                boolean evict = !meter.period.equals(period) || meter.lastUsed < idleBefore;
+                long total;
+                if (evict) {
+                    // Closing reads the final count atomically: a call racing it either lands in this batch
+                    // or is refused by the closed meter and counted on a new one
+                    meters.remove(entry.getKey(), meter);
+                    total = meter.close();
+                } else {
+                    total = meter.total();
+                }
+                long delta = total - meter.flushed;
+                if (delta > 0) {
+                    batch.add(new Object[]{meter.period, delta, delta, meter.period, entry.getKey(), meter.period});
+                    flushed.add(meter);
+                    meter.pending = total;
+                }
+                if (!evict) {
+                    refreshed.add(entry.getKey());
+                }
+            }
+
+            if (!batch.isEmpty()) {
+                jdbcTemplate.batchUpdate(FLUSH_SQL, batch);
+                // persisted first, so a concurrent check may briefly overcount but never undercount
+                flushed.forEach(meter -> {
+                    meter.persisted += meter.pending - meter.flushed;
+                    meter.flushed = meter.pending;
+                });
+            }
+            for (int from = 0; from < refreshed.size(); from += REFRESH_CHUNK) {
+                List<Long> chunk = refreshed.subList(from, Math.min(refreshed.size(), from + REFRESH_CHUNK));
+                for (UserPlanUsage usage : userPlanRepository.findUsages(chunk)) {
+                    Meter meter = meters.get(usage.getUserId());
+                    if (meter != null) {
+                        meter.reload(usage, period);
+                    }
+                }
+            }
+            log.debug("Flushed AI usage of {} users", batch.size());
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    private Meter meter(Long userId, RoleType roleType) {
+        while (true) {
+            Meter meter = meters.get(userId);
+            if (meter == null) {
+                // Loaded outside of the map so a slow query never blocks the other users of its bin
+                Meter loaded = load(userId, roleType);
+                Meter existing = meters.putIfAbsent(userId, loaded);
+                meter = existing == null ? loaded : existing;
+            }
+            // A meter is removed from the map before it is closed, a closed one was read just before its eviction
+            if (!meter.isClosed()) {
+                return meter;
+            }
+        }
+    }
+
+    private Meter load(Long userId, RoleType roleType) {
+        String period = currentPeriod();
+        Meter meter = new Meter(period, System.currentTimeMillis());
+        UserPlanUsage usage = userPlanRepository.findUsage(userId).orElse(null);
+        if (usage == null) {
+            // Plans are created on first use, from the limits of the role in the token
+            Role role = roleService.getRole(roleType);
+            jdbcTemplate.update(CREATE_PLAN_SQL, userId, role.getId(), role.getMaxStorageGb(), role.getAiQuota(), role.getPricePerMonth());
+            usage = userPlanRepository.findUsage(userId).orElse(null);
+        }
+        if (usage != null) {
+            meter.reload(usage, period);
+        } else {
+            meter.limit = roleService.getRole(roleType).getAiQuota();
+        }
+        return meter;
+    }
+
+    private Counter counter(String name, String feature) {
+        return Counter.builder(name).tag("feature", feature).register(meterRegistry);
+    }
+
+    // Overridden by tests crossing a month boundary
+    String currentPeriod() {
+        return YearMonth.now(ZoneOffset.UTC).toString();
+    }
+
+    private static final class Meter {
+        private static final long CLOSED = -1;
+
+        private final String period;
+        // Calls counted since the meter was loaded, CLOSED once the flush has evicted it
+        private final AtomicLong total = new AtomicLong();
+        // Only written by the flush, which is never concurrent with itself
+        private volatile long flushed;
+        private long pending;
+        private volatile long persisted;
+        private volatile long limit;
+        private volatile long lastUsed;
+
+        private Meter(String period, long lastUsed) {
+            this.period = period;
+            this.lastUsed = lastUsed;
+        }
+
+        boolean add() {
+            return total.getAndUpdate(count -> count == CLOSED ? CLOSED : count + 1) != CLOSED;
+        }
+
+        // Final count, no call is added after it
+        long close() {
+            return total.getAndSet(CLOSED);
+        }
+
+        boolean isClosed() {
+            return total.get() == CLOSED;
+        }
+
+        long total() {
+            return total.get();
+        }
+
+        long used() {
+            long count = total.get();
+            return persisted + (count == CLOSED ? 0 : count - flushed);
+        }
+
+        void reload(UserPlanUsage usage, String currentPeriod) {
+            persisted = currentPeriod.equals(usage.getAiPeriod()) && usage.getAiUsed() != null ? usage.getAiUsed() : 0;
+            limit = usage.getAiQuota() == null ? 0 : usage.getAiQuota();
+        }
+    }
+}
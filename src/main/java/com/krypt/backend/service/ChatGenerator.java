@@ -0,0 +1,16 @@
+package com.krypt.backend.service;
+
+import com.krypt.backend.dto.ChatDTO.ChatMessageDTO;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+// Model backend of the chatbot. Implementations may block: ChatService calls them on a virtual thread,
+// one call per request, and stops a generation by letting onToken throw.
+public interface ChatGenerator {
+
+    // Produces the assistant reply to the conversation, whose last message is the user's, passing each
+    // token to onToken as soon as it is available. A "system" message with passages of the user's notes
+    // may come first.
+    void generate(List<ChatMessageDTO> messages, Consumer<String> onToken);
+}
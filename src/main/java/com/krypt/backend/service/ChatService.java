@@ -0,0 +1,329 @@
+package com.krypt.backend.service;
+
+import com.krypt.backend.dto.ChatDTO.ChatMessageDTO;
+import com.krypt.backend.dto.ChatDTO.ChatRequestDTO;
+import com.krypt.backend.dto.NoteDTO.PassageDTO;
+import com.krypt.backend.model.enums.RoleType;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Chatbot replies streamed over Server-Sent Events as the ChatGenerator produces them. Each request runs
+// on its own virtual thread, which waits for a slot while the client already holds an open stream:
+// at most max-active-per-user generations of a user run at once, and every user's turn for one of the
+// max-active generator slots is taken in arrival order, so a busy user cannot starve the others.
+// A user may have max-queued-per-user more requests waiting, further ones are refused with a 429.
+// Requests are checked against the AI quota when admitted and charged with their first token, so a request
+// that times out in the queue, fails or loses its client before answering costs nothing. While a request waits,
+// the passages of the user's notes closest to the question are looked up and given to the generator first.
+@Service
+public class ChatService {
+    private static final Logger log = LoggerFactory.getLogger(ChatService.class);
+    static final String FEATURE = "chat";
+    static final int MAX_MESSAGE_CHARS = 4000;
+    static final int MAX_HISTORY = 20;
+
+    private final ChatGenerator chatGenerator;
+    private final AiQuotaService aiQuotaService;
+    private final RetrievalService retrievalService;
+    private final int contextPassages;
+    private final int maxActivePerUser;
+    private final int maxQueuedPerUser;
+    private final Duration queueTimeout;
+    private final Duration timeout;
+    private final Semaphore generatorSlots;
+    private final Map<Long, UserSlots> users = new ConcurrentHashMap<>();
+    private final ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor();
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final Timer firstToken;
+    private final Timer generation;
+    private final Counter rejected;
+    private final Counter timedOut;
+
+    public ChatService(ChatGenerator chatGenerator, AiQuotaService aiQuotaService, RetrievalService retrievalService,
+                       MeterRegistry meterRegistry,
+                       @Value("${krypt.chat.context-passages:3}") int contextPassages,
+                       @Value("${krypt.chat.max-active:16}") int maxActive,
+                       @Value("${krypt.chat.max-active-per-user:1}") int maxActivePerUser,
+                       @Value("${krypt.chat.max-queued-per-user:2}") int maxQueuedPerUser,
+                       @Value("${krypt.chat.queue-timeout:PT30S}") Duration queueTimeout,
+                       @Value("${krypt.chat.timeout:PT2M}") Duration timeout) {
+        this.chatGenerator = chatGenerator;
+        this.aiQuotaService = aiQuotaService;
+        this.retrievalService = retrievalService;
+        this.contextPassages = contextPassages;
+        this.maxActivePerUser = maxActivePerUser;
+        this.maxQueuedPerUser = maxQueuedPerUser;
+        this.queueTimeout = queueTimeout;
+        this.timeout = timeout;
+        this.generatorSlots = new Semaphore(maxActive, true);
+
+        Gauge.builder("krypt.chat.active", active, AtomicInteger::get)
+                .description("Chat replies being generated").register(meterRegistry);
+        Gauge.builder("krypt.chat.waiting", waiting, AtomicInteger::get)
+                .description("Chat requests waiting for a generator slot").register(meterRegistry);
+        this.firstToken = Timer.builder("krypt.chat.first-token")
+                .description("Time from admission to the first token sent, queueing included").register(meterRegistry);
+        this.generation = Timer.builder("krypt.chat.generation")
+                .description("Time to generate a whole reply, excluding the queue").register(meterRegistry);
+        this.rejected = Counter.builder("krypt.chat.rejected")
+                .description("Chat requests refused because the user had too many in progress").register(meterRegistry);
+        this.timedOut = Counter.builder("krypt.chat.queue-timeouts")
+                .description("Chat requests that waited too long for a generator slot").register(meterRegistry);
+    }
+
+    public SseEmitter stream(Long userId, RoleType roleType, ChatRequestDTO request) {
+        List<ChatMessageDTO> messages = toMessages(request);
+        SseEmitter emitter = new SseEmitter(timeout.toMillis());
+        EmitterSink sink = new EmitterSink(emitter);
+        emitter.onCompletion(sink::cancel);
+        emitter.onTimeout(sink::cancel);
+        emitter.onError(error -> sink.cancel());
+        start(userId, roleType, messages, sink);
+        return emitter;
+    }
+
+    void start(Long userId, RoleType roleType, List<ChatMessageDTO> messages, ChatSink sink) {
+        UserSlots slots = admit(userId);
+        try {
+            aiQuotaService.requireAvailable(userId, roleType, FEATURE);
+            workers.execute(() -> run(userId, roleType, slots, messages, sink));
+        } catch (RuntimeException e) {
+            leave(userId);
+            throw e;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+
+    private void run(Long userId, RoleType roleType, UserSlots slots, List<ChatMessageDTO> messages, ChatSink sink) {
+        long admittedAt = System.nanoTime();
+        boolean userSlot = false;
+        boolean generatorSlot = false;
+        boolean queued = true;
+        waiting.incrementAndGet();
+        try {
+            // Sent at once, the client sees the stream open while the request waits for its turn
+            sink.send("queued", Map.of("waiting", waiting.get()));
+            List<ChatMessageDTO> prompt = withContext(userId, messages);
+            long deadline = admittedAt + queueTimeout.toNanos();
+            userSlot = slots.running.tryAcquire(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            generatorSlot = userSlot && generatorSlots.tryAcquire(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            waiting.decrementAndGet();
+            queued = false;
+            if (!generatorSlot) {
+                timedOut.increment();
+                sink.send("error", Map.of("error", "The chatbot is busy, please retry"));
+                sink.complete();
+                return;
+            }
+            active.incrementAndGet();
+            try {
+                generate(userId, roleType, prompt, sink, admittedAt);
+            } finally {
+                active.decrementAndGet();
+            }
+            sink.complete();
+        } catch (CancellationException | UncheckedIOException | IOException e) {
+            log.debug("Chat stream of user {} closed by the client", userId);
+        } catch (ResponseStatusException e) {
+            // The quota was used up by other requests while this one waited
+            try {
+                sink.send("error", Map.of("error", e.getReason()));
+            } catch (IOException | RuntimeException ignored) {
+                // The client is gone as well
+            }
+            sink.complete();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            sink.complete();
+        } catch (RuntimeException e) {
+            log.warn("Chat generation failed for user {}", userId, e);
+            try {
+                sink.send("error", Map.of("error", "The chatbot failed to answer"));
+            } catch (IOException | RuntimeException ignored) {
+                // The client is gone as well
+            }
+            sink.complete();
+        } finally {
+            if (queued) {
+                waiting.decrementAndGet();
+            }
+            if (generatorSlot) {
+                generatorSlots.release();
+            }
+            if (userSlot) {
+                slots.running.release();
+            }
+            leave(userId);
+        }
+    }
+
+    private void generate(Long userId, RoleType roleType, List<ChatMessageDTO> messages, ChatSink sink, long admittedAt) throws IOException {
+        int[] tokens = new int[1];
+        long startedAt = System.nanoTime();
+        chatGenerator.generate(messages, token -> {
+            if (sink.isCancelled()) {
+                throw new CancellationException();
+            }
+            if (tokens[0] == 0) {
+                // Charged before the answer reaches the client, refused with a 429 if the quota ran out meanwhile
+                aiQuotaService.consume(userId, roleType, FEATURE);
+            }
+            try {
+                sink.send("token", Map.of("text", token));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            if (tokens[0]++ == 0) {
+                firstToken.record(System.nanoTime() - admittedAt, TimeUnit.NANOSECONDS);
+            }
+        });
+        generation.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+        sink.send("done", Map.of("tokens", tokens[0]));
+    }
+
+    // A system message with the passages, first; the chat goes on without them if they cannot be found
+    private List<ChatMessageDTO> withContext(Long userId, List<ChatMessageDTO> messages) {
+        if (contextPassages == 0) {
+            return messages;
+        }
+        String question = messages.get(messages.size() - 1).content();
+        List<PassageDTO> passages;
+        try {
+            passages = retrievalService.search(userId, question.substring(0, Math.min(question.length(), RetrievalService.MAX_QUERY_CHARS)),
+                    contextPassages);
+        } catch (RuntimeException e) {
+            log.warn("No note passages for the chat of user {}: {}", userId, e.getMessage());
+            return messages;
+        }
+        if (passages.isEmpty()) {
+            return messages;
+        }
+        StringBuilder context = new StringBuilder("Extraits des notes de l'utilisateur :");
+        for (PassageDTO passage : passages) {
+            context.append("\n\n[").append(passage.title()).append("]\n").append(passage.text());
+        }
+        List<ChatMessageDTO> prompt = new ArrayList<>(messages.size() + 1);
+        prompt.add(new ChatMessageDTO("system", context.toString()));
+        prompt.addAll(messages);
+        return prompt;
+    }
+
+    private UserSlots admit(Long userId) {
+        return users.compute(userId, (id, slots) -> {
+            UserSlots current = slots == null ? new UserSlots(maxActivePerUser) : slots;
+            if (current.admitted >= maxActivePerUser + maxQueuedPerUser) {
+                rejected.increment();
+                throw new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS, "Too many chat requests in progress");
+            }
+            current.admitted++;
+            return current;
+        });
+    }
+
+    // The user's entry is dropped with its last request, idle users take no memory
+    private void leave(Long userId) {
+        users.computeIfPresent(userId, (id, slots) -> --slots.admitted == 0 ? null : slots);
+    }
+
+    static List<ChatMessageDTO> toMessages(ChatRequestDTO request) {
+        if (request == null || request.message() == null || request.message().isBlank()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "A message is expected");
+        }
+        if (request.message().length() > MAX_MESSAGE_CHARS) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Messages are limited to " + MAX_MESSAGE_CHARS + " characters");
+        }
+        List<ChatMessageDTO> history = request.history() == null ? List.of() : request.history();
+        if (history.size() > MAX_HISTORY) {
+            history = history.subList(history.size() - MAX_HISTORY, history.size());
+        }
+        List<ChatMessageDTO> messages = new ArrayList<>(history.size() + 1);
+        for (ChatMessageDTO message : history) {
+            if (message != null && message.content() != null && ("user".equals(message.role()) || "assistant".equals(message.role()))) {
+                messages.add(message);
+            }
+        }
+        messages.add(new ChatMessageDTO("user", request.message()));
+        return messages;
+    }
+
+    int activeUsers() {
+        return users.size();
+    }
+
+    // Where a request's events go: the SSE stream, or a recorder in tests
+    interface ChatSink {
+        void send(String event, Object data) throws IOException;
+
+        void complete();
+
+        boolean isCancelled();
+    }
+
+    private static final class UserSlots {
+        private final Semaphore running;
+        // Requests of the user admitted and not finished, running or waiting; guarded by users.compute
+        private int admitted;
+
+        private UserSlots(int maxActivePerUser) {
+            this.running = new Semaphore(maxActivePerUser, true);
+        }
+    }
+
+    private static final class EmitterSink implements ChatSink {
+        private final SseEmitter emitter;
+        private volatile boolean cancelled;
+
+        private EmitterSink(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        @Override
+        public void send(String event, Object data) throws IOException {
+            emitter.send(SseEmitter.event().name(event).data(data, MediaType.APPLICATION_JSON));
+        }
+
+        @Override
+        public void complete() {
+            emitter.complete();
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        void cancel() {
+            cancelled = true;
+        }
+    }
+}
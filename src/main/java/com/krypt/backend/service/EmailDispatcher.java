@@ -0,0 +1,199 @@
+package com.krypt.backend.service;
+
+import com.krypt.backend.model.OutboundEmail;
+import com.krypt.backend.model.enums.EmailStatus;
+import com.krypt.backend.repository.OutboundEmailRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Delivers the email outbox in batches. Rows are claimed with SKIP LOCKED and leased, so several instances
+// can dispatch at once and a batch left behind by a crash is picked up again once its lease runs out.
+// Each batch goes through a single SMTP connection; failed messages are retried with exponential backoff.
+@Service
+public class EmailDispatcher {
+    private static final Logger log = LoggerFactory.getLogger(EmailDispatcher.class);
+    private static final int MAX_ERROR_LENGTH = 500;
+
+    private final OutboundEmailRepository outboundEmailRepository;
+    private final JavaMailSender mailSender;
+    private final TransactionTemplate transactionTemplate;
+    private final String from;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final Duration backoff;
+    private final Duration maxBackoff;
+    private final Duration lease;
+    private final Duration retention;
+    private final AtomicLong pending = new AtomicLong();
+    private final Counter sent;
+    private final Counter retried;
+    private final Counter failed;
+    private final Timer batchTimer;
+
+    public EmailDispatcher(OutboundEmailRepository outboundEmailRepository, JavaMailSender mailSender,
+                           PlatformTransactionManager transactionManager, MeterRegistry meterRegistry,
+                           @Value("${krypt.mail.from:contact@krypt.dev}") String from,
+                           @Value("${krypt.mail.outbox.batch-size:50}") int batchSize,
+                           @Value("${krypt.mail.outbox.max-attempts:8}") int maxAttempts,
+                           @Value("${krypt.mail.outbox.backoff:PT30S}") Duration backoff,
+                           @Value("${krypt.mail.outbox.max-backoff:PT1H}") Duration maxBackoff,
+                           @Value("${krypt.mail.outbox.lease:PT5M}") Duration lease,
+                           @Value("${krypt.mail.outbox.retention:P7D}") Duration retention) {
+        if (batchSize < 1 || maxAttempts < 1) {
+            throw new IllegalArgumentException("krypt.mail.outbox.batch-size and max-attempts must be positive");
+        }
+        this.outboundEmailRepository = outboundEmailRepository;
+        this.mailSender = mailSender;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.from = from;
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+        this.backoff = backoff;
+        this.maxBackoff = maxBackoff;
+        this.lease = lease;
+        this.retention = retention;
+
+        Gauge.builder("krypt.mail.outbox.pending", pending, AtomicLong::get)
+                .description("Emails waiting in the outbox, including the ones waiting for a retry")
+                .register(meterRegistry);
+        this.sent = Counter.builder("krypt.mail.sent").description("Emails delivered to the SMTP server").register(meterRegistry);
+        this.retried = Counter.builder("krypt.mail.retries").description("Failed deliveries scheduled for a retry").register(meterRegistry);
+        this.failed = Counter.builder("krypt.mail.failed").description("Emails given up after max-attempts").register(meterRegistry);
+        this.batchTimer = Timer.builder("krypt.mail.batch").description("SMTP delivery of one outbox batch").register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${krypt.mail.outbox.poll-interval:PT5S}")
+    public void dispatch() {
+        List<OutboundEmail> batch;
+        int delivered;
+        do {
+            batch = claimBatch();
+            delivered = batch.isEmpty() ? 0 : deliver(batch);
+            // Keep draining full batches, but stop as soon as the server rejects everything
+        } while (batch.size() == batchSize && delivered > 0);
+        pending.set(outboundEmailRepository.countByStatus(EmailStatus.PENDING));
+    }
+
+    @Scheduled(cron = "${krypt.mail.outbox.purge-cron:0 45 4 * * *}")
+    public void purgeSent() {
+        Integer deleted = transactionTemplate.execute(status ->
+                outboundEmailRepository.deleteSentBefore(EmailStatus.SENT, Instant.now().minus(retention)));
+        log.info("Purged {} sent emails older than {}", deleted, retention);
+    }
+
+    private List<OutboundEmail> claimBatch() {
+        Instant now = Instant.now();
+        return transactionTemplate.execute(status -> {
+            List<OutboundEmail> due = outboundEmailRepository.findDue(EmailStatus.PENDING, now, PageRequest.of(0, batchSize));
+            for (OutboundEmail email : due) {
+                email.setAttempts(email.getAttempts() + 1);
+                email.setNextAttemptAt(now.plus(lease));
+            }
+            return due;
+        });
+    }
+
+    // Sends the batch outside any transaction and records the outcome of every message
+    private int deliver(List<OutboundEmail> batch) {
+        Map<MimeMessage, OutboundEmail> messages = new LinkedHashMap<>();
+        Map<OutboundEmail, Exception> failures = new HashMap<>();
+        for (OutboundEmail email : batch) {
+            try {
+                messages.put(toMimeMessage(email), email);
+            } catch (MessagingException e) {
+                failures.put(email, e);
+            }
+        }
+
+        if (!messages.isEmpty()) {
+            Timer.Sample sample = Timer.start();
+            try {
+                mailSender.send(messages.keySet().toArray(MimeMessage[]::new));
+            } catch (MailSendException e) {
+                if (e.getFailedMessages().isEmpty()) {
+                    messages.values().forEach(email -> failures.put(email, e));
+                } else {
+                    e.getFailedMessages().forEach((message, cause) -> {
+                        OutboundEmail email = messages.get(message);
+                        if (email != null) {
+                            failures.put(email, cause);
+                        }
+                    });
+                }
+            } catch (MailException e) {
+                messages.values().forEach(email -> failures.put(email, e));
+            }
+            sample.stop(batchTimer);
+        }
+
+        Instant now = Instant.now();
+        for (OutboundEmail email : batch) {
+            Exception failure = failures.get(email);
+            if (failure == null) {
+                email.setStatus(EmailStatus.SENT);
+                email.setSentAt(now);
+                email.setLastError(null);
+                sent.increment();
+            } else {
+                scheduleRetry(email, failure, now);
+            }
+        }
+        transactionTemplate.executeWithoutResult(status -> outboundEmailRepository.saveAll(batch));
+        return batch.size() - failures.size();
+    }
+
+    private void scheduleRetry(OutboundEmail email, Exception failure, Instant now) {
+        String error = String.valueOf(failure.getMessage());
+        email.setLastError(error.length() > MAX_ERROR_LENGTH ? error.substring(0, MAX_ERROR_LENGTH) : error);
+        if (email.getAttempts() >= maxAttempts) {
+            email.setStatus(EmailStatus.FAILED);
+            failed.increment();
+            log.warn("Giving up on email {} to {} after {} attempts: {}", email.getId(), email.getRecipient(), email.getAttempts(), error);
+            return;
+        }
+        email.setNextAttemptAt(now.plus(backoffFor(email.getAttempts())));
+        retried.increment();
+        log.debug("Email {} failed (attempt {}), retrying: {}", email.getId(), email.getAttempts(), error);
+    }
+
+    // backoff, 2 x backoff, 4 x backoff... capped at maxBackoff
+    Duration backoffFor(int attempts) {
+        Duration delay = backoff.multipliedBy(1L << Math.min(attempts - 1, 30));
+        return delay.compareTo(maxBackoff) > 0 ? maxBackoff : delay;
+    }
+
+    private MimeMessage toMimeMessage(OutboundEmail email) throws MessagingException {
+        MimeMessage message = mailSender.createMimeMessage();
+        MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
+
+        helper.setTo(email.getRecipient());
+        helper.setSubject(email.getSubject());
+        helper.setText(email.getBody(), true);
+        helper.setFrom(from);
+        return message;
+    }
+}
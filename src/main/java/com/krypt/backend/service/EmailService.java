@@ -1,32 +1,19 @@
 package com.krypt.backend.service;
 
-import jakarta.mail.MessagingException;
-import jakarta.mail.internet.MimeMessage;
-import org.springframework.mail.javamail.JavaMailSender;
-import org.springframework.mail.javamail.MimeMessageHelper;
+import com.krypt.backend.model.OutboundEmail;
+import com.krypt.backend.repository.OutboundEmailRepository;
 import org.springframework.stereotype.Service;
 
 @Service
 public class EmailService {
-    private final JavaMailSender mailSender;
+    private final OutboundEmailRepository outboundEmailRepository;
 
-    public EmailService(JavaMailSender mailSender) {
-        this.mailSender = mailSender;
+    public EmailService(OutboundEmailRepository outboundEmailRepository) {
+        this.outboundEmailRepository = outboundEmailRepository;
     }
 
-    public void sendEmail(String to, String subject, String htmlContent) {
-        try {
-            MimeMessage message = mailSender.createMimeMessage();
-            MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
-
-            helper.setTo(to);
-            helper.setSubject(subject);
-            helper.setText(htmlContent, true);
-            helper.setFrom("contact@krypt.dev");
-
-            mailSender.send(message);
-        } catch (MessagingException e) {
-            throw new RuntimeException("Error while sending mail : ", e);
-        }
+    // Written to the outbox in the caller's transaction, EmailDispatcher sends it in the background
+    public void queueEmail(String to, String subject, String htmlContent) {
+        outboundEmailRepository.save(new OutboundEmail(to, subject, htmlContent));
     }
 }
@@ -0,0 +1,169 @@
+package com.krypt.backend.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Email templates compiled once at startup into literal segments and {{variable}} slots; rendering only
+// appends them into a buffer sized from the template. Variables are HTML-escaped in the body, the subject is plain text.
+// File names follow ResourceBundle: verify-email.html is the default, verify-email_fr.html its French variant.
+// The first line of a template is its "Subject: ..." header.
+@Component
+public class EmailTemplates {
+    private static final String SUBJECT_HEADER = "Subject:";
+    private static final String EXTENSION = ".html";
+
+    private final Map<String, Template> templates;
+    private final Set<Locale> locales;
+    // Keyed by supported locale only, so arbitrary Accept-Language values cannot grow it
+    private final Map<TemplateKey, Template> resolved = new ConcurrentHashMap<>();
+
+    public EmailTemplates(@Value("${krypt.mail.templates:classpath*:templates/email/*.html}") String location) {
+        Map<String, Template> compiled = new HashMap<>();
+        Set<Locale> variants = new HashSet<>();
+        try {
+            for (Resource resource : new PathMatchingResourcePatternResolver().getResources(location)) {
+                String fileName = resource.getFilename();
+                String name = fileName.substring(0, fileName.length() - EXTENSION.length());
+                compiled.put(name, parse(name, resource.getContentAsString(StandardCharsets.UTF_8)));
+                int suffix = name.indexOf('_');
+                if (suffix >= 0) {
+                    String[] parts = name.substring(suffix + 1).split("_", 2);
+                    variants.add(parts.length == 1 ? Locale.of(parts[0]) : Locale.of(parts[0], parts[1]));
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot load email templates from " + location, e);
+        }
+        this.templates = Map.copyOf(compiled);
+        this.locales = Set.copyOf(variants);
+    }
+
+    public record RenderedEmail(String subject, String html) {}
+
+    public RenderedEmail render(String name, Locale locale, Map<String, String> values) {
+        return render(resolved.computeIfAbsent(new TemplateKey(name, supportedLocale(locale)), this::lookup), values);
+    }
+
+    static RenderedEmail render(Template template, Map<String, String> values) {
+        return new RenderedEmail(template.subject().render(values, false), template.body().render(values, true));
+    }
+
+    // fr_CA if some template has that variant, then fr, then the root locale of the default templates
+    Locale supportedLocale(Locale locale) {
+        Locale country = Locale.of(locale.getLanguage(), locale.getCountry());
+        if (locales.contains(country)) {
+            return country;
+        }
+        Locale language = Locale.of(locale.getLanguage());
+        return locales.contains(language) ? language : Locale.ROOT;
+    }
+
+    // name_fr_CA, then name_fr, then name
+    private Template lookup(TemplateKey key) {
+        String language = key.locale().getLanguage();
+        String country = key.locale().getCountry();
+        return Optional.ofNullable(country.isEmpty() ? null : templates.get(key.name() + '_' + language + '_' + country))
+                .or(() -> Optional.ofNullable(language.isEmpty() ? null : templates.get(key.name() + '_' + language)))
+                .or(() -> Optional.ofNullable(templates.get(key.name())))
+                .orElseThrow(() -> new IllegalArgumentException("Unknown email template: " + key.name()));
+    }
+
+    static Template parse(String name, String source) {
+        int endOfLine = source.indexOf('\n');
+        if (!source.startsWith(SUBJECT_HEADER) || endOfLine < 0) {
+            throw new IllegalStateException("Email template " + name + " must start with a '" + SUBJECT_HEADER + "' line");
+        }
+        String subject = source.substring(SUBJECT_HEADER.length(), endOfLine).strip();
+        return new Template(compile(name, subject), compile(name, source.substring(endOfLine + 1)));
+    }
+
+    static CompiledTemplate compile(String name, String source) {
+        List<String> literals = new ArrayList<>();
+        List<String> variables = new ArrayList<>();
+        int position = 0;
+        int open;
+        while ((open = source.indexOf("{{", position)) >= 0) {
+            int close = source.indexOf("}}", open + 2);
+            if (close < 0) {
+                throw new IllegalStateException("Unclosed variable in email template " + name + " at offset " + open);
+            }
+            literals.add(source.substring(position, open));
+            variables.add(source.substring(open + 2, close).strip());
+            position = close + 2;
+        }
+        literals.add(source.substring(position));
+        return new CompiledTemplate(literals.toArray(String[]::new), variables.toArray(String[]::new));
+    }
+
+    record Template(CompiledTemplate subject, CompiledTemplate body) {}
+
+    private record TemplateKey(String name, Locale locale) {}
+
+    // literals[i] is followed by variables[i]; there is one more literal than variables
+    record CompiledTemplate(String[] literals, String[] variables, int literalLength) {
+        // Room for typical variable values, so a render rarely grows its buffer
+        private static final int VARIABLE_ALLOWANCE = 64;
+
+        CompiledTemplate(String[] literals, String[] variables) {
+            this(literals, variables, Arrays.stream(literals).mapToInt(String::length).sum());
+        }
+
+        String render(Map<String, String> values, boolean escape) {
+            StringBuilder out = new StringBuilder(literalLength + variables.length * VARIABLE_ALLOWANCE);
+            renderTo(out, values, escape);
+            return out.toString();
+        }
+
+        void renderTo(StringBuilder out, Map<String, String> values, boolean escape) {
+            for (int i = 0; i < variables.length; i++) {
+                out.append(literals[i]);
+                String value = values.get(variables[i]);
+                if (value == null) {
+                    throw new IllegalArgumentException("Missing email template variable: " + variables[i]);
+                }
+                if (escape) {
+                    escapeHtml(value, out);
+                } else {
+                    out.append(value);
+                }
+            }
+            out.append(literals[variables.length]);
+        }
+    }
+
+    // Runs of safe characters are appended in bulk, most values contain nothing to escape
+    static void escapeHtml(String value, StringBuilder out) {
+        int start = 0;
+        for (int i = 0; i < value.length(); i++) {
+            String entity = switch (value.charAt(i)) {
+                case '&' -> "&amp;";
+                case '<' -> "&lt;";
+                case '>' -> "&gt;";
+                case '"' -> "&quot;";
+                case '\'' -> "&#39;";
+                default -> null;
+            };
+            if (entity != null) {
+                out.append(value, start, i).append(entity);
+                start = i + 1;
+            }
+        }
+        out.append(value, start, value.length());
+    }
+}
@@ -0,0 +1,11 @@
+package com.krypt.backend.service;
+
+// Text embeddings used by the passage index. Vectors of a provider all have its dimensions and are compared
+// by dot product, so they are expected to have unit length.
+public interface EmbeddingProvider {
+
+    int dimensions();
+
+    // The same text always gives the same vector
+    float[] embed(String text);
+}
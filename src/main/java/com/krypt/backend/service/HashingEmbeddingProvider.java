@@ -0,0 +1,79 @@
+package com.krypt.backend.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+// Stand-in embeddings used until a model is configured: the folded words and word pairs of the text hashed
+// into a signed fixed-size vector. Texts sharing words end up close, with no notion of meaning beyond that,
+// but the vectors are deterministic and cheap, which is what building and testing the index needs.
+@Component
+@ConditionalOnProperty(name = "krypt.retrieval.embedding", havingValue = "local", matchIfMissing = true)
+public class HashingEmbeddingProvider implements EmbeddingProvider {
+    private final int dimensions;
+
+    public HashingEmbeddingProvider(@Value("${krypt.retrieval.local.dimensions:256}") int dimensions) {
+        if (dimensions < 8) {
+            throw new IllegalArgumentException("At least 8 dimensions are expected");
+        }
+        this.dimensions = dimensions;
+    }
+
+    @Override
+    public int dimensions() {
+        return dimensions;
+    }
+
+    @Override
+    public float[] embed(String text) {
+        float[] vector = new float[dimensions];
+        int[] previous = {0};
+        TagMatcher.scan(text, (word, length) -> {
+            if (length <= 2) {
+                return;
+            }
+            int hash = hash(word, length);
+            add(vector, hash);
+            if (previous[0] != 0) {
+                // Pairs weigh half a word, they separate "note de cours" from "cours de note"
+                add(vector, mix(previous[0] * 31 + hash), 0.5f);
+            }
+            previous[0] = hash;
+        });
+        double norm = 0;
+        for (float value : vector) {
+            norm += value * value;
+        }
+        if (norm > 0) {
+            float scale = (float) (1 / Math.sqrt(norm));
+            for (int k = 0; k < vector.length; k++) {
+                vector[k] *= scale;
+            }
+        }
+        return vector;
+    }
+
+    private void add(float[] vector, int hash) {
+        add(vector, hash, 1f);
+    }
+
+    // The hash's top bit gives the sign, so that unrelated words cancel out rather than pile up
+    private void add(float[] vector, int hash, float weight) {
+        vector[Math.floorMod(hash, dimensions)] += hash < 0 ? -weight : weight;
+    }
+
+    private static int hash(char[] word, int length) {
+        int hash = 0x811c9dc5;
+        for (int i = 0; i < length; i++) {
+            hash = (hash ^ word[i]) * 0x01000193;
+        }
+        return mix(hash);
+    }
+
+    private static int mix(int hash) {
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        return hash == 0 ? 1 : hash;
+    }
+}
@@ -0,0 +1,45 @@
+package com.krypt.backend.service;
+
+import com.krypt.backend.dto.ChatDTO.ChatMessageDTO;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.function.Consumer;
+
+// Stand-in model used until a real backend is configured: a deterministic reply quoting the question,
+// sent a word at a time with a fixed delay so that streaming behaves as it would with a model
+@Component
+@ConditionalOnProperty(name = "krypt.chat.generator", havingValue = "local", matchIfMissing = true)
+public class LocalChatGenerator implements ChatGenerator {
+    private final Duration tokenDelay;
+
+    public LocalChatGenerator(@Value("${krypt.chat.local.token-delay:PT0.02S}") Duration tokenDelay) {
+        this.tokenDelay = tokenDelay;
+    }
+
+    @Override
+    public void generate(List<ChatMessageDTO> messages, Consumer<String> onToken) {
+        String question = messages.isEmpty() ? "" : messages.get(messages.size() - 1).content();
+        int turns = (int) messages.stream().filter(message -> !"system".equals(message.role())).count();
+        for (String token : reply(question, turns)) {
+            if (!tokenDelay.isZero()) {
+                try {
+                    Thread.sleep(tokenDelay);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+            onToken.accept(token);
+        }
+    }
+
+    // Words with their leading space, so that the tokens concatenate into the reply
+    static List<String> reply(String question, int turns) {
+        String text = "Réponse locale (" + turns + " message" + (turns > 1 ? "s" : "") + ") à : « " + question.strip() + " »";
+        return List.of(text.split("(?= )"));
+    }
+}
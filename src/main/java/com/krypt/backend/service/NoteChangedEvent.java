@@ -0,0 +1,6 @@
+package com.krypt.backend.service;
+
+// Published inside the write transaction, listeners receive it once the transaction has committed
+public record NoteChangedEvent(Long userId, Long noteId, Type type, long changeSeq, long version) {
+    public enum Type { CREATED, UPDATED, DELETED, IMPORTED }
+}
@@ -0,0 +1,146 @@
+package com.krypt.backend.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.krypt.backend.dto.NoteDTO.NoteRevisionDTO;
+import com.krypt.backend.dto.NoteDTO.NoteRevisionSummaryDTO;
+import com.krypt.backend.dto.NoteDTO.TextEditDTO;
+import com.krypt.backend.model.Note;
+import com.krypt.backend.model.NoteRevision;
+import com.krypt.backend.repository.NoteRevisionRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+// Version history: a full snapshot every snapshotInterval revisions and forward deltas in between,
+// so rebuilding any revision replays at most snapshotInterval deltas
+@Service
+public class NoteRevisionService {
+    private static final Logger log = LoggerFactory.getLogger(NoteRevisionService.class);
+    private static final TypeReference<List<TextEditDTO>> EDITS = new TypeReference<>() {};
+    static final int MAX_PAGE_SIZE = 200;
+
+    private final NoteRevisionRepository noteRevisionRepository;
+    private final ObjectMapper objectMapper;
+    private final int snapshotInterval;
+    private final int maxRevisions;
+    private final Duration maxAge;
+
+    public NoteRevisionService(NoteRevisionRepository noteRevisionRepository, ObjectMapper objectMapper,
+                               @Value("${krypt.notes.revisions.snapshot-interval:50}") int snapshotInterval,
+                               @Value("${krypt.notes.revisions.max-count:1000}") int maxRevisions,
+                               @Value("${krypt.notes.revisions.max-age:P365D}") Duration maxAge) {
+        if (snapshotInterval < 1 || maxRevisions < 1) {
+            throw new IllegalArgumentException("krypt.notes.revisions.snapshot-interval and max-count must be positive");
+        }
+        this.noteRevisionRepository = noteRevisionRepository;
+        this.objectMapper = objectMapper;
+        this.snapshotInterval = snapshotInterval;
+        this.maxRevisions = maxRevisions;
+        this.maxAge = maxAge;
+    }
+
+    // Called once the note is flushed, so that its version is the number of the new revision
+    @Transactional
+    public void recordRevision(Note note, String previousContent) {
+        // Interval revisions are snapshots anyway, no need to look the previous one up
+        boolean followsPrevious = previousContent != null && note.getVersion() % snapshotInterval != 0
+                && noteRevisionRepository.existsByNoteIdAndRevisionNumber(note.getId(), note.getVersion() - 1);
+        NoteRevision revision = noteRevisionRepository.save(createRevision(note, previousContent, followsPrevious));
+
+        if (revision.isSnapshot()) {
+            // Count-based retention, applied whenever a new starting point exists
+            long oldestKept = revision.getRevisionNumber() - maxRevisions + 1;
+            noteRevisionRepository.findBaseSnapshot(note.getId(), note.getUser().getId(), oldestKept)
+                    .ifPresent(base -> noteRevisionRepository.deleteByNoteIdAndRevisionNumberLessThan(note.getId(), base));
+        }
+    }
+
+    // Builds the revision row without saving it; a delta is only kept when it follows a stored revision
+    public NoteRevision createRevision(Note note, String previousContent, boolean followsPrevious) {
+        String content = note.getContent() == null ? "" : note.getContent();
+        long revisionNumber = note.getVersion();
+        boolean snapshot = !followsPrevious || revisionNumber % snapshotInterval == 0;
+
+        String data = content;
+        if (!snapshot) {
+            String delta = encode(TextDiff.diff(previousContent, content));
+            // Rewrites and large pastes are cheaper to store in full
+            if (delta.length() < content.length()) {
+                data = delta;
+            } else {
+                snapshot = true;
+            }
+        }
+        return new NoteRevision(note.getId(), note.getUser().getId(), revisionNumber, snapshot, note.getTitle(), data);
+    }
+
+    @Transactional(readOnly = true)
+    public List<NoteRevisionSummaryDTO> getRevisions(Long noteId, Long userId, Long before, int limit) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        return noteRevisionRepository.findSummaries(noteId, userId, before == null ? Long.MAX_VALUE : before,
+                PageRequest.of(0, pageSize));
+    }
+
+    @Transactional(readOnly = true)
+    public NoteRevisionDTO getRevision(Long noteId, Long userId, long revisionNumber) {
+        long base = noteRevisionRepository.findBaseSnapshot(noteId, userId, revisionNumber)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Revision not found"));
+        List<NoteRevision> chain = noteRevisionRepository
+                .findByNoteIdAndRevisionNumberBetweenOrderByRevisionNumberAsc(noteId, base, revisionNumber);
+        NoteRevision target = chain.get(chain.size() - 1);
+        if (target.getRevisionNumber() != revisionNumber) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Revision not found");
+        }
+        return new NoteRevisionDTO(revisionNumber, target.getTitle(), replay(chain), target.getCreationDate());
+    }
+
+    // Content of the last revision of a chain starting with a snapshot
+    public String replay(List<NoteRevision> chain) {
+        String content = null;
+        for (NoteRevision revision : chain) {
+            content = revision.isSnapshot() ? revision.getData() : TextPatch.apply(content, decode(revision.getData()));
+        }
+        return content;
+    }
+
+    @Transactional
+    public void deleteRevisions(Long noteId) {
+        noteRevisionRepository.deleteByNoteId(noteId);
+    }
+
+    // Age-based retention, the latest snapshot before the cutoff is kept so newer revisions stay rebuildable
+    @Scheduled(cron = "${krypt.notes.revisions.prune-cron:0 30 3 * * *}")
+    @Transactional
+    public void pruneExpiredRevisions() {
+        int deleted = noteRevisionRepository.deleteExpired(LocalDateTime.now().minus(maxAge));
+        log.info("Pruned {} note revisions older than {}", deleted, maxAge);
+    }
+
+    private String encode(List<TextEditDTO> edits) {
+        try {
+            return objectMapper.writeValueAsString(edits);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot encode revision delta", e);
+        }
+    }
+
+    private List<TextEditDTO> decode(String delta) {
+        try {
+            return objectMapper.readValue(delta, EDITS);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Corrupted revision delta", e);
+        }
+    }
+}
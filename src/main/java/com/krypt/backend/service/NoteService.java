@@ -1,69 +1,309 @@
 package com.krypt.backend.service;
 
 import com.krypt.backend.dto.NoteDTO.NoteDTO;
+import com.krypt.backend.dto.NoteDTO.NotePatchDTO;
+import com.krypt.backend.dto.NoteDTO.NoteSearchPageDTO;
+import com.krypt.backend.dto.NoteDTO.NoteSearchResultDTO;
+import com.krypt.backend.dto.NoteDTO.NoteSummaryDTO;
+import com.krypt.backend.dto.NoteDTO.NoteSummaryPageDTO;
 import com.krypt.backend.model.Note;
-import com.krypt.backend.model.User;
+import com.krypt.backend.model.NoteTombstone;
 import com.krypt.backend.repository.NoteRepository;
+import com.krypt.backend.repository.NoteSearchHit;
+import com.krypt.backend.repository.NoteTagRepository;
+import com.krypt.backend.repository.NoteTombstoneRepository;
 import com.krypt.backend.repository.UserRepository;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.server.ResponseStatusException;
 
-import java.util.Date;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
 import java.util.List;
 
 @Service
 public class NoteService {
+    static final int MAX_PAGE_SIZE = 200;
+    static final int SNIPPET_LENGTH = 160;
+
     private final NoteRepository noteRepository;
     private final UserRepository userRepository;
+    private final NoteTombstoneRepository noteTombstoneRepository;
+    private final NoteRevisionService noteRevisionService;
+    private final StorageQuotaService storageQuotaService;
+    private final TagService tagService;
+    private final NoteTagRepository noteTagRepository;
+    private final ApplicationEventPublisher eventPublisher;
 
-    public NoteService(NoteRepository noteRepository, UserRepository userRepository) {
+    public NoteService(NoteRepository noteRepository, UserRepository userRepository, NoteTombstoneRepository noteTombstoneRepository,
+                       NoteRevisionService noteRevisionService, StorageQuotaService storageQuotaService, TagService tagService,
+                       NoteTagRepository noteTagRepository, ApplicationEventPublisher eventPublisher) {
         this.noteRepository = noteRepository;
         this.userRepository = userRepository;
+        this.noteTombstoneRepository = noteTombstoneRepository;
+        this.noteRevisionService = noteRevisionService;
+        this.storageQuotaService = storageQuotaService;
+        this.tagService = tagService;
+        this.noteTagRepository = noteTagRepository;
+        this.eventPublisher = eventPublisher;
     }
 
-    public Note createNote(User user, NoteDTO noteDTO) {
+    @Transactional
+    public Note createNote(Long userId, NoteDTO noteDTO) {
         Note note = new Note();
-        note.setUser(user);
+        note.setUser(userRepository.getReferenceById(userId));
         note.setTitle(noteDTO.getTitle());
         note.setContent(noteDTO.getContent());
-        note.setCreationDate(noteDTO.getModificationDate());
-        return noteRepository.save(note);
+        note.setChangeSeq(nextChangeSeq(userId, StorageQuotaService.sizeOf(note.getTitle(), note.getContent())));
+        Note savedNote = noteRepository.save(note);
+        noteRevisionService.recordRevision(savedNote, null);
+        publish(userId, savedNote, NoteChangedEvent.Type.CREATED);
+        return savedNote;
     }
 
-    public List<Note> getUserNotes(User user) {
-        List<Note> notes = noteRepository.findByUserOrderByTitleAsc(user);
+    @Transactional
+    public List<Note> getUserNotes(Long userId) {
+        List<Note> notes = noteRepository.findByUserIdOrderByTitleAsc(userId);
 
         if (notes.isEmpty()) {
-            Note defaultNote = new Note();
-            defaultNote.setUser(user);
-            defaultNote.setTitle("Untitled 1");
-            defaultNote.setContent("");
-            noteRepository.save(defaultNote);
-            notes.add(defaultNote);
+            notes.add(createDefaultNote(userId));
         }
 
         return notes;
     }
 
-    public Note getNoteById(Long noteID, User user) {
-        Note note = noteRepository.findById(noteID).orElseThrow();
-        if (!note.getUser().getId().equals(user.getId())) {
-            throw new RuntimeException("Unauthorized access");
+    @Transactional
+    public NoteSummaryPageDTO getUserNoteSummaries(Long userId, int limit, String cursor, boolean withSnippet) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        int snippetLength = withSnippet ? SNIPPET_LENGTH : 0;
+        // One extra row tells whether another page exists without a count query
+        Pageable page = PageRequest.of(0, pageSize + 1);
+
+        List<NoteSummaryDTO> summaries;
+        if (cursor == null || cursor.isBlank()) {
+            summaries = noteRepository.findSummaries(userId, snippetLength, page);
+            if (summaries.isEmpty()) {
+                Note defaultNote = createDefaultNote(userId);
+                summaries = List.of(new NoteSummaryDTO(defaultNote.getId(), defaultNote.getTitle(),
+                        defaultNote.getCreationDate(), defaultNote.getModificationDate(), 0, null));
+            }
+        } else {
+            NoteCursor after = NoteCursor.decode(cursor);
+            summaries = noteRepository.findSummariesAfter(userId, after.title(), after.id(), snippetLength, page);
         }
 
-        return note;
+        return toPage(summaries, pageSize);
     }
 
-    public Note updateNote(Long noteID, User user, NoteDTO noteDTO) {
-        Note note = getNoteById(noteID, user);
+    // Same pages as getUserNoteSummaries, restricted to notes with any or all of the named tags
+    @Transactional(readOnly = true)
+    public NoteSummaryPageDTO getNoteSummariesByTags(Long userId, List<String> tags, boolean matchAll, int limit, String cursor, boolean withSnippet) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        List<Long> tagIds = tagService.resolve(tags, false);
+        // A missing tag can match no note when all of them are required
+        if (tagIds.isEmpty() || (matchAll && !tags.stream().allMatch(tagService::isKnown))) {
+            return new NoteSummaryPageDTO(List.of(), null);
+        }
+
+        long minTags = matchAll ? tagIds.size() : 1;
+        int snippetLength = withSnippet ? SNIPPET_LENGTH : 0;
+        Pageable page = PageRequest.of(0, pageSize + 1);
+        List<NoteSummaryDTO> summaries;
+        if (cursor == null || cursor.isBlank()) {
+            summaries = noteRepository.findSummariesByTags(userId, tagIds, minTags, snippetLength, page);
+        } else {
+            NoteCursor after = NoteCursor.decode(cursor);
+            summaries = noteRepository.findSummariesByTagsAfter(userId, tagIds, minTags, after.title(), after.id(), snippetLength, page);
+        }
+        return toPage(summaries, pageSize);
+    }
+
+    public NoteSearchPageDTO searchNotes(Long userId, String query, int page, int size) {
+        int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        int pageNumber = Math.max(page, 0);
+        if (query == null || query.isBlank()) {
+            return new NoteSearchPageDTO(List.of(), pageNumber, pageSize, false);
+        }
+
+        List<NoteSearchHit> hits = noteRepository.search(userId, query.strip(), pageSize + 1, (long) pageNumber * pageSize);
+        List<NoteSearchResultDTO> items = hits.stream()
+                .limit(pageSize)
+                .map(hit -> new NoteSearchResultDTO(hit.getId(), hit.getTitle(), hit.getModificationDate(),
+                        hit.getRank() == null ? 0 : hit.getRank(), highlight(hit.getSnippet())))
+                .toList();
+        return new NoteSearchPageDTO(items, pageNumber, pageSize, hits.size() > pageSize);
+    }
+
+    // Snippets are rendered as HTML by clients: the note text is escaped, only the match delimiters of
+    // NoteRepository.search become markup
+    static String highlight(String snippet) {
+        if (snippet == null) {
+            return null;
+        }
+        StringBuilder html = new StringBuilder(snippet.length() + 32);
+        EmailTemplates.escapeHtml(snippet, html);
+        for (int i = 0; i < html.length(); i++) {
+            char c = html.charAt(i);
+            if (c == '\u0001' || c == '\u0002') {
+                String tag = c == '\u0001' ? "<mark>" : "</mark>";
+                html.replace(i, i + 1, tag);
+                i += tag.length() - 1;
+            }
+        }
+        return html.toString();
+    }
+
+    public Note getNoteById(Long noteID, Long userId) {
+        return noteRepository.findByIdAndUserId(noteID, userId)
+                .orElseThrow(() -> new RuntimeException("Note not found"));
+    }
+
+    @Transactional
+    public Note updateNote(Long noteID, Long userId, NoteDTO noteDTO) {
+        Note note = getNoteById(noteID, userId);
+        String previousContent = note.getContent();
+        long previousSize = StorageQuotaService.sizeOf(note.getTitle(), previousContent);
         note.setTitle(noteDTO.getTitle());
         note.setContent(noteDTO.getContent());
         note.setModificationDate(noteDTO.getModificationDate());
-        return noteRepository.save(note);
+        note.setChangeSeq(nextChangeSeq(userId, StorageQuotaService.sizeOf(note.getTitle(), note.getContent()) - previousSize));
+        return saveWithRevision(userId, note, previousContent);
+    }
+
+    // Autosave path: applies a text diff against the version the client last saw instead of replacing the content
+    @Transactional
+    public Note patchNote(Long noteID, Long userId, NotePatchDTO notePatchDTO) {
+        Note note = getNoteById(noteID, userId);
+        String previousContent = note.getContent();
+        long previousSize = StorageQuotaService.sizeOf(note.getTitle(), previousContent);
+        if (notePatchDTO.getBaseVersion() == null || note.getVersion() != notePatchDTO.getBaseVersion()) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Note has changed since version " + notePatchDTO.getBaseVersion());
+        }
+
+        try {
+            note.setContent(TextPatch.apply(note.getContent(), notePatchDTO.getEdits()));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+        if (notePatchDTO.getTitle() != null) {
+            note.setTitle(notePatchDTO.getTitle());
+        }
+        note.setChangeSeq(nextChangeSeq(userId, StorageQuotaService.sizeOf(note.getTitle(), note.getContent()) - previousSize));
+        return saveWithRevision(userId, note, previousContent);
     }
 
-    public Note deleteNote(Long noteID, User user) {
-        Note note = getNoteById(noteID, user);
+    @Transactional
+    public Note deleteNote(Long noteID, Long userId) {
+        Note note = getNoteById(noteID, userId);
         noteRepository.delete(note);
+        noteRevisionService.deleteRevisions(note.getId());
+        noteTagRepository.deleteByNoteId(note.getId());
+        long changeSeq = nextChangeSeq(userId, -StorageQuotaService.sizeOf(note.getTitle(), note.getContent()));
+        noteTombstoneRepository.save(new NoteTombstone(userId, note.getId(), changeSeq));
+        eventPublisher.publishEvent(new NoteChangedEvent(userId, note.getId(), NoteChangedEvent.Type.DELETED, changeSeq, note.getVersion()));
         return note;
     }
+
+    /* DELTA SYNC */
+    // Notes written and deleted after the cursor, in change order; the returned cursor is the last change included
+    @Transactional(readOnly = true)
+    public NoteChanges getChanges(Long userId, long since, int limit) {
+        long current = userRepository.findNoteChangeSeq(userId).orElse(0L);
+        if (since >= current) {
+            return new NoteChanges(List.of(), List.of(), current, false);
+        }
+
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        Pageable page = PageRequest.of(0, pageSize + 1);
+        List<Note> notes = noteRepository.findByUserIdAndChangeSeqGreaterThanOrderByChangeSeqAsc(userId, since, page);
+        List<NoteTombstone> tombstones = noteTombstoneRepository.findByUserIdAndChangeSeqGreaterThanOrderByChangeSeqAsc(userId, since, page);
+
+        List<Note> updated = new ArrayList<>();
+        List<Long> deleted = new ArrayList<>();
+        long cursor = since;
+        int n = 0;
+        int t = 0;
+        while (updated.size() + deleted.size() < pageSize && (n < notes.size() || t < tombstones.size())) {
+            boolean takeNote = t >= tombstones.size()
+                    || (n < notes.size() && notes.get(n).getChangeSeq() < tombstones.get(t).getChangeSeq());
+            if (takeNote) {
+                Note note = notes.get(n++);
+                updated.add(note);
+                cursor = note.getChangeSeq();
+            } else {
+                NoteTombstone tombstone = tombstones.get(t++);
+                deleted.add(tombstone.getNoteId());
+                cursor = tombstone.getChangeSeq();
+            }
+        }
+
+        boolean hasMore = n < notes.size() || t < tombstones.size();
+        return new NoteChanges(updated, deleted, hasMore ? cursor : Math.max(cursor, current), hasMore);
+    }
+
+    public record NoteChanges(List<Note> updated, List<Long> deleted, long cursor, boolean hasMore) {}
+
+    // The flush bumps the version first, so a concurrent writer fails on the optimistic lock (409) rather than on the revision number
+    private Note saveWithRevision(Long userId, Note note, String previousContent) {
+        Note savedNote = noteRepository.saveAndFlush(note);
+        noteRevisionService.recordRevision(savedNote, previousContent);
+        publish(userId, savedNote, NoteChangedEvent.Type.UPDATED);
+        return savedNote;
+    }
+
+    // Fetched one row past pageSize, the extra row only tells that another page exists
+    private static NoteSummaryPageDTO toPage(List<NoteSummaryDTO> summaries, int pageSize) {
+        if (summaries.size() <= pageSize) {
+            return new NoteSummaryPageDTO(summaries, null);
+        }
+
+        List<NoteSummaryDTO> items = List.copyOf(summaries.subList(0, pageSize));
+        NoteSummaryDTO last = items.get(pageSize - 1);
+        return new NoteSummaryPageDTO(items, new NoteCursor(last.getId(), last.getTitle()).encode());
+    }
+
+    private void publish(Long userId, Note note, NoteChangedEvent.Type type) {
+        eventPublisher.publishEvent(new NoteChangedEvent(userId, note.getId(), type, note.getChangeSeq(), note.getVersion()));
+    }
+
+    // Also moves the storage counter by storageDelta bytes, refusing writes that would exceed the quota
+    private long nextChangeSeq(Long userId, long storageDelta) {
+        int updated = userRepository.incrementNoteChangeSeq(userId, storageDelta, storageQuotaService.limitFor(userId, storageDelta));
+        storageQuotaService.checkUpdated(updated, storageDelta);
+        return userRepository.findNoteChangeSeq(userId).orElseThrow(() -> new RuntimeException("User not found"));
+    }
+
+    private Note createDefaultNote(Long userId) {
+        Note defaultNote = new Note();
+        defaultNote.setUser(userRepository.getReferenceById(userId));
+        defaultNote.setTitle("Untitled 1");
+        defaultNote.setContent("");
+        defaultNote.setChangeSeq(nextChangeSeq(userId, StorageQuotaService.sizeOf(defaultNote.getTitle(), "")));
+        noteRepository.save(defaultNote);
+        publish(userId, defaultNote, NoteChangedEvent.Type.CREATED);
+        return defaultNote;
+    }
+
+    // Opaque keyset cursor: base64url of "<id>:<title>" of the last row returned
+    record NoteCursor(Long id, String title) {
+        String encode() {
+            return Base64.getUrlEncoder().withoutPadding()
+                    .encodeToString((id + ":" + title).getBytes(StandardCharsets.UTF_8));
+        }
+
+        static NoteCursor decode(String cursor) {
+            try {
+                String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                int separator = decoded.indexOf(':');
+                return new NoteCursor(Long.valueOf(decoded.substring(0, separator)), decoded.substring(separator + 1));
+            } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor");
+            }
+        }
+    }
 }
@@ -0,0 +1,50 @@
+package com.krypt.backend.service;
+
+import com.krypt.backend.repository.NoteRepository;
+import com.krypt.backend.repository.NoteStorageSample;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// Publishes how well note bodies compress, measured on a block sample of note_table
+@Service
+public class NoteStorageMetrics {
+    private final NoteRepository noteRepository;
+    private final double samplePercent;
+    private final AtomicLong rawBytes = new AtomicLong();
+    private final AtomicLong storedBytes = new AtomicLong();
+
+    public NoteStorageMetrics(NoteRepository noteRepository, MeterRegistry meterRegistry,
+                              @Value("${krypt.notes.compression.sample-percent:5}") double samplePercent) {
+        this.noteRepository = noteRepository;
+        this.samplePercent = samplePercent;
+
+        Gauge.builder("krypt.notes.content.bytes", rawBytes, AtomicLong::get)
+                .description("Uncompressed size of the sampled note bodies")
+                .tag("kind", "raw")
+                .register(meterRegistry);
+        Gauge.builder("krypt.notes.content.bytes", storedBytes, AtomicLong::get)
+                .description("On-disk size of the sampled note bodies")
+                .tag("kind", "stored")
+                .register(meterRegistry);
+        Gauge.builder("krypt.notes.compression.ratio", this, NoteStorageMetrics::compressionRatio)
+                .description("Raw over stored size of the sampled note bodies")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(initialDelayString = "PT1M", fixedDelayString = "${krypt.notes.compression.sample-interval:PT10M}")
+    public void sample() {
+        NoteStorageSample sample = noteRepository.sampleContentStorage(samplePercent);
+        rawBytes.set(sample.getRawBytes() == null ? 0 : sample.getRawBytes());
+        storedBytes.set(sample.getStoredBytes() == null ? 0 : sample.getStoredBytes());
+    }
+
+    public double compressionRatio() {
+        long stored = storedBytes.get();
+        return stored == 0 ? 1.0 : (double) rawBytes.get() / stored;
+    }
+}
@@ -0,0 +1,208 @@
+package com.krypt.backend.service;
+
+import com.krypt.backend.dto.NoteDTO.NoteChangeEventDTO;
+import com.krypt.backend.repository.UserRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Per-user fan-out of note changes over Server-Sent Events. Each connection has a bounded queue drained
+// by its own virtual thread, so a slow client never blocks the writer that published the change.
+// When a queue overflows its events are dropped for a single "resync" event: the client then catches up
+// with /api/notes/changes from its last cursor, which is lossless.
+@Service
+public class NoteStreamService {
+    private static final Logger log = LoggerFactory.getLogger(NoteStreamService.class);
+
+    private final UserRepository userRepository;
+    private final int queueCapacity;
+    private final int maxConnectionsPerUser;
+    private final Duration timeout;
+    private final Map<Long, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    private final AtomicInteger connections = new AtomicInteger();
+    private final ExecutorService writers = Executors.newVirtualThreadPerTaskExecutor();
+    private final Counter overflows;
+
+    public NoteStreamService(UserRepository userRepository, MeterRegistry meterRegistry,
+                             @Value("${krypt.notes.stream.queue-capacity:64}") int queueCapacity,
+                             @Value("${krypt.notes.stream.max-connections-per-user:8}") int maxConnectionsPerUser,
+                             @Value("${krypt.notes.stream.timeout:PT30M}") Duration timeout) {
+        this.userRepository = userRepository;
+        this.queueCapacity = queueCapacity;
+        this.maxConnectionsPerUser = maxConnectionsPerUser;
+        this.timeout = timeout;
+
+        Gauge.builder("krypt.notes.stream.connections", connections, AtomicInteger::get)
+                .description("Open note change streams")
+                .register(meterRegistry);
+        this.overflows = Counter.builder("krypt.notes.stream.overflows")
+                .description("Streams whose queue overflowed and were asked to resync")
+                .register(meterRegistry);
+    }
+
+    public SseEmitter subscribe(Long userId) {
+        SseEmitter emitter = new SseEmitter(timeout.toMillis());
+        Subscriber subscriber = new Subscriber(userId, emitter, queueCapacity);
+        subscribers.compute(userId, (id, userSubscribers) -> {
+            Set<Subscriber> current = userSubscribers == null ? ConcurrentHashMap.newKeySet() : userSubscribers;
+            if (current.size() >= maxConnectionsPerUser) {
+                throw new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS, "Too many open note streams");
+            }
+            current.add(subscriber);
+            connections.incrementAndGet();
+            return current;
+        });
+        emitter.onCompletion(subscriber::close);
+        emitter.onTimeout(subscriber::close);
+        emitter.onError(error -> subscriber.close());
+
+        // The current cursor lets the client tell whether it missed changes while disconnected
+        long changeSeq = userRepository.findNoteChangeSeq(userId).orElse(0L);
+        subscriber.offer(new StreamEvent("ready", changeSeq, new NoteChangeEventDTO("READY", null, changeSeq, 0)));
+        writers.execute(subscriber);
+        return emitter;
+    }
+
+    @TransactionalEventListener
+    public void onNoteChanged(NoteChangedEvent event) {
+        Set<Subscriber> userSubscribers = subscribers.get(event.userId());
+        if (userSubscribers == null || userSubscribers.isEmpty()) {
+            return;
+        }
+        StreamEvent streamEvent = new StreamEvent("note", event.changeSeq(),
+                new NoteChangeEventDTO(event.type().name(), event.noteId(), event.changeSeq(), event.version()));
+        for (Subscriber subscriber : userSubscribers) {
+            subscriber.offer(streamEvent);
+        }
+    }
+
+    // Keeps proxies from closing idle streams and detects clients that went away without closing
+    @Scheduled(fixedDelayString = "${krypt.notes.stream.heartbeat:PT25S}")
+    public void heartbeat() {
+        subscribers.values().forEach(userSubscribers -> userSubscribers.forEach(Subscriber::heartbeat));
+    }
+
+    public int connectionCount() {
+        return connections.get();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        subscribers.values().forEach(userSubscribers -> userSubscribers.forEach(subscriber -> subscriber.emitter.complete()));
+        writers.shutdownNow();
+    }
+
+    private void remove(Subscriber subscriber) {
+        subscribers.computeIfPresent(subscriber.userId, (id, userSubscribers) -> {
+            if (userSubscribers.remove(subscriber)) {
+                connections.decrementAndGet();
+            }
+            return userSubscribers.isEmpty() ? null : userSubscribers;
+        });
+    }
+
+    record StreamEvent(String name, Long id, Object data) {
+        static final StreamEvent HEARTBEAT = new StreamEvent(null, null, null);
+        static final StreamEvent RESYNC = new StreamEvent("resync", null, null);
+        // Only wakes the writer up to look at the closed and resync flags
+        static final StreamEvent WAKE_UP = new StreamEvent(null, null, null);
+    }
+
+    // Overflow and close are sticky flags read by the writer before every event, the queue only carries a
+    // wake-up for them. Unlike a marker put in the queue, they cannot be lost to producers refilling it.
+    final class Subscriber implements Runnable {
+        private final Long userId;
+        private final SseEmitter emitter;
+        private final BlockingQueue<StreamEvent> queue;
+        private final AtomicBoolean resync = new AtomicBoolean();
+        private volatile boolean closed;
+
+        Subscriber(Long userId, SseEmitter emitter, int capacity) {
+            this.userId = userId;
+            this.emitter = emitter;
+            this.queue = new ArrayBlockingQueue<>(capacity);
+        }
+
+        void offer(StreamEvent event) {
+            if (closed || queue.offer(event)) {
+                return;
+            }
+            if (resync.compareAndSet(false, true)) {
+                overflows.increment();
+            }
+            // A full queue means the writer is not parked, otherwise this wakes it up
+            queue.offer(StreamEvent.WAKE_UP);
+        }
+
+        // Dropped when the queue is full: there is something to send already
+        void heartbeat() {
+            queue.offer(StreamEvent.HEARTBEAT);
+        }
+
+        void close() {
+            closed = true;
+            queue.offer(StreamEvent.WAKE_UP);
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (!closed) {
+                    if (resync.getAndSet(false)) {
+                        // Everything queued is covered by the catch-up the client makes on resync
+                        queue.clear();
+                        emitter.send(toSse(StreamEvent.RESYNC));
+                        continue;
+                    }
+                    // take() parks the virtual thread, an idle stream holds no carrier thread
+                    StreamEvent event = queue.take();
+                    if (event != StreamEvent.WAKE_UP && !closed && !resync.get()) {
+                        emitter.send(toSse(event));
+                    }
+                }
+            } catch (IOException | IllegalStateException e) {
+                log.debug("Note stream of user {} closed: {}", userId, e.getMessage());
+                emitter.completeWithError(e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                emitter.complete();
+            } finally {
+                remove(this);
+            }
+        }
+
+        private SseEmitter.SseEventBuilder toSse(StreamEvent event) {
+            if (event == StreamEvent.HEARTBEAT) {
+                return SseEmitter.event().comment("heartbeat");
+            }
+            SseEmitter.SseEventBuilder sse = SseEmitter.event().name(event.name());
+            if (event.id() != null) {
+                sse.id(String.valueOf(event.id()));
+            }
+            return sse.data(event.data() == null ? "{}" : event.data(), MediaType.APPLICATION_JSON);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.krypt.backend.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.krypt.backend.dto.NoteDTO.NoteSummarizationDTO;
+import com.krypt.backend.model.Note;
+import com.krypt.backend.model.enums.RoleType;
+import com.krypt.backend.repository.NoteRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Extractive note summaries computed by TextRankSummarizer on a small fixed pool with a bounded queue, like
+// password hashing. Summaries are cached per user by a SHA-256 of the content, so that a hit tells nothing
+// about the notes of others, and only a summary actually computed is charged to the AI quota.
+@Service
+public class NoteSummaryService {
+    static final String FEATURE = "summary";
+    static final int MAX_SENTENCES = 10;
+
+    private final NoteRepository noteRepository;
+    private final AiQuotaService aiQuotaService;
+    private final ThreadPoolExecutor executor;
+    private final Cache<String, List<String>> summaries;
+    private final Timer summarizeTimer;
+    private final Counter rejected;
+
+    public NoteSummaryService(NoteRepository noteRepository, AiQuotaService aiQuotaService, MeterRegistry meterRegistry,
+                              @Value("${krypt.summary.threads:2}") int threads,
+                              @Value("${krypt.summary.queue-capacity:32}") int queueCapacity,
+                              @Value("${krypt.summary.cache.max-size:10000}") long maxSize,
+                              @Value("${krypt.summary.cache.ttl:P1D}") Duration ttl) {
+        this.noteRepository = noteRepository;
+        this.aiQuotaService = aiQuotaService;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+            Thread thread = new Thread(runnable, "note-summary-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.summaries = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterAccess(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, summaries, "noteSummaries");
+        this.summarizeTimer = Timer.builder("krypt.summary.time")
+                .description("Summarisation time, excluding the queue").register(meterRegistry);
+        Gauge.builder("krypt.summary.queue", executor, pool -> pool.getQueue().size())
+                .description("Summaries waiting for a thread").register(meterRegistry);
+        this.rejected = Counter.builder("krypt.summary.rejected")
+                .description("Summaries refused because the queue was full").register(meterRegistry);
+    }
+
+    public NoteSummarizationDTO summarize(Long noteId, Long userId, RoleType roleType, int sentences) {
+        if (sentences < 1 || sentences > MAX_SENTENCES) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Between 1 and " + MAX_SENTENCES + " sentences can be asked for");
+        }
+        Note note = noteRepository.findByIdAndUserId(noteId, userId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Note not found"));
+        String content = note.getContent() == null ? "" : note.getContent();
+        String key = key(userId, content, sentences);
+        List<String> cached = summaries.getIfPresent(key);
+        if (cached != null) {
+            return new NoteSummarizationDTO(noteId, cached, true);
+        }
+
+        // Checked before the work and charged after it, a refused or failed summary costs nothing
+        aiQuotaService.requireAvailable(userId, roleType, FEATURE);
+        Future<List<String>> result;
+        try {
+            result = executor.submit(() -> summarizeTimer.recordCallable(() -> TextRankSummarizer.summarize(content, sentences)));
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Too many summaries in progress, please retry");
+        }
+        List<String> summary = List.copyOf(await(result));
+        aiQuotaService.consume(userId, roleType, FEATURE);
+        summaries.put(key, summary);
+        return new NoteSummarizationDTO(noteId, summary, false);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private static List<String> await(Future<List<String>> result) {
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            result.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while summarising a note", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException("Note summarisation failed", e.getCause());
+        }
+    }
+
+    // Collision resistant, a note edited into another text must not get the summary of the first one
+    static String key(Long userId, String content, int sentences) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(content.getBytes(StandardCharsets.UTF_8));
+            return userId + ":" + Base64.getEncoder().withoutPadding().encodeToString(digest) + ":" + sentences;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
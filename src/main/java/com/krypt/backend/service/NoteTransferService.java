@@ -0,0 +1,255 @@
+package com.krypt.backend.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.krypt.backend.dto.NoteDTO.NoteDTO;
+import com.krypt.backend.model.Note;
+import com.krypt.backend.model.User;
+import com.krypt.backend.repository.NoteRepository;
+import com.krypt.backend.repository.UserRepository;
+import jakarta.persistence.EntityManager;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.attribute.FileTime;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+// Bulk import and export, streamed so that memory stays flat whatever the size of the vault
+@Service
+public class NoteTransferService {
+    static final int BATCH_SIZE = 100;
+    static final int MAX_ENTRY_BYTES = 16 * 1024 * 1024;
+    private static final int MAX_FILE_NAME_LENGTH = 120;
+
+    private final NoteRepository noteRepository;
+    private final UserRepository userRepository;
+    private final EntityManager entityManager;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transaction;
+    private final TransactionTemplate readOnlyTransaction;
+    private final StorageQuotaService storageQuotaService;
+    private final ApplicationEventPublisher eventPublisher;
+
+    public NoteTransferService(NoteRepository noteRepository, UserRepository userRepository, EntityManager entityManager,
+                               ObjectMapper objectMapper, PlatformTransactionManager transactionManager,
+                               StorageQuotaService storageQuotaService, ApplicationEventPublisher eventPublisher) {
+        this.noteRepository = noteRepository;
+        this.userRepository = userRepository;
+        this.entityManager = entityManager;
+        this.objectMapper = objectMapper;
+        this.storageQuotaService = storageQuotaService;
+        this.eventPublisher = eventPublisher;
+        this.transaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    /* IMPORT */
+    // One note per line: {"title": ..., "content": ..., "creationDate": ..., "modificationDate": ...}
+    public int importNdjson(Long userId, InputStream input) throws IOException {
+        List<NoteDTO> batch = new ArrayList<>(BATCH_SIZE);
+        int imported = 0;
+        try (MappingIterator<NoteDTO> lines = objectMapper.readerFor(NoteDTO.class).readValues(input)) {
+            while (lines.hasNextValue()) {
+                batch.add(lines.nextValue());
+                if (batch.size() == BATCH_SIZE) {
+                    imported += saveBatch(userId, batch);
+                    batch.clear();
+                }
+            }
+        } catch (JsonProcessingException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Invalid NDJSON after " + (imported + batch.size()) + " notes: " + e.getOriginalMessage());
+        }
+        return imported + saveBatch(userId, batch);
+    }
+
+    // Every .md, .markdown or .txt entry becomes a note titled after its file name
+    public int importMarkdownZip(Long userId, InputStream input) throws IOException {
+        List<NoteDTO> batch = new ArrayList<>(BATCH_SIZE);
+        int imported = 0;
+        try (ZipInputStream zip = new ZipInputStream(input, StandardCharsets.UTF_8)) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                if (entry.isDirectory() || !isMarkdown(entry.getName())) {
+                    continue;
+                }
+                NoteDTO noteDTO = new NoteDTO();
+                noteDTO.setTitle(titleOf(entry.getName()));
+                noteDTO.setContent(readEntry(zip, entry.getName()));
+                if (entry.getLastModifiedTime() != null) {
+                    noteDTO.setModificationDate(LocalDateTime.ofInstant(entry.getLastModifiedTime().toInstant(), ZoneId.systemDefault()));
+                }
+                batch.add(noteDTO);
+                if (batch.size() == BATCH_SIZE) {
+                    imported += saveBatch(userId, batch);
+                    batch.clear();
+                }
+            }
+        }
+        return imported + saveBatch(userId, batch);
+    }
+
+    // One short transaction per batch: the user row stays locked for one JDBC batch, not the whole upload
+    private int saveBatch(Long userId, List<NoteDTO> batch) {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        Integer saved = transaction.execute(status -> {
+            User user = userRepository.getReferenceById(userId);
+            List<Note> notes = new ArrayList<>(batch.size());
+            long storageDelta = 0;
+            for (NoteDTO noteDTO : batch) {
+                Note note = new Note();
+                note.setUser(user);
+                note.setTitle(noteDTO.getTitle() == null || noteDTO.getTitle().isBlank() ? "Untitled" : noteDTO.getTitle());
+                note.setContent(noteDTO.getContent() == null ? "" : noteDTO.getContent());
+                note.setCreationDate(noteDTO.getCreationDate());
+                note.setModificationDate(noteDTO.getModificationDate());
+                notes.add(note);
+                storageDelta += StorageQuotaService.sizeOf(note.getTitle(), note.getContent());
+            }
+
+            // A batch that does not fit in the quota is refused whole, the previous batches stay imported
+            int updated = userRepository.incrementNoteChangeSeqBy(userId, batch.size(), storageDelta,
+                    storageQuotaService.limitFor(userId, storageDelta));
+            storageQuotaService.checkUpdated(updated, storageDelta);
+            long lastSeq = userRepository.findNoteChangeSeq(userId).orElseThrow(() -> new RuntimeException("User not found"));
+            long changeSeq = lastSeq - batch.size();
+            for (Note note : notes) {
+                note.setChangeSeq(++changeSeq);
+            }
+            noteRepository.saveAll(notes);
+            entityManager.flush();
+            entityManager.clear();
+            // One event per batch, stream clients catch up through /changes
+            eventPublisher.publishEvent(new NoteChangedEvent(userId, null, NoteChangedEvent.Type.IMPORTED, lastSeq, 0));
+            return notes.size();
+        });
+        return saved == null ? 0 : saved;
+    }
+
+    /* EXPORT */
+    public void exportNdjson(Long userId, OutputStream output) throws IOException {
+        ObjectWriter writer = objectMapper.writerFor(NoteDTO.class);
+        forEachNote(userId, note -> {
+            try {
+                output.write(writer.writeValueAsBytes(toDTO(note)));
+                output.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        output.flush();
+    }
+
+    public void exportMarkdownZip(Long userId, OutputStream output) throws IOException {
+        try (ZipOutputStream zip = new ZipOutputStream(output, StandardCharsets.UTF_8)) {
+            Set<String> fileNames = new HashSet<>();
+            forEachNote(userId, note -> {
+                String fileName = fileNameOf(note.getTitle()) + ".md";
+                if (!fileNames.add(fileName)) {
+                    fileName = fileNameOf(note.getTitle()) + " (" + note.getId() + ").md";
+                    fileNames.add(fileName);
+                }
+                try {
+                    ZipEntry entry = new ZipEntry(fileName);
+                    if (note.getModificationDate() != null) {
+                        entry.setLastModifiedTime(FileTime.from(note.getModificationDate().atZone(ZoneId.systemDefault()).toInstant()));
+                    }
+                    zip.putNextEntry(entry);
+                    if (note.getContent() != null) {
+                        zip.write(note.getContent().getBytes(StandardCharsets.UTF_8));
+                    }
+                    zip.closeEntry();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+    }
+
+    // Rows come from a server-side cursor and are detached once written, so the persistence context never grows
+    private void forEachNote(Long userId, Consumer<Note> action) throws IOException {
+        try {
+            readOnlyTransaction.executeWithoutResult(status -> {
+                try (Stream<Note> notes = noteRepository.streamByUserIdOrderByIdAsc(userId)) {
+                    notes.forEach(note -> {
+                        action.accept(note);
+                        entityManager.detach(note);
+                    });
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private NoteDTO toDTO(Note note) {
+        NoteDTO noteDTO = new NoteDTO();
+        noteDTO.setTitle(note.getTitle());
+        noteDTO.setContent(note.getContent());
+        noteDTO.setCreationDate(note.getCreationDate());
+        noteDTO.setModificationDate(note.getModificationDate());
+        return noteDTO;
+    }
+
+    private static boolean isMarkdown(String entryName) {
+        String name = entryName.toLowerCase();
+        return !name.startsWith("__macosx/") && (name.endsWith(".md") || name.endsWith(".markdown") || name.endsWith(".txt"));
+    }
+
+    static String titleOf(String entryName) {
+        String name = entryName.substring(entryName.lastIndexOf('/') + 1);
+        int extension = name.lastIndexOf('.');
+        String title = extension > 0 ? name.substring(0, extension) : name;
+        return title.isBlank() ? "Untitled" : title;
+    }
+
+    static String fileNameOf(String title) {
+        String name = title == null ? "" : title.replaceAll("[\\\\/:*?\"<>|\\p{Cntrl}]", "_").strip();
+        if (name.isEmpty() || name.startsWith(".")) {
+            name = "Untitled" + name;
+        }
+        if (name.length() > MAX_FILE_NAME_LENGTH) {
+            name = name.substring(0, MAX_FILE_NAME_LENGTH);
+        }
+        return name;
+    }
+
+    // Bounded read, a zip bomb entry is rejected instead of being inflated in memory
+    private static String readEntry(ZipInputStream zip, String entryName) throws IOException {
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = zip.read(buffer)) != -1) {
+            if (content.size() + read > MAX_ENTRY_BYTES) {
+                throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE, entryName + " exceeds " + MAX_ENTRY_BYTES + " bytes");
+            }
+            content.write(buffer, 0, read);
+        }
+        return content.toString(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,434 @@
+package com.krypt.backend.service;
+
+import com.krypt.backend.dto.NoteDTO.PassageDTO;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Retrieval index over the notes of one user. Notes are cut into passages of a few sentences, each indexed
+// twice: in a BM25 inverted index of its folded words, title included, and as an embedding quantized to one
+// byte per dimension in an off-heap buffer that queries scan linearly. A query ranks passages both ways and
+// merges the two rankings by reciprocal rank fusion, which needs no calibration between BM25 and cosine.
+// Passages of a changed note are marked dead and new ones appended, dead ones are compacted away once they
+// outnumber the live ones. Chunking and embedding happen outside the lock, writers only hold it to swap.
+public final class PassageIndex {
+    static final double K1 = 1.2;
+    static final double B = 0.75;
+    // Passages taken from each ranking before fusion, and the usual RRF constant
+    static final int CANDIDATES = 50;
+    static final int RRF_K = 60;
+    static final long DELETED = Long.MAX_VALUE;
+    private static final int MIN_DEAD_FOR_COMPACTION = 256;
+
+    private final EmbeddingProvider embeddingProvider;
+    private final int dimensions;
+    private final int passageChars;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // Version indexed per note, DELETED once deleted so that a late write of an older version is ignored
+    private final Map<Long, IndexedNote> notes = new HashMap<>();
+    private final Map<String, Postings> postings = new HashMap<>();
+    private long[] passageNotes = new long[0];
+    private String[] passageTexts = new String[0];
+    private int[] passageLengths = new int[0];
+    private float[] scales = new float[0];
+    private ByteBuffer vectors = ByteBuffer.allocateDirect(0);
+    private final BitSet live = new BitSet();
+    private int passageCount;
+    private int liveCount;
+    private long liveLength;
+    // Set when the notes changed in a way not applied here, the index has to be built again
+    private volatile boolean stale;
+
+    public PassageIndex(EmbeddingProvider embeddingProvider, int passageChars) {
+        this.embeddingProvider = embeddingProvider;
+        this.dimensions = embeddingProvider.dimensions();
+        this.passageChars = passageChars;
+    }
+
+    // Whether the note is indexed at this version or a later one
+    boolean isCurrent(Long noteId, long version) {
+        lock.readLock().lock();
+        try {
+            IndexedNote indexed = notes.get(noteId);
+            return indexed != null && indexed.version() >= version;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Returns false when a later version of the note, or its deletion, was indexed first
+    public boolean put(Long noteId, long version, String title, String content) {
+        if (isCurrent(noteId, version)) {
+            return false;
+        }
+        List<String> texts = passages(content, passageChars);
+        if (texts.isEmpty() && title != null && !title.isBlank()) {
+            texts = List.of(title.strip());
+        }
+        Prepared[] prepared = new Prepared[texts.size()];
+        for (int i = 0; i < prepared.length; i++) {
+            prepared[i] = prepare(title, texts.get(i));
+        }
+
+        lock.writeLock().lock();
+        try {
+            IndexedNote previous = notes.get(noteId);
+            if (previous != null && previous.version() >= version) {
+                return false;
+            }
+            if (previous != null) {
+                kill(previous);
+            }
+            ensureCapacity(passageCount + prepared.length);
+            int[] ids = new int[prepared.length];
+            for (int i = 0; i < prepared.length; i++) {
+                ids[i] = append(noteId, prepared[i]);
+            }
+            notes.put(noteId, new IndexedNote(version, title, ids));
+            compactIfNeeded();
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Long noteId) {
+        lock.writeLock().lock();
+        try {
+            IndexedNote previous = notes.put(noteId, new IndexedNote(DELETED, null, new int[0]));
+            if (previous != null) {
+                kill(previous);
+                compactIfNeeded();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public List<PassageDTO> search(String query, int limit) {
+        Set<String> terms = new LinkedHashSet<>();
+        TagMatcher.scan(query, (word, length) -> {
+            if (length > 2) {
+                terms.add(new String(word, 0, length));
+            }
+        });
+        float[] embedding = embeddingProvider.embed(query);
+        byte[] quantized = new byte[dimensions];
+        float queryScale = quantize(embedding, quantized);
+
+        lock.readLock().lock();
+        try {
+            if (liveCount == 0) {
+                return List.of();
+            }
+            int[] lexical = top(bm25(terms), CANDIDATES);
+            int[] semantic = queryScale == 0 ? new int[0] : top(cosines(quantized, queryScale), CANDIDATES);
+
+            Map<Integer, Double> fused = new HashMap<>();
+            for (int rank = 0; rank < lexical.length; rank++) {
+                fused.merge(lexical[rank], 1.0 / (RRF_K + rank + 1), Double::sum);
+            }
+            for (int rank = 0; rank < semantic.length; rank++) {
+                fused.merge(semantic[rank], 1.0 / (RRF_K + rank + 1), Double::sum);
+            }
+            // Best first, earlier passage first on ties
+            return fused.entrySet().stream()
+                    .sorted(Map.Entry.<Integer, Double>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+                    .limit(limit)
+                    .map(entry -> {
+                        int id = entry.getKey();
+                        String title = notes.get(passageNotes[id]).title();
+                        return new PassageDTO(passageNotes[id], title, passageTexts[id], entry.getValue());
+                    })
+                    .toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return liveCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long offHeapBytes() {
+        return vectors.capacity();
+    }
+
+    boolean isStale() {
+        return stale;
+    }
+
+    void markStale() {
+        stale = true;
+    }
+
+    private float[] bm25(Set<String> terms) {
+        float[] scores = new float[passageCount];
+        double averageLength = (double) liveLength / liveCount;
+        for (String term : terms) {
+            Postings entries = postings.get(term);
+            if (entries == null || entries.live == 0) {
+                continue;
+            }
+            double idf = Math.log(1 + (liveCount - entries.live + 0.5) / (entries.live + 0.5));
+            for (int i = 0; i < entries.size; i++) {
+                int id = entries.passages[i];
+                if (live.get(id)) {
+                    int frequency = entries.frequencies[i];
+                    double norm = K1 * (1 - B + B * passageLengths[id] / averageLength);
+                    scores[id] += (float) (idf * frequency * (K1 + 1) / (frequency + norm));
+                }
+            }
+        }
+        return scores;
+    }
+
+    // Dot products of the quantized vectors, in bytes so that the whole index is a single linear scan
+    private float[] cosines(byte[] query, float queryScale) {
+        float[] scores = new float[passageCount];
+        for (int id = live.nextSetBit(0); id >= 0; id = live.nextSetBit(id + 1)) {
+            int base = id * dimensions;
+            int dot = 0;
+            for (int k = 0; k < dimensions; k++) {
+                dot += query[k] * vectors.get(base + k);
+            }
+            scores[id] = dot * queryScale * scales[id];
+        }
+        return scores;
+    }
+
+    // Ids of the best positive scores, best first
+    private static int[] top(float[] scores, int count) {
+        int[] best = new int[count];
+        int size = 0;
+        for (int id = 0; id < scores.length; id++) {
+            float score = scores[id];
+            if (score <= 0 || (size == count && score <= scores[best[size - 1]])) {
+                continue;
+            }
+            int at = size < count ? size++ : count - 1;
+            while (at > 0 && scores[best[at - 1]] < score) {
+                best[at] = best[at - 1];
+                at--;
+            }
+            best[at] = id;
+        }
+        return Arrays.copyOf(best, size);
+    }
+
+    private Prepared prepare(String title, String text) {
+        Map<String, int[]> counts = new HashMap<>();
+        int length = terms(title, text, counts);
+        String[] terms = counts.keySet().toArray(String[]::new);
+        int[] frequencies = new int[terms.length];
+        for (int k = 0; k < terms.length; k++) {
+            frequencies[k] = counts.get(terms[k])[0];
+        }
+        float[] embedding = embeddingProvider.embed(title == null ? text : title + ". " + text);
+        if (embedding.length != dimensions) {
+            throw new IllegalStateException("Embeddings of " + dimensions + " dimensions are expected, got " + embedding.length);
+        }
+        byte[] quantized = new byte[dimensions];
+        float scale = quantize(embedding, quantized);
+        return new Prepared(text, length, terms, frequencies, quantized, scale);
+    }
+
+    // Words of more than 2 letters of the title and the passage with their counts, returns how many there are
+    private static int terms(String title, String text, Map<String, int[]> counts) {
+        int[] length = new int[1];
+        TagMatcher.WordSink sink = (word, wordLength) -> {
+            if (wordLength > 2) {
+                counts.computeIfAbsent(new String(word, 0, wordLength), term -> new int[1])[0]++;
+                length[0]++;
+            }
+        };
+        TagMatcher.scan(title, sink);
+        TagMatcher.scan(text, sink);
+        return length[0];
+    }
+
+    // Symmetric int8 quantization, value ≈ byte * scale
+    private static float quantize(float[] vector, byte[] quantized) {
+        float max = 0;
+        for (float value : vector) {
+            max = Math.max(max, Math.abs(value));
+        }
+        if (max == 0) {
+            return 0;
+        }
+        float scale = max / 127;
+        for (int k = 0; k < vector.length; k++) {
+            quantized[k] = (byte) Math.round(vector[k] / scale);
+        }
+        return scale;
+    }
+
+    private int append(Long noteId, Prepared passage) {
+        int id = passageCount++;
+        passageNotes[id] = noteId;
+        passageTexts[id] = passage.text();
+        passageLengths[id] = passage.length();
+        scales[id] = passage.scale();
+        vectors.put(id * dimensions, passage.vector());
+        for (int k = 0; k < passage.terms().length; k++) {
+            postings.computeIfAbsent(passage.terms()[k], term -> new Postings()).add(id, passage.frequencies()[k]);
+        }
+        live.set(id);
+        liveCount++;
+        liveLength += passage.length();
+        return id;
+    }
+
+    // Words are counted again rather than kept per passage, they are only needed when a note changes
+    private void kill(IndexedNote note) {
+        for (int id : note.passages()) {
+            Map<String, int[]> counts = new HashMap<>();
+            terms(note.title(), passageTexts[id], counts);
+            for (String term : counts.keySet()) {
+                postings.get(term).live--;
+            }
+            live.clear(id);
+            liveCount--;
+            liveLength -= passageLengths[id];
+            passageTexts[id] = null;
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= passageNotes.length) {
+            return;
+        }
+        int grown = Math.max(capacity, Math.max(64, passageNotes.length * 2));
+        resize(grown);
+    }
+
+    private void resize(int capacity) {
+        passageNotes = Arrays.copyOf(passageNotes, capacity);
+        passageTexts = Arrays.copyOf(passageTexts, capacity);
+        passageLengths = Arrays.copyOf(passageLengths, capacity);
+        scales = Arrays.copyOf(scales, capacity);
+        ByteBuffer grown = ByteBuffer.allocateDirect(capacity * dimensions);
+        grown.put(0, vectors, 0, Math.min(passageCount, capacity) * dimensions);
+        vectors = grown;
+    }
+
+    // Moves the live passages down over the dead ones; ids only decrease, so postings stay sorted
+    private void compactIfNeeded() {
+        int dead = passageCount - liveCount;
+        if (dead < MIN_DEAD_FOR_COMPACTION || dead < liveCount) {
+            return;
+        }
+        int[] moved = new int[passageCount];
+        int next = 0;
+        for (int id = 0; id < passageCount; id++) {
+            moved[id] = -1;
+            if (live.get(id)) {
+                moved[id] = next;
+                passageNotes[next] = passageNotes[id];
+                passageTexts[next] = passageTexts[id];
+                passageLengths[next] = passageLengths[id];
+                scales[next] = scales[id];
+                vectors.put(next * dimensions, vectors, id * dimensions, dimensions);
+                next++;
+            }
+        }
+        postings.values().removeIf(entries -> {
+            entries.compact(moved);
+            return entries.size == 0;
+        });
+        notes.replaceAll((noteId, note) -> {
+            int[] passages = note.passages().clone();
+            for (int k = 0; k < passages.length; k++) {
+                passages[k] = moved[passages[k]];
+            }
+            return new IndexedNote(note.version(), note.title(), passages);
+        });
+        Arrays.fill(passageTexts, next, passageCount, null);
+        live.clear();
+        live.set(0, next);
+        passageCount = next;
+        resize(Math.max(64, next * 2));
+    }
+
+    // Sentences of the note grouped up to passageChars, sentences longer than that cut between words
+    static List<String> passages(String content, int passageChars) {
+        List<String> passages = new ArrayList<>();
+        StringBuilder passage = new StringBuilder();
+        for (String sentence : TextRankSummarizer.sentences(content)) {
+            while (sentence.length() > passageChars) {
+                int cut = sentence.lastIndexOf(' ', passageChars);
+                if (cut <= 0) {
+                    cut = passageChars;
+                }
+                flush(passage, passages);
+                passages.add(sentence.substring(0, cut).strip());
+                sentence = sentence.substring(cut).strip();
+            }
+            if (!passage.isEmpty() && passage.length() + 1 + sentence.length() > passageChars) {
+                flush(passage, passages);
+            }
+            if (!passage.isEmpty()) {
+                passage.append(' ');
+            }
+            passage.append(sentence);
+        }
+        flush(passage, passages);
+        return passages;
+    }
+
+    private static void flush(StringBuilder passage, List<String> passages) {
+        if (!passage.isEmpty()) {
+            passages.add(passage.toString());
+            passage.setLength(0);
+        }
+    }
+
+    private record IndexedNote(long version, String title, int[] passages) {}
+
+    private record Prepared(String text, int length, String[] terms, int[] frequencies, byte[] vector, float scale) {}
+
+    // Passages containing a word, in increasing id order, with the word's count in each
+    private static final class Postings {
+        private int[] passages = new int[2];
+        private int[] frequencies = new int[2];
+        private int size;
+        // Live passages among them, the word's document frequency
+        private int live;
+
+        private void add(int passage, int frequency) {
+            if (size == passages.length) {
+                passages = Arrays.copyOf(passages, size * 2);
+                frequencies = Arrays.copyOf(frequencies, size * 2);
+            }
+            passages[size] = passage;
+            frequencies[size] = frequency;
+            size++;
+            live++;
+        }
+
+        private void compact(int[] moved) {
+            int next = 0;
+            for (int i = 0; i < size; i++) {
+                if (moved[passages[i]] >= 0) {
+                    passages[next] = moved[passages[i]];
+                    frequencies[next] = frequencies[i];
+                    next++;
+                }
+            }
+            size = next;
+        }
+    }
+}
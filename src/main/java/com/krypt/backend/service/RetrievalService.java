@@ -0,0 +1,206 @@
+package com.krypt.backend.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.krypt.backend.dto.NoteDTO.PassageDTO;
+import com.krypt.backend.model.Note;
+import com.krypt.backend.repository.NoteRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+
+// Passages of a user's notes relevant to a question, for the chatbot's context. Each user's PassageIndex is
+// built from the database on their first query and kept in memory while they use it, updated from note
+// writes as they commit: changed notes are indexed again in the background, reading the note as it is by
+// then, and an index built while notes change takes the writes made during the build as well.
+@Service
+public class RetrievalService {
+    private static final Logger log = LoggerFactory.getLogger(RetrievalService.class);
+    static final int MAX_QUERY_CHARS = 1000;
+    static final int MAX_LIMIT = 20;
+
+    private final NoteRepository noteRepository;
+    private final EntityManager entityManager;
+    private final EmbeddingProvider embeddingProvider;
+    private final TransactionTemplate readOnlyTransaction;
+    private final int passageChars;
+    private final Cache<Long, PassageIndex> indexes;
+    // Indexes being built, not in the cache yet but already receiving writes
+    private final Map<Long, Build> building = new ConcurrentHashMap<>();
+    // Notes with a reindex queued; the task reads the note when it runs, so one is enough per note
+    private final Set<Long> pending = ConcurrentHashMap.newKeySet();
+    private final ExecutorService updates = Executors.newVirtualThreadPerTaskExecutor();
+    private final Timer queryTimer;
+    private final Timer buildTimer;
+
+    public RetrievalService(NoteRepository noteRepository, EntityManager entityManager, EmbeddingProvider embeddingProvider,
+                            PlatformTransactionManager transactionManager, MeterRegistry meterRegistry,
+                            @Value("${krypt.retrieval.passage-chars:600}") int passageChars,
+                            @Value("${krypt.retrieval.max-users:1000}") long maxUsers,
+                            @Value("${krypt.retrieval.idle:PT30M}") Duration idle) {
+        this.noteRepository = noteRepository;
+        this.entityManager = entityManager;
+        this.embeddingProvider = embeddingProvider;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.passageChars = passageChars;
+        this.indexes = Caffeine.newBuilder()
+                .maximumSize(maxUsers)
+                .expireAfterAccess(idle)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, indexes, "passageIndexes");
+        Gauge.builder("krypt.retrieval.vectors", indexes,
+                        cache -> cache.asMap().values().stream().mapToLong(PassageIndex::offHeapBytes).sum())
+                .description("Off-heap memory used by the embeddings of the loaded indexes")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        this.queryTimer = Timer.builder("krypt.retrieval.query")
+                .description("Time to find the passages matching a query, index loaded").register(meterRegistry);
+        this.buildTimer = Timer.builder("krypt.retrieval.build")
+                .description("Time to index all the notes of a user").register(meterRegistry);
+    }
+
+    public List<PassageDTO> search(Long userId, String query, int limit) {
+        if (query == null || query.isBlank()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "A query is expected");
+        }
+        if (query.length() > MAX_QUERY_CHARS) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Queries are limited to " + MAX_QUERY_CHARS + " characters");
+        }
+        if (limit < 1 || limit > MAX_LIMIT) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Between 1 and " + MAX_LIMIT + " passages can be asked for");
+        }
+        PassageIndex index = index(userId);
+        return queryTimer.record(() -> index.search(query, limit));
+    }
+
+    // Writes to users without an index loaded are skipped, their index reads the notes when built
+    @TransactionalEventListener
+    public void onNoteChanged(NoteChangedEvent event) {
+        PassageIndex index = loaded(event.userId());
+        if (index == null) {
+            return;
+        }
+        switch (event.type()) {
+            case CREATED, UPDATED -> {
+                if (!index.isCurrent(event.noteId(), event.version()) && pending.add(event.noteId())) {
+                    updates.execute(() -> reindex(event.userId(), event.noteId()));
+                }
+            }
+            case DELETED -> index.remove(event.noteId());
+            // An import is indexed again as a whole on the next query, a build under way included
+            case IMPORTED -> {
+                Build build = building.get(event.userId());
+                if (build != null) {
+                    build.index().markStale();
+                }
+                index.markStale();
+                indexes.invalidate(event.userId());
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        updates.shutdownNow();
+    }
+
+    void reindex(Long userId, Long noteId) {
+        // Removed before reading, a write committed after the read queues another task
+        pending.remove(noteId);
+        try {
+            PassageIndex index = loaded(userId);
+            if (index == null) {
+                return;
+            }
+            noteRepository.findByIdAndUserId(noteId, userId).ifPresentOrElse(
+                    note -> index.put(noteId, note.getVersion(), note.getTitle(), note.getContent()),
+                    () -> index.remove(noteId));
+        } catch (RuntimeException e) {
+            log.warn("Could not index note {} of user {}: {}", noteId, userId, e.getMessage());
+        }
+    }
+
+    PassageIndex index(Long userId) {
+        PassageIndex index = indexes.getIfPresent(userId);
+        return index != null && !index.isStale() ? index : build(userId);
+    }
+
+    // Without counting as a cache lookup, so that the hit ratio is the one of queries
+    private PassageIndex loaded(Long userId) {
+        PassageIndex index = indexes.asMap().get(userId);
+        if (index != null) {
+            return index;
+        }
+        Build build = building.get(userId);
+        return build == null ? null : build.index();
+    }
+
+    // One build per user at a time, later callers wait for it. It runs in the caller's thread rather than as
+    // a Caffeine loader, which would hold the cache's map lock and pin a virtual thread's carrier while
+    // reading the notes. Rows come from a server-side cursor and are detached once indexed, like an export.
+    private PassageIndex build(Long userId) {
+        Build build = new Build(new PassageIndex(embeddingProvider, passageChars), new CompletableFuture<>());
+        Build running = building.putIfAbsent(userId, build);
+        if (running != null) {
+            return await(running.done());
+        }
+        PassageIndex index = build.index();
+        try {
+            buildTimer.record(() -> readOnlyTransaction.executeWithoutResult(status -> {
+                try (Stream<Note> notes = noteRepository.streamByUserIdOrderByIdAsc(userId)) {
+                    notes.forEach(note -> {
+                        index.put(note.getId(), note.getVersion(), note.getTitle(), note.getContent());
+                        entityManager.detach(note);
+                    });
+                }
+            }));
+            indexes.put(userId, index);
+            build.done().complete(index);
+        } catch (RuntimeException e) {
+            build.done().completeExceptionally(e);
+            throw e;
+        } finally {
+            building.remove(userId, build);
+        }
+        log.debug("Indexed {} passages of user {}", index.size(), userId);
+        return index;
+    }
+
+    private static PassageIndex await(CompletableFuture<PassageIndex> build) {
+        try {
+            return build.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw e;
+        }
+    }
+
+    private record Build(PassageIndex index, CompletableFuture<PassageIndex> done) {}
+}
@@ -0,0 +1,75 @@
+package com.krypt.backend.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.krypt.backend.model.Role;
+import com.krypt.backend.model.enums.RoleType;
+import com.krypt.backend.repository.RoleRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+// role_table is a handful of rows edited by hand: it is read whole and kept in memory for ttl.
+// The cached roles are detached, only use them as references or for their own columns.
+// The table is read by the caller rather than by a Caffeine loader, which would run the query inside the
+// cache's map lock and pin the carrier of every virtual thread waiting on it. Two callers may read it at
+// the same time on expiry, which costs a few rows.
+@Service
+public class RoleService {
+    private static final String ALL = "all";
+
+    private final RoleRepository roleRepository;
+    private final Cache<String, Roles> roles;
+
+    public RoleService(RoleRepository roleRepository, MeterRegistry meterRegistry,
+                       @Value("${krypt.cache.roles.ttl:PT10M}") Duration ttl) {
+        this.roleRepository = roleRepository;
+        this.roles = Caffeine.newBuilder()
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, roles, "roles");
+    }
+
+    public Role getRole(RoleType roleType) {
+        Role role = roles().byType().get(roleType);
+        if (role == null) {
+            throw new RuntimeException("Role not found");
+        }
+        return role;
+    }
+
+    // Resolves User.role from its id, which a lazy proxy gives without a query
+    public Role getRole(Long roleId) {
+        Role role = roles().byId().get(roleId);
+        if (role == null) {
+            throw new RuntimeException("Role not found");
+        }
+        return role;
+    }
+
+    private Roles roles() {
+        Roles cached = roles.getIfPresent(ALL);
+        if (cached == null) {
+            cached = load();
+            roles.put(ALL, cached);
+        }
+        return cached;
+    }
+
+    private Roles load() {
+        List<Role> all = roleRepository.findAll();
+        return new Roles(
+                all.stream().collect(Collectors.toUnmodifiableMap(Role::getRoleType, Function.identity())),
+                all.stream().collect(Collectors.toUnmodifiableMap(Role::getId, Function.identity())));
+    }
+
+    private record Roles(Map<RoleType, Role> byType, Map<Long, Role> byId) {}
+}
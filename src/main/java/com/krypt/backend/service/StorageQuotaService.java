@@ -0,0 +1,139 @@
+package com.krypt.backend.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.krypt.backend.dto.UserDTO.QuotaDTO;
+import com.krypt.backend.repository.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.util.List;
+
+// Storage used by each user's notes, counted as the UTF-8 bytes of titles and contents. The counter is
+// user_table.storage_used_bytes, moved by NoteService and NoteTransferService in the statement that already
+// bumps note_change_seq, so usage is read with a primary key lookup and the quota is a predicate of that
+// update. Revisions are not counted. A nightly job recomputes the counters from note_table in chunks.
+@Service
+public class StorageQuotaService {
+    private static final Logger log = LoggerFactory.getLogger(StorageQuotaService.class);
+    private static final long GB = 1024L * 1024 * 1024;
+    static final String LOCK_CHUNK_SQL = "select user_id from user_table where user_id > ? order by user_id limit ? for update";
+    static final String RECONCILE_SQL = """
+            update user_table u set storage_used_bytes = coalesce((
+                select sum(octet_length(n.title) + coalesce(octet_length(n.content), 0)) from note_table n where n.user_id = u.user_id
+            ), 0) where u.user_id between ? and ?
+            """;
+
+    private final UserRepository userRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int reconcileChunkSize;
+    private final Cache<Long, Long> limits;
+
+    public StorageQuotaService(UserRepository userRepository, JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                               MeterRegistry meterRegistry,
+                               @Value("${krypt.quota.storage.limit-ttl:PT10M}") Duration limitTtl,
+                               @Value("${krypt.quota.storage.reconcile-chunk-size:500}") int reconcileChunkSize) {
+        this.userRepository = userRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.reconcileChunkSize = reconcileChunkSize;
+        this.limits = Caffeine.newBuilder()
+                .maximumSize(100_000)
+                .expireAfterWrite(limitTtl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, limits, "storageLimits");
+    }
+
+    // Limit to pass to the counter update, only looked up when a write grows the user's notes
+    public long limitFor(Long userId, long storageDelta) {
+        return storageDelta <= 0 ? Long.MAX_VALUE : limit(userId);
+    }
+
+    // A counter update that matched no row while growing means the quota would be exceeded
+    public void checkUpdated(int updatedRows, long storageDelta) {
+        if (updatedRows == 0 && storageDelta > 0) {
+            throw new ResponseStatusException(HttpStatus.INSUFFICIENT_STORAGE, "Storage quota exceeded");
+        }
+    }
+
+    public QuotaDTO getUsage(Long userId) {
+        long used = userRepository.findStorageUsedBytes(userId).orElse(0L);
+        long limit = limit(userId);
+        return new QuotaDTO(used, limit == Long.MAX_VALUE ? -1 : limit);
+    }
+
+    // Recomputes every counter, one short transaction per chunk of users. The chunk's user rows are locked
+    // first so that no note write of those users is in flight while their sum is taken.
+    @Scheduled(cron = "${krypt.quota.storage.reconcile-cron:0 15 4 * * *}")
+    public void reconcile() {
+        long after = 0;
+        int users = 0;
+        while (true) {
+            long from = after;
+            List<Long> chunk = transactionTemplate.execute(status -> {
+                List<Long> ids = jdbcTemplate.queryForList(LOCK_CHUNK_SQL, Long.class, from, reconcileChunkSize);
+                if (!ids.isEmpty()) {
+                    jdbcTemplate.update(RECONCILE_SQL, ids.get(0), ids.get(ids.size() - 1));
+                }
+                return ids;
+            });
+            if (chunk == null || chunk.isEmpty()) {
+                break;
+            }
+            users += chunk.size();
+            after = chunk.get(chunk.size() - 1);
+        }
+        log.info("Reconciled note storage of {} users", users);
+    }
+
+    // Size counted by the reconciliation too: octet_length of the UTF-8 text, without encoding it
+    public static long sizeOf(String title, String content) {
+        return utf8Length(title) + utf8Length(content);
+    }
+
+    static long utf8Length(String value) {
+        if (value == null) {
+            return 0;
+        }
+        long length = value.length();
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c >= 0x800) {
+                // A surrogate pair is 2 chars for 4 bytes, other chars from U+0800 take 3 bytes
+                length += Character.isSurrogate(c) ? 1 : 2;
+            } else if (c >= 0x80) {
+                length += 1;
+            }
+        }
+        return length;
+    }
+
+    // Read by the caller rather than by a Caffeine loader, which would run the query inside the cache's map lock
+    // and pin the carrier of every virtual thread writing a note of a user in the same bin
+    private long limit(Long userId) {
+        Long cached = limits.getIfPresent(userId);
+        if (cached == null) {
+            cached = loadLimit(userId);
+            limits.put(userId, cached);
+        }
+        return cached;
+    }
+
+    private long loadLimit(Long userId) {
+        Integer gb = userRepository.findStorageLimitGb(userId).orElse(null);
+        return gb == null ? Long.MAX_VALUE : gb * GB;
+    }
+}
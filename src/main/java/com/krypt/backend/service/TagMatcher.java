@@ -0,0 +1,239 @@
+package com.krypt.backend.service;
+
+import com.krypt.backend.dto.NoteDTO.TagDTO;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Immutable keyword index over the tag catalog. Every tag is known by phrases, its name and its synonyms,
+// folded to lowercase ASCII words (accents dropped, œ to oe, plural s/x removed) so "Réunions" matches
+// "réunion" and "reunion". Phrases are indexed by their last word and only match consecutive words.
+// A tag scores (1 + ln hits) * idf * words for each of its phrases found, idf being relative to the rarest
+// phrase so that a single hit of a one-word phrase no other tag uses is worth 1.
+public final class TagMatcher {
+    static final int TITLE_WEIGHT = 3;
+    private static final char OTHER_LETTER = 1;
+    private static final char[] FOLD = buildFoldTable();
+
+    private final List<TagDTO> tags;
+    private final Phrase[] phrases;
+    // Words used by phrases, looked up by their chars so that scanning a note allocates nothing per word
+    private final char[][] vocabulary;
+    private final int[] vocabularyTable;
+    // Phrases ending with each vocabulary word
+    private final Phrase[][] phrasesByLastWord;
+    private final int maxPhraseLength;
+
+    public TagMatcher(List<TagDTO> tags, Map<String, List<String>> synonyms) {
+        Map<String, List<String>> synonymsByName = new HashMap<>();
+        synonyms.forEach((name, phrases) -> synonymsByName.put(key(name), phrases));
+
+        // Phrase -> tags using it, for the idf
+        Map<String, Set<Integer>> tagsByPhrase = new LinkedHashMap<>();
+        for (int tag = 0; tag < tags.size(); tag++) {
+            List<String> names = new ArrayList<>();
+            names.add(tags.get(tag).name());
+            names.addAll(synonymsByName.getOrDefault(key(tags.get(tag).name()), List.of()));
+            for (String name : names) {
+                String phrase = key(name);
+                if (!phrase.isEmpty()) {
+                    tagsByPhrase.computeIfAbsent(phrase, k -> new LinkedHashSet<>()).add(tag);
+                }
+            }
+        }
+
+        double maxIdf = Math.log(1 + tags.size());
+        Map<String, Integer> wordIds = new LinkedHashMap<>();
+        List<Phrase> all = new ArrayList<>();
+        tagsByPhrase.forEach((phrase, tagIndexes) -> {
+            String[] words = phrase.split(" ");
+            int[] ids = new int[words.length];
+            for (int k = 0; k < words.length; k++) {
+                ids[k] = wordIds.computeIfAbsent(words[k], word -> wordIds.size());
+            }
+            double weight = Math.log(1 + (double) tags.size() / tagIndexes.size()) / maxIdf * words.length;
+            for (int tag : tagIndexes) {
+                all.add(new Phrase(all.size(), ids, tag, weight));
+            }
+        });
+
+        this.tags = List.copyOf(tags);
+        this.phrases = all.toArray(Phrase[]::new);
+        this.vocabulary = wordIds.keySet().stream().map(String::toCharArray).toArray(char[][]::new);
+        this.vocabularyTable = new int[Integer.highestOneBit(Math.max(vocabulary.length, 1) * 4)];
+        for (int id = 0; id < vocabulary.length; id++) {
+            int slot = hash(vocabulary[id], vocabulary[id].length) & (vocabularyTable.length - 1);
+            while (vocabularyTable[slot] != 0) {
+                slot = (slot + 1) & (vocabularyTable.length - 1);
+            }
+            vocabularyTable[slot] = id + 1;
+        }
+        List<List<Phrase>> byLastWord = new ArrayList<>();
+        for (int id = 0; id < vocabulary.length; id++) {
+            byLastWord.add(new ArrayList<>());
+        }
+        int longest = 1;
+        for (Phrase phrase : all) {
+            byLastWord.get(phrase.words()[phrase.words().length - 1]).add(phrase);
+            longest = Math.max(longest, phrase.words().length);
+        }
+        this.phrasesByLastWord = byLastWord.stream().map(entries -> entries.toArray(Phrase[]::new)).toArray(Phrase[][]::new);
+        this.maxPhraseLength = longest;
+    }
+
+    // Best tags first, at most limit of them scoring minScore or more
+    public List<TagSuggestion> suggest(String title, String content, int limit, double minScore) {
+        int[] hits = new int[phrases.length];
+        count(title, TITLE_WEIGHT, hits);
+        count(content, 1, hits);
+
+        double[] scores = new double[tags.size()];
+        for (Phrase phrase : phrases) {
+            if (hits[phrase.id()] > 0) {
+                scores[phrase.tag()] += (1 + Math.log(hits[phrase.id()])) * phrase.weight();
+            }
+        }
+        List<TagSuggestion> suggestions = new ArrayList<>();
+        for (int tag = 0; tag < scores.length; tag++) {
+            if (scores[tag] > 0 && scores[tag] >= minScore) {
+                suggestions.add(new TagSuggestion(tags.get(tag), scores[tag]));
+            }
+        }
+        suggestions.sort(Comparator.comparingDouble(TagSuggestion::score).reversed()
+                .thenComparing(suggestion -> suggestion.tag().name()));
+        return suggestions.size() > limit ? List.copyOf(suggestions.subList(0, limit)) : suggestions;
+    }
+
+    // The last maxPhraseLength word ids (-1 outside the vocabulary) are kept in a ring to check what precedes a phrase's last word
+    private void count(String text, int weight, int[] hits) {
+        int[] recent = new int[maxPhraseLength];
+        int[] seen = new int[1];
+        scan(text, (word, length) -> {
+            int id = wordId(word, length);
+            recent[seen[0]++ % recent.length] = id;
+            if (id < 0) {
+                return;
+            }
+            for (Phrase phrase : phrasesByLastWord[id]) {
+                if (phrase.endsAt(recent, seen[0])) {
+                    hits[phrase.id()] += weight;
+                }
+            }
+        });
+    }
+
+    private int wordId(char[] word, int length) {
+        int mask = vocabularyTable.length - 1;
+        for (int slot = hash(word, length) & mask; ; slot = (slot + 1) & mask) {
+            int id = vocabularyTable[slot] - 1;
+            if (id < 0 || Arrays.equals(vocabulary[id], 0, vocabulary[id].length, word, 0, length)) {
+                return id;
+            }
+        }
+    }
+
+    private static int hash(char[] word, int length) {
+        int hash = 0;
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + word[i];
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    private static String key(String phrase) {
+        return String.join(" ", words(phrase));
+    }
+
+    // Lowercase ASCII words of the text, as matched against the phrases
+    static List<String> words(String text) {
+        List<String> words = new ArrayList<>();
+        scan(text, (word, length) -> words.add(new String(word, 0, length)));
+        return words;
+    }
+
+    // Folds each word of the text into a reused buffer, without building a normalised copy of the whole text
+    static void scan(String text, WordSink sink) {
+        if (text == null) {
+            return;
+        }
+        char[] word = new char[32];
+        int length = 0;
+        for (int i = 0; i <= text.length(); i++) {
+            char c = i < text.length() ? text.charAt(i) : ' ';
+            char folded = c < FOLD.length ? FOLD[c] : Character.isLetterOrDigit(c) ? OTHER_LETTER : 0;
+            if (folded != 0) {
+                if (length + 2 > word.length) {
+                    word = Arrays.copyOf(word, word.length * 2);
+                }
+                length = fold(c, folded, word, length);
+            } else if (length > 0) {
+                sink.accept(word, stem(word, length));
+                length = 0;
+            }
+        }
+    }
+
+    private static int fold(char c, char folded, char[] word, int length) {
+        if (folded != OTHER_LETTER) {
+            word[length] = folded;
+            return length + 1;
+        }
+        switch (c) {
+            case 'œ', 'Œ' -> { word[length] = 'o'; word[length + 1] = 'e'; return length + 2; }
+            case 'æ', 'Æ' -> { word[length] = 'a'; word[length + 1] = 'e'; return length + 2; }
+            case 'ß' -> { word[length] = 's'; word[length + 1] = 's'; return length + 2; }
+            default -> { word[length] = Character.toLowerCase(c); return length + 1; }
+        }
+    }
+
+    // French and English plurals (réunions, travaux, tests) are reduced like their singular
+    private static int stem(char[] word, int length) {
+        char last = word[length - 1];
+        return length > 3 && (last == 's' || last == 'x') ? length - 1 : length;
+    }
+
+    // Lowercase accent-free form of every char up to U+017F (Latin-1 and Latin Extended-A), OTHER_LETTER for
+    // letters without one and 0 for separators
+    private static char[] buildFoldTable() {
+        char[] table = new char[0x180];
+        for (char c = 0; c < table.length; c++) {
+            String decomposed = Normalizer.normalize(String.valueOf(c), Normalizer.Form.NFD);
+            char base = Character.toLowerCase(decomposed.charAt(0));
+            if (base < 0x80 && Character.isLetterOrDigit(base)) {
+                table[c] = base;
+            } else if (Character.isLetterOrDigit(c)) {
+                table[c] = OTHER_LETTER;
+            }
+        }
+        return table;
+    }
+
+    public record TagSuggestion(TagDTO tag, double score) {}
+
+    interface WordSink {
+        void accept(char[] word, int length);
+    }
+
+    private record Phrase(int id, int[] words, int tag, double weight) {
+        // seen words so far, the last of them being this phrase's last word
+        boolean endsAt(int[] recent, int seen) {
+            if (seen < words.length) {
+                return false;
+            }
+            for (int k = 0; k < words.length - 1; k++) {
+                if (recent[(seen - words.length + k) % recent.length] != words[k]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.krypt.backend.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.krypt.backend.dto.NoteDTO.NoteTagsDTO;
+import com.krypt.backend.dto.NoteDTO.TagDTO;
+import com.krypt.backend.repository.NoteRepository;
+import com.krypt.backend.repository.NoteTagRepository;
+import com.krypt.backend.repository.TagRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+// tag_table is a fixed catalog: it is read whole into an immutable snapshot, pre-serialised with its ETag,
+// and names are resolved to ids from memory. Links to notes are written in bulk.
+@Service
+public class TagService {
+    private static final String ALL = "all";
+    static final int MAX_NOTES = 500;
+    static final int MAX_TAGS = 50;
+    static final String INSERT_SQL = "insert into note_tag_table (note_id, tag_id, user_id) values (?, ?, ?) on conflict do nothing";
+
+    private final TagRepository tagRepository;
+    private final NoteRepository noteRepository;
+    private final NoteTagRepository noteTagRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final Cache<String, TagCatalog> catalog;
+
+    public TagService(TagRepository tagRepository, NoteRepository noteRepository, NoteTagRepository noteTagRepository,
+                      JdbcTemplate jdbcTemplate, ObjectMapper objectMapper, MeterRegistry meterRegistry,
+                      @Value("${krypt.cache.tags.ttl:PT10M}") Duration ttl) {
+        this.tagRepository = tagRepository;
+        this.noteRepository = noteRepository;
+        this.noteTagRepository = noteTagRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.catalog = Caffeine.newBuilder()
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, catalog, "tags");
+    }
+
+    // Loaded by the caller, outside the cache's map lock, like the roles
+    public TagCatalog getCatalog() {
+        TagCatalog cached = catalog.getIfPresent(ALL);
+        if (cached == null) {
+            cached = load();
+            catalog.put(ALL, cached);
+        }
+        return cached;
+    }
+
+    // Ids of the named tags, case-insensitive; unknown names are skipped unless strict
+    public List<Long> resolve(Collection<String> names, boolean strict) {
+        Map<String, Long> idsByName = getCatalog().idsByName();
+        Set<Long> ids = new LinkedHashSet<>();
+        for (String name : names) {
+            Long id = name == null ? null : idsByName.get(key(name));
+            if (id != null) {
+                ids.add(id);
+            } else if (strict) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unknown tag: " + name);
+            }
+        }
+        return List.copyOf(ids);
+    }
+
+    public boolean isKnown(String name) {
+        return name != null && getCatalog().idsByName().containsKey(key(name));
+    }
+
+    // Links every tag to every note of the user, links that already exist are left as they are
+    @Transactional
+    public int tagNotes(Long userId, NoteTagsDTO noteTagsDTO) {
+        List<Long> tagIds = resolve(checkTags(noteTagsDTO), true);
+        List<Long> noteIds = ownedNotes(userId, noteTagsDTO);
+        List<Object[]> links = new ArrayList<>(noteIds.size() * tagIds.size());
+        for (Long noteId : noteIds) {
+            for (Long tagId : tagIds) {
+                links.add(new Object[]{noteId, tagId, userId});
+            }
+        }
+        if (links.isEmpty()) {
+            return 0;
+        }
+        int added = 0;
+        for (int count : jdbcTemplate.batchUpdate(INSERT_SQL, links)) {
+            // Drivers may report SUCCESS_NO_INFO (-2) for batched statements
+            added += Math.max(count, 0);
+        }
+        return added;
+    }
+
+    @Transactional
+    public int untagNotes(Long userId, NoteTagsDTO noteTagsDTO) {
+        List<Long> tagIds = resolve(checkTags(noteTagsDTO), false);
+        checkNotes(noteTagsDTO);
+        if (tagIds.isEmpty() || noteTagsDTO.noteIds().isEmpty()) {
+            return 0;
+        }
+        return noteTagRepository.deleteLinks(userId, noteTagsDTO.noteIds(), tagIds);
+    }
+
+    @Transactional(readOnly = true)
+    public List<String> getNoteTags(Long noteId, Long userId) {
+        Map<Long, String> namesById = getCatalog().namesById();
+        return noteTagRepository.findTagIds(noteId, userId).stream()
+                .map(namesById::get)
+                .filter(name -> name != null)
+                .sorted()
+                .toList();
+    }
+
+    private List<String> checkTags(NoteTagsDTO noteTagsDTO) {
+        if (noteTagsDTO.tags() == null || noteTagsDTO.tags().isEmpty() || noteTagsDTO.tags().size() > MAX_TAGS) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Between 1 and " + MAX_TAGS + " tags are expected");
+        }
+        return noteTagsDTO.tags();
+    }
+
+    private void checkNotes(NoteTagsDTO noteTagsDTO) {
+        if (noteTagsDTO.noteIds() == null || noteTagsDTO.noteIds().size() > MAX_NOTES) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "At most " + MAX_NOTES + " notes are expected");
+        }
+    }
+
+    // Ids of other users are dropped silently, like missing ones
+    private List<Long> ownedNotes(Long userId, NoteTagsDTO noteTagsDTO) {
+        checkNotes(noteTagsDTO);
+        return noteTagsDTO.noteIds().isEmpty() ? List.of() : noteRepository.findOwnedIds(userId, noteTagsDTO.noteIds());
+    }
+
+    private TagCatalog load() {
+        List<TagDTO> tags = tagRepository.findAllByOrderByNameAsc().stream()
+                .map(tag -> new TagDTO(tag.getId(), tag.getName()))
+                .toList();
+        Map<String, Long> idsByName = new HashMap<>();
+        Map<Long, String> namesById = new HashMap<>();
+        for (TagDTO tag : tags) {
+            idsByName.put(key(tag.name()), tag.id());
+            namesById.put(tag.id(), tag.name());
+        }
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(tags);
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(json);
+            String etag = "\"" + HexFormat.of().formatHex(digest, 0, 12) + "\"";
+            return new TagCatalog(tags, Map.copyOf(idsByName), Map.copyOf(namesById), json, etag);
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Cannot build the tag catalog", e);
+        }
+    }
+
+    private static String key(String name) {
+        return name.strip().toLowerCase(Locale.ROOT);
+    }
+
+    public record TagCatalog(List<TagDTO> tags, Map<String, Long> idsByName, Map<Long, String> namesById, byte[] json, String etag) {}
+}
@@ -0,0 +1,239 @@
+package com.krypt.backend.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.krypt.backend.dto.NoteDTO.TagDTO;
+import com.krypt.backend.model.Note;
+import com.krypt.backend.repository.NoteRepository;
+import com.krypt.backend.repository.NoteTagRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+// Tags suggested for a note from its title and content by TagMatcher. Scoring runs in the background once
+// a note has stopped changing for the debounce delay, so a burst of autosaves is scored once, and the
+// result is kept with a hash of the text it was computed from: it is only scored again when that changes.
+@Service
+public class TagSuggestionService {
+    private static final Logger log = LoggerFactory.getLogger(TagSuggestionService.class);
+    static final String SYNONYMS = "tags/synonyms.txt";
+    // Kept per note before already linked tags are removed
+    static final int MAX_CACHED = 20;
+
+    private final NoteRepository noteRepository;
+    private final NoteTagRepository noteTagRepository;
+    private final TagService tagService;
+    private final Map<String, List<String>> synonyms;
+    private final Duration debounce;
+    private final int limit;
+    private final double minScore;
+    private final ScheduledThreadPoolExecutor scheduler;
+    private final Map<Long, Refresh> pending = new ConcurrentHashMap<>();
+    private final Cache<Long, Suggestions> suggestions;
+    private final Timer scoring;
+    private final Counter scored;
+    private final Counter unchanged;
+    private volatile Index index;
+
+    public TagSuggestionService(NoteRepository noteRepository, NoteTagRepository noteTagRepository, TagService tagService,
+                                MeterRegistry meterRegistry,
+                                @Value("${krypt.tags.suggest.debounce:PT3S}") Duration debounce,
+                                @Value("${krypt.tags.suggest.limit:5}") int limit,
+                                @Value("${krypt.tags.suggest.min-score:1.5}") double minScore,
+                                @Value("${krypt.tags.suggest.max-size:10000}") long maxSize) {
+        this.noteRepository = noteRepository;
+        this.noteTagRepository = noteTagRepository;
+        this.tagService = tagService;
+        this.synonyms = loadSynonyms();
+        this.debounce = debounce;
+        this.limit = limit;
+        this.minScore = minScore;
+        this.scheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "tag-suggestions");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Superseded refreshes leave the queue at once instead of waiting for their delay
+        scheduler.setRemoveOnCancelPolicy(true);
+        this.suggestions = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, suggestions, "tagSuggestions");
+        this.scoring = Timer.builder("krypt.tags.suggest.scoring")
+                .description("Time to score one note against the tag catalog")
+                .register(meterRegistry);
+        this.scored = Counter.builder("krypt.tags.suggest").tag("result", "scored").register(meterRegistry);
+        this.unchanged = Counter.builder("krypt.tags.suggest").tag("result", "unchanged").register(meterRegistry);
+    }
+
+    // Rescheduling cancels the refresh still waiting for the same note
+    @TransactionalEventListener
+    public void onNoteChanged(NoteChangedEvent event) {
+        switch (event.type()) {
+            case CREATED, UPDATED -> pending.compute(event.noteId(), (noteId, previous) -> {
+                if (previous != null) {
+                    previous.future.cancel(false);
+                }
+                Refresh refresh = new Refresh(event.userId(), noteId);
+                refresh.future = scheduler.schedule(refresh, debounce.toMillis(), TimeUnit.MILLISECONDS);
+                return refresh;
+            });
+            case DELETED -> {
+                Refresh previous = pending.remove(event.noteId());
+                if (previous != null) {
+                    previous.future.cancel(false);
+                }
+                suggestions.invalidate(event.noteId());
+            }
+            // Imports can bring thousands of notes at once, they are scored when first asked for
+            case IMPORTED -> {}
+        }
+    }
+
+    // Tags not linked to the note yet, best first. A cached result is used as is unless a refresh is pending.
+    public List<TagDTO> getSuggestions(Long noteId, Long userId) {
+        Suggestions cached = suggestions.getIfPresent(noteId);
+        if (cached == null || !cached.userId().equals(userId) || cached.matcher() != matcher() || pending.containsKey(noteId)) {
+            Note note = noteRepository.findByIdAndUserId(noteId, userId)
+                    .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Note not found"));
+            cached = refresh(userId, note);
+        }
+        if (cached.tags().isEmpty()) {
+            return List.of();
+        }
+        Set<Long> linked = new HashSet<>(noteTagRepository.findTagIds(noteId, userId));
+        return cached.tags().stream()
+                .filter(tag -> !linked.contains(tag.id()))
+                .limit(limit)
+                .toList();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    void refresh(Long userId, Long noteId) {
+        try {
+            noteRepository.findByIdAndUserId(noteId, userId).ifPresentOrElse(note -> refresh(userId, note), () -> suggestions.invalidate(noteId));
+        } catch (RuntimeException e) {
+            log.warn("Could not suggest tags for note {}: {}", noteId, e.getMessage());
+        }
+    }
+
+    private Suggestions refresh(Long userId, Note note) {
+        byte[] hash = hash(note.getTitle(), note.getContent());
+        TagMatcher matcher = matcher();
+        Suggestions cached = suggestions.getIfPresent(note.getId());
+        if (cached != null && Arrays.equals(cached.hash(), hash) && cached.matcher() == matcher && cached.userId().equals(userId)) {
+            unchanged.increment();
+            return cached;
+        }
+        List<TagDTO> tags = scoring.record(() -> matcher.suggest(note.getTitle(), note.getContent(), MAX_CACHED, minScore)).stream()
+                .map(TagMatcher.TagSuggestion::tag)
+                .toList();
+        Suggestions computed = new Suggestions(userId, hash, matcher, tags);
+        suggestions.put(note.getId(), computed);
+        scored.increment();
+        return computed;
+    }
+
+    // Rebuilt whenever the tag catalog is reloaded
+    TagMatcher matcher() {
+        TagService.TagCatalog catalog = tagService.getCatalog();
+        Index current = index;
+        if (current == null || current.catalog() != catalog) {
+            current = new Index(catalog, new TagMatcher(catalog.tags(), synonyms));
+            index = current;
+        }
+        return current.matcher();
+    }
+
+    // Collision resistant, an edit must never be mistaken for the text the suggestions were computed from.
+    // The title is length-prefixed so that text cannot move between title and content unnoticed.
+    static byte[] hash(String title, String content) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] titleBytes = (title == null ? "" : title).getBytes(StandardCharsets.UTF_8);
+            digest.update(ByteBuffer.allocate(Integer.BYTES).putInt(titleBytes.length).array());
+            digest.update(titleBytes);
+            return digest.digest((content == null ? "" : content).getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // "Tag name: phrase, phrase" per line, # starts a comment
+    public static Map<String, List<String>> loadSynonyms() {
+        Map<String, List<String>> synonyms = new HashMap<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new ClassPathResource(SYNONYMS).getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int separator = line.indexOf(':');
+                if (line.isBlank() || line.startsWith("#") || separator < 0) {
+                    continue;
+                }
+                List<String> phrases = Arrays.stream(line.substring(separator + 1).split(","))
+                        .map(String::strip)
+                        .filter(phrase -> !phrase.isEmpty())
+                        .toList();
+                synonyms.put(line.substring(0, separator).strip(), phrases);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot read " + SYNONYMS, e);
+        }
+        return Map.copyOf(synonyms);
+    }
+
+    private record Index(TagService.TagCatalog catalog, TagMatcher matcher) {}
+
+    record Suggestions(Long userId, byte[] hash, TagMatcher matcher, List<TagDTO> tags) {}
+
+    private final class Refresh implements Runnable {
+        private final Long userId;
+        private final Long noteId;
+        private volatile ScheduledFuture<?> future;
+
+        private Refresh(Long userId, Long noteId) {
+            this.userId = userId;
+            this.noteId = noteId;
+        }
+
+        @Override
+        public void run() {
+            pending.remove(noteId, this);
+            refresh(userId, noteId);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.krypt.backend.service;
+
+import com.krypt.backend.dto.NoteDTO.TextEditDTO;
+
+import java.util.List;
+
+public final class TextDiff {
+
+    private TextDiff() {}
+
+    // Single edit spanning everything between the common prefix and suffix: linear time, and exact for
+    // the contiguous changes an editing session produces. TextPatch.apply(from, diff(from, to)) returns to.
+    public static List<TextEditDTO> diff(String from, String to) {
+        String base = from == null ? "" : from;
+        String target = to == null ? "" : to;
+        if (base.equals(target)) {
+            return List.of();
+        }
+
+        int shortest = Math.min(base.length(), target.length());
+        int prefix = 0;
+        while (prefix < shortest && base.charAt(prefix) == target.charAt(prefix)) {
+            prefix++;
+        }
+        // Never split a surrogate pair, the inserted text must stay valid UTF-16
+        if (prefix > 0 && Character.isHighSurrogate(base.charAt(prefix - 1))) {
+            prefix--;
+        }
+
+        int suffix = 0;
+        while (suffix < shortest - prefix
+                && base.charAt(base.length() - 1 - suffix) == target.charAt(target.length() - 1 - suffix)) {
+            suffix++;
+        }
+        if (suffix > 0 && Character.isLowSurrogate(base.charAt(base.length() - suffix))) {
+            suffix--;
+        }
+
+        return List.of(new TextEditDTO(prefix, base.length() - prefix - suffix,
+                target.substring(prefix, target.length() - suffix)));
+    }
+}
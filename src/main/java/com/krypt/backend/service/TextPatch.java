@@ -0,0 +1,38 @@
+package com.krypt.backend.service;
+
+import com.krypt.backend.dto.NoteDTO.TextEditDTO;
+
+import java.util.List;
+
+public final class TextPatch {
+
+    private TextPatch() {}
+
+    // Edits are expressed against the base text and must be sorted by offset without overlapping
+    public static String apply(String base, List<TextEditDTO> edits) {
+        String text = base == null ? "" : base;
+        if (edits == null || edits.isEmpty()) {
+            return text;
+        }
+
+        int insertedLength = 0;
+        for (TextEditDTO edit : edits) {
+            insertedLength += edit.insert() == null ? 0 : edit.insert().length();
+        }
+
+        StringBuilder result = new StringBuilder(text.length() + insertedLength);
+        int position = 0;
+        for (TextEditDTO edit : edits) {
+            if (edit.at() < position || edit.delete() < 0 || edit.delete() > text.length() - edit.at()) {
+                throw new IllegalArgumentException("Edit out of order or out of bounds at offset " + edit.at());
+            }
+            result.append(text, position, edit.at());
+            if (edit.insert() != null) {
+                result.append(edit.insert());
+            }
+            position = edit.at() + edit.delete();
+        }
+        result.append(text, position, text.length());
+        return result.toString();
+    }
+}
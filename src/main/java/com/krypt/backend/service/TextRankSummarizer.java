@@ -0,0 +1,325 @@
+package com.krypt.backend.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+// Extractive summary of a Markdown note: the k most central sentences, in the order they appear.
+// Sentences are TF-IDF vectors of their folded words and are ranked by PageRank over their cosine
+// similarities (TextRank). The similarity matrix is A·Aᵀ for the sparse sentence x word matrix A, so each
+// iteration is computed as A·(Aᵀ·x) in time linear in the note's words, without building the n² graph.
+// Code blocks, tables and headings are not candidates.
+public final class TextRankSummarizer {
+    private static final double DAMPING = 0.85;
+    private static final int MAX_ITERATIONS = 50;
+    private static final double TOLERANCE = 1e-6;
+    // Folded like the note's words, hence "dan" and "thi"; words of 2 letters or less are ignored anyway
+    private static final Set<String> STOPWORDS = Set.of(
+            "les", "des", "une", "dan", "pour", "par", "sur", "avec", "est", "son", "ses", "leur", "qui", "que", "quoi",
+            "cette", "aux", "pas", "plu", "mai", "donc", "the", "and", "for", "with", "that", "thi", "are", "was", "were",
+            "not", "but", "from", "have", "has", "been", "into", "about", "then", "than", "there", "their", "our", "you",
+            "your", "before", "after");
+    private static final Map<String, Integer> STOPWORD_IDS = STOPWORDS.stream().collect(Collectors.toMap(word -> word, word -> -1));
+
+    private TextRankSummarizer() {}
+
+    public static List<String> summarize(String markdown, int count) {
+        List<String> sentences = sentences(markdown);
+        if (sentences.size() <= count) {
+            return sentences;
+        }
+        double[] scores = rank(sentences);
+        Integer[] order = new Integer[sentences.size()];
+        Arrays.setAll(order, i -> i);
+        // Best first, earlier sentence first on ties
+        Arrays.sort(order, (a, b) -> scores[a] != scores[b] ? Double.compare(scores[b], scores[a]) : Integer.compare(a, b));
+        Integer[] selected = Arrays.copyOf(order, count);
+        Arrays.sort(selected);
+        List<String> summary = new ArrayList<>(count);
+        for (int index : selected) {
+            summary.add(sentences.get(index));
+        }
+        return summary;
+    }
+
+    static double[] rank(List<String> sentences) {
+        int n = sentences.size();
+        // Stopwords map to -1 so that each word is looked up once
+        Map<String, Integer> wordIds = new HashMap<>(STOPWORD_IDS);
+        int[][] words = new int[n][];
+        int[][] frequencies = new int[n][];
+        int[] documentFrequency = new int[256];
+        // Word ids of the current sentence, in a buffer reused and grown across sentences
+        int[][] buffer = {new int[64]};
+        int[] size = new int[1];
+        for (int i = 0; i < n; i++) {
+            size[0] = 0;
+            TagMatcher.scan(sentences.get(i), (word, length) -> {
+                if (length <= 2) {
+                    return;
+                }
+                int id = wordIds.computeIfAbsent(new String(word, 0, length), w -> wordIds.size() - STOPWORD_IDS.size());
+                if (id >= 0) {
+                    if (size[0] == buffer[0].length) {
+                        buffer[0] = Arrays.copyOf(buffer[0], size[0] * 2);
+                    }
+                    buffer[0][size[0]++] = id;
+                }
+            });
+            countDistinct(buffer[0], size[0], i, words, frequencies);
+            for (int id : words[i]) {
+                if (id >= documentFrequency.length) {
+                    documentFrequency = Arrays.copyOf(documentFrequency, Math.max(id + 1, documentFrequency.length * 2));
+                }
+                documentFrequency[id]++;
+            }
+        }
+        int vocabularySize = wordIds.size() - STOPWORD_IDS.size();
+
+        // Rows of A: unit-length tf-idf vectors, so a row dotted with itself is 1
+        double[][] weights = new double[n][];
+        for (int i = 0; i < n; i++) {
+            weights[i] = new double[words[i].length];
+            double norm = 0;
+            for (int k = 0; k < words[i].length; k++) {
+                double weight = (1 + Math.log(frequencies[i][k])) * Math.log(1 + (double) n / documentFrequency[words[i][k]]);
+                weights[i][k] = weight;
+                norm += weight * weight;
+            }
+            norm = Math.sqrt(norm);
+            for (int k = 0; k < weights[i].length; k++) {
+                weights[i][k] /= norm;
+            }
+        }
+
+        // Out-degree of each sentence in the similarity graph: a_i · Σ_j a_j minus its self-similarity
+        double[] degree = similarities(words, weights, filled(n, 1.0), vocabularySize);
+        double[] scores = filled(n, 1.0 / n);
+        double[] share = new double[n];
+        for (int iteration = 0; iteration < MAX_ITERATIONS; iteration++) {
+            // Sentences sharing no word with any other spread their score evenly
+            double dangling = 0;
+            for (int i = 0; i < n; i++) {
+                if (degree[i] > 1e-12) {
+                    share[i] = scores[i] / degree[i];
+                } else {
+                    share[i] = 0;
+                    dangling += scores[i];
+                }
+            }
+            double[] received = similarities(words, weights, share, vocabularySize);
+            double base = (1 - DAMPING) / n + DAMPING * dangling / n;
+            double change = 0;
+            for (int i = 0; i < n; i++) {
+                double next = base + DAMPING * received[i];
+                change += Math.abs(next - scores[i]);
+                scores[i] = next;
+            }
+            if (change < TOLERANCE) {
+                break;
+            }
+        }
+        return scores;
+    }
+
+    // Distinct word ids of a sentence with their counts
+    private static void countDistinct(int[] ids, int size, int sentence, int[][] words, int[][] frequencies) {
+        int[] sorted = Arrays.copyOf(ids, size);
+        Arrays.sort(sorted);
+        int distinct = 0;
+        for (int k = 0; k < size; k++) {
+            if (k == 0 || sorted[k] != sorted[k - 1]) {
+                distinct++;
+            }
+        }
+        words[sentence] = new int[distinct];
+        frequencies[sentence] = new int[distinct];
+        int d = -1;
+        for (int k = 0; k < size; k++) {
+            if (k == 0 || sorted[k] != sorted[k - 1]) {
+                words[sentence][++d] = sorted[k];
+            }
+            frequencies[sentence][d]++;
+        }
+    }
+
+    // (A·Aᵀ - I)·x, the similarity-weighted sum of x over the other sentences
+    private static double[] similarities(int[][] words, double[][] weights, double[] x, int vocabularySize) {
+        double[] perWord = new double[vocabularySize];
+        for (int i = 0; i < words.length; i++) {
+            for (int k = 0; k < words[i].length; k++) {
+                perWord[words[i][k]] += weights[i][k] * x[i];
+            }
+        }
+        double[] result = new double[words.length];
+        for (int i = 0; i < words.length; i++) {
+            double sum = 0;
+            for (int k = 0; k < words[i].length; k++) {
+                sum += weights[i][k] * perWord[words[i][k]];
+            }
+            result[i] = words[i].length == 0 ? 0 : Math.max(0, sum - x[i]);
+        }
+        return result;
+    }
+
+    // Prose sentences of the note with their Markdown decoration removed. Lines are scanned in place,
+    // without splitting the note or running regular expressions over it.
+    static List<String> sentences(String markdown) {
+        List<String> sentences = new ArrayList<>();
+        if (markdown == null || markdown.isBlank()) {
+            return sentences;
+        }
+        StringBuilder paragraph = new StringBuilder();
+        boolean inCode = false;
+        int lineStart = 0;
+        while (lineStart <= markdown.length()) {
+            int lineEnd = markdown.indexOf('\n', lineStart);
+            if (lineEnd < 0) {
+                lineEnd = markdown.length();
+            }
+            int from = skipWhitespace(markdown, lineStart, lineEnd);
+            int to = lineEnd;
+            while (to > from && Character.isWhitespace(markdown.charAt(to - 1))) {
+                to--;
+            }
+            lineStart = lineEnd + 1;
+
+            if (markdown.startsWith("```", from) || markdown.startsWith("~~~", from)) {
+                inCode = !inCode;
+                split(paragraph, sentences);
+                continue;
+            }
+            if (inCode) {
+                continue;
+            }
+            if (from == to || markdown.charAt(from) == '#' || markdown.charAt(from) == '|' || markdown.startsWith("---", from)) {
+                split(paragraph, sentences);
+                continue;
+            }
+            int text = from;
+            if (markdown.charAt(text) == '>') {
+                text = skipWhitespace(markdown, text + 1, to);
+            }
+            text = skipListMarker(markdown, text, to);
+            if (text != from) {
+                // Each list item and quoted line is a paragraph of its own
+                split(paragraph, sentences);
+            }
+            if (!paragraph.isEmpty()) {
+                paragraph.append(' ');
+            }
+            paragraph.append(markdown, text, to);
+        }
+        split(paragraph, sentences);
+        return sentences;
+    }
+
+    // After "- ", "* ", "+ ", "1. " or "1) ", and a task box "[ ] " or "[x] " following it
+    private static int skipListMarker(String line, int from, int to) {
+        int at = from;
+        if (at < to && (line.charAt(at) == '-' || line.charAt(at) == '*' || line.charAt(at) == '+')) {
+            at++;
+        } else {
+            while (at < to && Character.isDigit(line.charAt(at))) {
+                at++;
+            }
+            if (at == from || at == to || (line.charAt(at) != '.' && line.charAt(at) != ')')) {
+                return from;
+            }
+            at++;
+        }
+        if (at == to || !Character.isWhitespace(line.charAt(at))) {
+            return from;
+        }
+        at = skipWhitespace(line, at, to);
+        if (at + 3 < to && line.charAt(at) == '[' && line.charAt(at + 2) == ']' && " xX".indexOf(line.charAt(at + 1)) >= 0
+                && Character.isWhitespace(line.charAt(at + 3))) {
+            at = skipWhitespace(line, at + 3, to);
+        }
+        return at;
+    }
+
+    private static int skipWhitespace(String text, int from, int to) {
+        while (from < to && Character.isWhitespace(text.charAt(from))) {
+            from++;
+        }
+        return from;
+    }
+
+    // Drops emphasis marks, keeps the text of links and images, and cuts after . ! ? or … followed by a space
+    private static void split(StringBuilder paragraph, List<String> sentences) {
+        if (paragraph.isEmpty()) {
+            return;
+        }
+        StringBuilder sentence = new StringBuilder();
+        int length = paragraph.length();
+        // Next "[", "](" and ")" of a link, only searched again once passed: every character is scanned once
+        // per marker even on bracket-heavy text, instead of once per '['
+        int nextOpen = -1;
+        int nextClose = -1;
+        int nextEnd = -1;
+        for (int i = 0; i < length; i++) {
+            char c = paragraph.charAt(i);
+            if (c == '[' || (c == '!' && i + 1 < length && paragraph.charAt(i + 1) == '[')) {
+                int open = c == '[' ? i : i + 1;
+                nextOpen = next(paragraph, "[", open + 1, nextOpen);
+                nextClose = next(paragraph, "](", open + 1, nextClose);
+                int close = nextClose;
+                nextEnd = close == length ? length : next(paragraph, ")", close + 2, nextEnd);
+                int end = nextEnd;
+                if (end < length && nextOpen > close) {
+                    appendText(paragraph, open + 1, close, sentence);
+                    i = end;
+                    continue;
+                }
+            }
+            if (c == '*' || c == '_' || c == '`' || c == '~') {
+                continue;
+            }
+            sentence.append(c);
+            if ((c == '.' || c == '!' || c == '?' || c == '…') && (i + 1 == length || Character.isWhitespace(paragraph.charAt(i + 1)))) {
+                add(sentence, sentences);
+            }
+        }
+        add(sentence, sentences);
+        paragraph.setLength(0);
+    }
+
+    // First occurrence of marker from the given index, or the text's length when there is none.
+    // previous is the answer of an earlier call with a smaller or equal from, still valid when not behind it.
+    private static int next(StringBuilder text, String marker, int from, int previous) {
+        if (previous >= from) {
+            return previous;
+        }
+        int found = text.indexOf(marker, from);
+        return found < 0 ? text.length() : found;
+    }
+
+    private static void appendText(StringBuilder paragraph, int from, int to, StringBuilder sentence) {
+        for (int i = from; i < to; i++) {
+            char c = paragraph.charAt(i);
+            if (c != '*' && c != '_' && c != '`' && c != '~') {
+                sentence.append(c);
+            }
+        }
+    }
+
+    private static void add(StringBuilder sentence, List<String> sentences) {
+        String stripped = sentence.toString().strip();
+        sentence.setLength(0);
+        // Fragments too short to stand alone in a summary
+        if (stripped.length() >= 12) {
+            sentences.add(stripped);
+        }
+    }
+
+    private static double[] filled(int length, double value) {
+        double[] array = new double[length];
+        Arrays.fill(array, value);
+        return array;
+    }
+}
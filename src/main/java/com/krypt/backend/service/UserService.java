@@ -1,5 +1,7 @@
 package com.krypt.backend.service;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.krypt.backend.config.JwtUtils;
 import com.krypt.backend.dto.UserDTO.*;
 import com.krypt.backend.model.Role;
@@ -7,16 +9,22 @@ import com.krypt.backend.model.Token;
 import com.krypt.backend.model.User;
 import com.krypt.backend.model.enums.RoleType;
 import com.krypt.backend.model.enums.TokenType;
-import com.krypt.backend.repository.RoleRepository;
 import com.krypt.backend.repository.TokenRepository;
 import com.krypt.backend.repository.UserRepository;
+import com.krypt.backend.service.EmailTemplates.RenderedEmail;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.i18n.LocaleContextHolder;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
-import java.util.List;
+import java.time.Duration;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -31,59 +39,45 @@ public class UserService {
     private final AuthenticationManager authenticationManager;
     private final TokenRepository tokenRepository;
     private final EmailService emailService;
-    private final RoleRepository roleRepository;
-
-    public UserService(UserRepository userRepository, PasswordEncoder passwordEncoder, JwtUtils jwtUtils, AuthenticationManager authenticationManager, TokenRepository tokenRepository, EmailService emailService, RoleRepository roleRepository) {
+    private final RoleService roleService;
+    private final EmailTemplates emailTemplates;
+    // Profile DTOs by email, evicted by every write going through this service
+    private final Cache<String, UserDTO> profiles;
+
+    public UserService(UserRepository userRepository, PasswordEncoder passwordEncoder, JwtUtils jwtUtils, AuthenticationManager authenticationManager, TokenRepository tokenRepository, EmailService emailService, RoleService roleService, EmailTemplates emailTemplates,
+                       MeterRegistry meterRegistry, @Value("${krypt.cache.profiles.max-size:10000}") long profileCacheSize,
+                       @Value("${krypt.cache.profiles.ttl:PT10M}") Duration profileCacheTtl) {
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
         this.jwtUtils = jwtUtils;
         this.authenticationManager = authenticationManager;
         this.tokenRepository = tokenRepository;
         this.emailService = emailService;
-        this.roleRepository = roleRepository;
+        this.roleService = roleService;
+        this.emailTemplates = emailTemplates;
+        this.profiles = Caffeine.newBuilder()
+                .maximumSize(profileCacheSize)
+                .expireAfterWrite(profileCacheTtl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, profiles, "userProfiles");
     }
 
-    private String buildVerificationEmail(User user, String verificationLink) {
-        return "<!DOCTYPE html>" +
-                "<html lang='en'>" +
-                "<head>" +
-                "<meta charset='UTF-8'>" +
-                "<style>" +
-                "  body { font-family: Arial, sans-serif; background-color: #f4f4f4; padding: 20px; }" +
-                "  .container { background-color: #fff; border-radius: 8px; padding: 30px; max-width: 600px; margin: auto; box-shadow: 0 2px 8px rgba(0,0,0,0.1); }" +
-                "  h2 { color: #171717; }" +
-                "  p { font-size: 16px; color: #333; line-height: 1.5; }" +
-                "  .button { display: inline-block; padding: 12px 24px; margin-top: 20px;" +
-                "            background: linear-gradient(to right, #5554dc, #00b0cf);" +
-                "            color: #fff; text-decoration: none; border-radius: 6px; font-weight: bold;" +
-                "            transition: opacity 0.3s; }" +
-                "  .button:hover { opacity: 0.9; }" +
-                "  .footer { margin-top: 40px; font-size: 13px; color: #777; text-align: center; }" +
-                "  .footer img { max-width: 65px; margin-top: 10px; border-radius: 50%; }" +
-                "</style>" +
-                "</head>" +
-                "<body>" +
-                "<div class='container'>" +
-                "<h2>Welcome " + user.getFirstName() + "!</h2>" +
-                "<p>Thank you for signing up for <strong>Krypt</strong>.</p>" +
-                "<p>To activate your account, please click the button below:</p>" +
-                "<a class='button' href='" + verificationLink + "'>Activate My Account</a>" +
-                "<p style='margin-top: 30px;'>If you did not create an account, you can safely ignore this email.</p>" +
-                "<div class='footer'>" +
-                "<p>The Krypt Team</p>" +
-                "<img src='https://i.imgur.com/bSRLqMp.png' alt='Logo' />" +
-                "</div>" +
-                "</div>" +
-                "</body>" +
-                "</html>";
+    private void queueVerificationEmail(User user, String tokenValue) {
+        String verificationLink = "http://localhost:8080/api/auth/verify?token=" + tokenValue;
+        RenderedEmail email = emailTemplates.render("verify-email", LocaleContextHolder.getLocale(),
+                Map.of("firstName", user.getFirstName(), "verificationLink", verificationLink));
+        emailService.queueEmail(user.getEmail(), email.subject(), email.html());
     }
 
+    // The user, its verification token and the outbox email commit together
+    @Transactional
     public void register(RegisterDTO registerDTO) {
         if (userRepository.findByEmail(registerDTO.getEmail()).isPresent()) {
             throw new RuntimeException("Email already exists");
         }
 
-        Role role = roleRepository.findByRoleType(STUDENT).orElseThrow(() -> new RuntimeException("Role not found"));
+        Role role = roleService.getRole(STUDENT);
 
         User user = new User();
         user.setFirstName(registerDTO.getFirstName());
@@ -102,10 +96,10 @@ public class UserService {
         token.setUser(user);
         tokenRepository.save(token);
 
-        String verificationLink = "http://localhost:8080/api/auth/verify?token=" + tokenValue;
-        emailService.sendEmail(user.getEmail(), "Verify Your Krypt Account", buildVerificationEmail(user, verificationLink));
+        queueVerificationEmail(user, tokenValue);
     }
 
+    @Transactional
     public void resendVerificationEmail(String email) {
         User user = userRepository.findByEmail(email).orElseThrow(() -> new RuntimeException("User not found"));
 
@@ -122,8 +116,7 @@ public class UserService {
         token.setUser(user);
         tokenRepository.save(token);
 
-        String verificationLink = "http://localhost:8080/api/auth/verify?token=" + tokenValue;
-        emailService.sendEmail(user.getEmail(), "Verify Your Krypt Account", buildVerificationEmail(user, verificationLink));
+        queueVerificationEmail(user, tokenValue);
     }
 
     public String authenticateUser(AuthenticationDTO authenticationDTO) {
@@ -131,25 +124,17 @@ public class UserService {
                 new UsernamePasswordAuthenticationToken(authenticationDTO.getEmail(), authenticationDTO.getPassword())
         );
 
+        User user = userRepository.findByEmail(authentication.getName())
+                .orElseThrow(() -> new RuntimeException("User not found"));
+
         String jwt = jwtUtils.generateToken(
-                authentication.getName(),
+                user.getId(),
+                user.getEmail(),
+                roleService.getRole(user.getRole().getId()).getRoleType().name(),
                 "notes:read", "notes:write", "notes:tags", "notes:summarize", "chatbot:generate"
         );
 
-        User user = userRepository.findByEmail(authenticationDTO.getEmail())
-                .orElseThrow(() -> new RuntimeException("User not found"));
-
-        List<Token> oldTokens = tokenRepository.findAllByUser(user);
-        oldTokens.stream().filter(t -> t.isExpired() || t.isRevoked()).forEach(tokenRepository::delete);
-
-        Token token = new Token();
-        token.setToken(jwt);
-        token.setUser(user);
-        token.setTokenType(TokenType.ACCESS);
-        token.setExpired(false);
-        token.setRevoked(false);
-        tokenRepository.save(token);
-
+        // Access tokens are not stored, logout revokes their jti through TokenRevocationStore
         return jwt;
     }
 
@@ -163,18 +148,20 @@ public class UserService {
 
         user.setPassword(passwordEncoder.encode(passwordChangeDTO.getNewPassword()));
         userRepository.save(user);
+        profiles.invalidate(email);
     }
 
     /* USER INFO */
     public Optional<UserDTO> getUserInfoByEmail(String email) {
-        return userRepository.findByEmail(email)
-                .map(user -> new UserDTO(
-                        user.getFirstName(),
-                        user.getLastName(),
-                        user.getEmail(),
-                        user.getRole(),
-                        user.getCreationDate()
-                ));
+        UserDTO cached = profiles.getIfPresent(email);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        // Loaded outside of the cache, a Caffeine loader would query inside its map lock and pin virtual threads.
+        // Unknown emails are not cached.
+        Optional<UserDTO> loaded = userRepository.findByEmail(email).map(this::toUserDTO);
+        loaded.ifPresent(profile -> profiles.put(email, profile));
+        return loaded;
     }
 
     public Optional<UserDTO> PatchUserInfoByEmail(String email, PatchUserDTO patchUserDTO){
@@ -192,13 +179,18 @@ public class UserService {
             user.setLastName(patchUserDTO.getLastName());
         }
         userRepository.save(user);
+        profiles.invalidate(email);
 
-        return Optional.of(new UserDTO(
+        return Optional.of(toUserDTO(user));
+    }
+
+    private UserDTO toUserDTO(User user) {
+        return new UserDTO(
                 user.getFirstName(),
                 user.getLastName(),
                 user.getEmail(),
-                user.getRole(),
+                RoleDTO.from(roleService.getRole(user.getRole().getId())),
                 user.getCreationDate()
-        ));
+        );
     }
 }
@@ -0,0 +1,11 @@
+-- Development accounts, only applied with the dev profile (spring.flyway.locations in application-dev.properties).
+-- Repeatable: runs after the versioned migrations and again whenever this file changes, existing accounts are kept.
+INSERT INTO user_table(user_id, last_name, first_name, email, password, role_id, creation_date, modification_date, email_verified)
+SELECT nextval('user_seq'), u.last_name, u.first_name, u.email, u.password, r.role_id, u.creation_date, u.modification_date, u.email_verified
+FROM (VALUES
+    ('Durand', 'Alice', 'alice.durand@example.com', '$2y$10$eqjReaDGnKGfJbGHGib7te.mCZoaLDmcby8GYw1jlIpVoLZykM4kq', 'PROFESSIONAL', '2025-08-01 10:00:00', '2025-08-01 10:00:00', true),
+    ('Martin', 'Bob', 'bob.martin@example.com', '$2y$10$eqjReaDGnKGfJbGHGib7te.mCZoaLDmcby8GYw1jlIpVoLZykM4kq', 'INDIVIDUAL', '2025-08-01 11:00:00', '2025-08-01 11:00:00', false),
+    ('Lemoine', 'Claire', 'claire.lemoine@example.com', '$2y$10$eqjReaDGnKGfJbGHGib7te.mCZoaLDmcby8GYw1jlIpVoLZykM4kq', 'STUDENT', '2025-08-01 12:00:00', '2025-08-01 12:00:00', true)
+) AS u(last_name, first_name, email, password, role_type, creation_date, modification_date, email_verified)
+JOIN role_table r ON r.role_type = u.role_type
+ON CONFLICT (lower(email)) DO NOTHING;
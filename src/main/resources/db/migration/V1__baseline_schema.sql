@@ -0,0 +1,147 @@
+-- Schema of the entities as Hibernate generated it with ddl-auto=create, plus schema-postgres.sql.
+-- Hibernate only validates it now (spring.jpa.hibernate.ddl-auto=validate): entity changes need a migration.
+
+-- Pooled ids: the increments match the allocationSize of the @SequenceGenerator of each entity
+CREATE SEQUENCE user_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE token_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE note_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE note_revision_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE email_outbox_seq START WITH 1 INCREMENT BY 50;
+
+CREATE TABLE role_table (
+    role_id bigint GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    role_type varchar(50) NOT NULL,
+    max_storage_gb integer NOT NULL,
+    ai_quota integer NOT NULL,
+    price_per_month numeric(10, 2),
+    description varchar(500),
+    CONSTRAINT uk_role_role_type UNIQUE (role_type),
+    CONSTRAINT ck_role_role_type CHECK (role_type IN ('STUDENT', 'INDIVIDUAL', 'PROFESSIONAL', 'COMPANIES'))
+);
+
+CREATE TABLE user_table (
+    user_id bigint PRIMARY KEY,
+    last_name varchar(50) NOT NULL,
+    first_name varchar(50) NOT NULL,
+    email varchar(100) NOT NULL,
+    password varchar(255) NOT NULL,
+    role_id bigint NOT NULL,
+    creation_date varchar(255),
+    modification_date varchar(255),
+    email_verified boolean NOT NULL,
+    -- Only ever written by UserRepository's bulk updates, never by an entity insert
+    note_change_seq bigint DEFAULT 0 NOT NULL,
+    storage_used_bytes bigint DEFAULT 0 NOT NULL,
+    tokens_not_before timestamp(6) with time zone,
+    CONSTRAINT uk_user_email UNIQUE (email),
+    CONSTRAINT fk_user_role FOREIGN KEY (role_id) REFERENCES role_table (role_id)
+);
+
+CREATE TABLE userplan_table (
+    userplan_id bigint GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    user_id bigint NOT NULL,
+    role_id bigint NOT NULL,
+    current_storage_gb integer NOT NULL,
+    current_ai_quota integer NOT NULL,
+    current_price_per_month numeric(10, 2),
+    -- Written by AiQuotaService's flushes only
+    ai_used bigint DEFAULT 0 NOT NULL,
+    ai_period varchar(7),
+    CONSTRAINT uk_userplan_user UNIQUE (user_id),
+    CONSTRAINT fk_userplan_user FOREIGN KEY (user_id) REFERENCES user_table (user_id),
+    CONSTRAINT fk_userplan_role FOREIGN KEY (role_id) REFERENCES role_table (role_id)
+);
+
+CREATE TABLE token_table (
+    token_id bigint PRIMARY KEY,
+    token text,
+    token_type varchar(255) NOT NULL,
+    expired boolean NOT NULL,
+    revoked boolean NOT NULL,
+    user_id bigint NOT NULL,
+    CONSTRAINT uk_token_token UNIQUE (token),
+    CONSTRAINT ck_token_token_type CHECK (token_type IN ('ACCESS', 'REFRESH', 'RESET_PASSWORD', 'VERIFY_EMAIL')),
+    CONSTRAINT fk_token_user FOREIGN KEY (user_id) REFERENCES user_table (user_id)
+);
+
+CREATE TABLE revoked_token_table (
+    jti varchar(36) PRIMARY KEY,
+    user_id bigint,
+    issued_at timestamp(6) with time zone NOT NULL,
+    expires_at timestamp(6) with time zone NOT NULL,
+    revoked_at timestamp(6) with time zone NOT NULL
+);
+CREATE INDEX idx_revoked_token_revoked_at ON revoked_token_table (revoked_at);
+CREATE INDEX idx_revoked_token_expires_at ON revoked_token_table (expires_at);
+
+CREATE TABLE note_table (
+    note_id bigint PRIMARY KEY,
+    user_id bigint NOT NULL,
+    title varchar(255) NOT NULL,
+    content text,
+    creation_date timestamp(6),
+    modification_date timestamp(6),
+    change_seq bigint NOT NULL,
+    version bigint NOT NULL,
+    CONSTRAINT fk_note_user FOREIGN KEY (user_id) REFERENCES user_table (user_id)
+);
+CREATE INDEX idx_note_user_title_id ON note_table (user_id, title, note_id);
+CREATE INDEX idx_note_user_change_seq ON note_table (user_id, change_seq);
+
+-- Full-text search: title weighted above content, maintained by PostgreSQL on every insert/update
+ALTER TABLE note_table ADD COLUMN search_vector tsvector
+    GENERATED ALWAYS AS (
+        setweight(to_tsvector('simple', coalesce(title, '')), 'A') ||
+        setweight(to_tsvector('simple', coalesce(content, '')), 'B')
+    ) STORED;
+CREATE INDEX idx_note_search_vector ON note_table USING GIN (search_vector);
+
+CREATE TABLE note_tombstone_table (
+    tombstone_id bigint GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    user_id bigint NOT NULL,
+    note_id bigint NOT NULL,
+    change_seq bigint NOT NULL,
+    deletion_date timestamp(6) NOT NULL
+);
+CREATE INDEX idx_note_tombstone_user_change_seq ON note_tombstone_table (user_id, change_seq);
+
+CREATE TABLE note_revision_table (
+    revision_id bigint PRIMARY KEY,
+    note_id bigint NOT NULL,
+    user_id bigint NOT NULL,
+    revision_number bigint NOT NULL,
+    snapshot boolean NOT NULL,
+    title varchar(255) NOT NULL,
+    data text NOT NULL,
+    creation_date timestamp(6) NOT NULL,
+    CONSTRAINT uk_note_revision_note_number UNIQUE (note_id, revision_number)
+);
+
+CREATE TABLE tag_table (
+    id bigint GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    name varchar(255) NOT NULL,
+    CONSTRAINT uk_tag_name UNIQUE (name)
+);
+
+CREATE TABLE note_tag_table (
+    note_id bigint NOT NULL,
+    tag_id bigint NOT NULL,
+    user_id bigint NOT NULL,
+    PRIMARY KEY (note_id, tag_id)
+);
+CREATE INDEX idx_note_tag_user_tag_note ON note_tag_table (user_id, tag_id, note_id);
+
+CREATE TABLE email_outbox_table (
+    email_id bigint PRIMARY KEY,
+    recipient varchar(100) NOT NULL,
+    subject varchar(255) NOT NULL,
+    body text NOT NULL,
+    status varchar(20) NOT NULL,
+    attempts integer NOT NULL,
+    next_attempt_at timestamp(6) with time zone NOT NULL,
+    last_error varchar(500),
+    creation_date timestamp(6) with time zone NOT NULL,
+    sent_at timestamp(6) with time zone,
+    CONSTRAINT ck_email_outbox_status CHECK (status IN ('PENDING', 'SENT', 'FAILED'))
+);
+CREATE INDEX idx_email_outbox_status_next_attempt ON email_outbox_table (status, next_attempt_at);
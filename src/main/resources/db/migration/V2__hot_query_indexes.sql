@@ -0,0 +1,10 @@
+-- Indexes of the hot lookups. note_table(user_id, title) is already served by idx_note_user_title_id, whose
+-- trailing note_id makes it the keyset of the note listing as well. token_table(token) is served by the
+-- uk_token_token unique constraint, which a hash index next to it would only duplicate.
+
+-- Notes of a user by last change
+CREATE INDEX idx_note_user_modification_date ON note_table (user_id, modification_date);
+
+-- Emails are matched case-insensitively (UserRepository), one account per address whatever its case
+ALTER TABLE user_table DROP CONSTRAINT uk_user_email;
+CREATE UNIQUE INDEX idx_user_email_lower ON user_table (lower(email));
@@ -0,0 +1,14 @@
+-- Note bodies are compressed by PostgreSQL's TOAST rather than in Java so that search_vector, ts_headline
+-- and the summary projections keep working on plain text. Values written before a codec switch keep their
+-- own codec tag and stay readable.
+
+-- lz4 needs PostgreSQL 14+ built with --with-lz4, pglz stays in use otherwise
+DO $$
+BEGIN
+    EXECUTE 'ALTER TABLE note_table ALTER COLUMN content SET COMPRESSION lz4';
+EXCEPTION WHEN feature_not_supported OR syntax_error THEN
+    RAISE WARNING 'Note content compression could not be set to lz4: %', SQLERRM;
+END $$;
+
+-- Rows over about 2 KB get their content compressed, then moved out of line, until they fit that size
+ALTER TABLE note_table SET (toast_tuple_target = 2040);
@@ -0,0 +1,78 @@
+package com.krypt.backend.benchmark;
+
+import com.krypt.backend.service.EmailTemplates;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Verification email: the former per-call string concatenation against the precompiled template.
+ * Run with: mvn -Pbenchmark test-compile exec:exec -Djmh.include=EmailTemplate
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 1)
+@Fork(1)
+public class EmailTemplateBenchmark {
+    private EmailTemplates emailTemplates;
+    private String firstName;
+    private String verificationLink;
+
+    @Setup
+    public void setUp() {
+        emailTemplates = new EmailTemplates("classpath*:templates/email/*.html");
+        firstName = "Camille";
+        verificationLink = "http://localhost:8080/api/auth/verify?token=6f1c2a8e-1d4b-4c8e-9a52-3f0d7e9b1c44";
+    }
+
+    @Benchmark
+    public String concatenation() {
+        return buildVerificationEmail(firstName, verificationLink);
+    }
+
+    @Benchmark
+    public String precompiled() {
+        return emailTemplates.render("verify-email", Locale.ENGLISH,
+                Map.of("firstName", firstName, "verificationLink", verificationLink)).html();
+    }
+
+    // Copy of the removed UserService.buildVerificationEmail
+    private static String buildVerificationEmail(String firstName, String verificationLink) {
+        return "<!DOCTYPE html>" +
+                "<html lang='en'>" +
+                "<head>" +
+                "<meta charset='UTF-8'>" +
+                "<style>" +
+                "  body { font-family: Arial, sans-serif; background-color: #f4f4f4; padding: 20px; }" +
+                "  .container { background-color: #fff; border-radius: 8px; padding: 30px; max-width: 600px; margin: auto; box-shadow: 0 2px 8px rgba(0,0,0,0.1); }" +
+                "  h2 { color: #171717; }" +
+                "  p { font-size: 16px; color: #333; line-height: 1.5; }" +
+                "  .button { display: inline-block; padding: 12px 24px; margin-top: 20px;" +
+                "            background: linear-gradient(to right, #5554dc, #00b0cf);" +
+                "            color: #fff; text-decoration: none; border-radius: 6px; font-weight: bold;" +
+                "            transition: opacity 0.3s; }" +
+                "  .button:hover { opacity: 0.9; }" +
+                "  .footer { margin-top: 40px; font-size: 13px; color: #777; text-align: center; }" +
+                "  .footer img { max-width: 65px; margin-top: 10px; border-radius: 50%; }" +
+                "</style>" +
+                "</head>" +
+                "<body>" +
+                "<div class='container'>" +
+                "<h2>Welcome " + firstName + "!</h2>" +
+                "<p>Thank you for signing up for <strong>Krypt</strong>.</p>" +
+                "<p>To activate your account, please click the button below:</p>" +
+                "<a class='button' href='" + verificationLink + "'>Activate My Account</a>" +
+                "<p style='margin-top: 30px;'>If you did not create an account, you can safely ignore this email.</p>" +
+                "<div class='footer'>" +
+                "<p>The Krypt Team</p>" +
+                "<img src='https://i.imgur.com/bSRLqMp.png' alt='Logo' />" +
+                "</div>" +
+                "</div>" +
+                "</body>" +
+                "</html>";
+    }
+}
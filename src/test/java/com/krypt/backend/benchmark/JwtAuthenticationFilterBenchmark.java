@@ -0,0 +1,93 @@
+package com.krypt.backend.benchmark;
+
+import com.krypt.backend.config.JwtAuthenticationFilter;
+import com.krypt.backend.config.JwtUtils;
+import com.krypt.backend.config.TokenRevocationStore;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import jakarta.servlet.FilterChain;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+
+import java.security.Key;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of authenticating one request in {@link JwtAuthenticationFilter}.
+ * {@code legacyFourParses} replays the original filter: the key rebuilt, the token parsed four times
+ * and the user loaded (stubbed here, so its database round trip is not counted).
+ * Run with: mvn -Pbenchmark test-compile exec:exec -Djmh.include=JwtAuthenticationFilter
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtAuthenticationFilterBenchmark {
+    private static final String SECRET = "0123456789abcdef0123456789abcdef";
+    private static final FilterChain NOOP_CHAIN = (request, response) -> {};
+
+    private JwtAuthenticationFilter cachedFilter;
+    private JwtAuthenticationFilter uncachedFilter;
+    private UserDetailsService userDetailsService;
+    private MockHttpServletRequest request;
+    private MockHttpServletResponse response;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        UserDetails userDetails = User.withUsername("bench@example.com").password("x").build();
+        userDetailsService = username -> userDetails;
+
+        JwtUtils cachedJwtUtils = new JwtUtils(SECRET, 10_000);
+        JwtUtils uncachedJwtUtils = new JwtUtils(SECRET, 0);
+        cachedFilter = new JwtAuthenticationFilter(cachedJwtUtils, new TokenRevocationStore(null, null, cachedJwtUtils, 10_000));
+        uncachedFilter = new JwtAuthenticationFilter(uncachedJwtUtils, new TokenRevocationStore(null, null, uncachedJwtUtils, 10_000));
+
+        token = cachedJwtUtils.generateToken(1L, "bench@example.com", "STUDENT",
+                "notes:read", "notes:write", "notes:tags", "notes:summarize", "chatbot:generate");
+        request = new MockHttpServletRequest("GET", "/api/notes");
+        request.addHeader("Authorization", "Bearer " + token);
+        response = new MockHttpServletResponse();
+    }
+
+    @TearDown(Level.Invocation)
+    public void clearContext() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Benchmark
+    public void cachedFilter() throws Exception {
+        cachedFilter.doFilter(request, response, NOOP_CHAIN);
+    }
+
+    @Benchmark
+    public void uncachedFilter() throws Exception {
+        uncachedFilter.doFilter(request, response, NOOP_CHAIN);
+    }
+
+    @Benchmark
+    public void legacyFourParses(Blackhole blackhole) {
+        String email = legacyClaims(token).getSubject();
+        UserDetails userDetails = userDetailsService.loadUserByUsername(email);
+        String username = legacyClaims(token).getSubject();
+        boolean valid = legacyClaims(token).getSubject().equals(username)
+                && !legacyClaims(token).getExpiration().before(new Date());
+        blackhole.consume(userDetails);
+        blackhole.consume(valid);
+    }
+
+    private static Claims legacyClaims(String token) {
+        Key key = Keys.hmacShaKeyFor(SECRET.getBytes());
+        return Jwts.parserBuilder().setSigningKey(key).build().parseClaimsJws(token).getBody();
+    }
+}
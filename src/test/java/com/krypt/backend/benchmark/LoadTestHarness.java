@@ -0,0 +1,153 @@
+package com.krypt.backend.benchmark;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.LongStream;
+
+/**
+ * Closed-loop HTTP load against a running instance: each client sends its next request as soon as the previous
+ * one is answered, cycling through the paths, and only requests started after the warm-up are measured.
+ * Prints throughput and latency percentiles. Run it once against the app started with platform threads and once
+ * with the virtual profile (SPRING_PROFILES_ACTIVE=dev,virtual), same database, same concurrency.
+ * Run with: mvn -Pload-test test-compile exec:exec -Dload.url=http://localhost:8080 -Dload.email=... -Dload.password=...
+ * Other settings: load.token instead of email and password, load.concurrency, load.duration, load.warmup, load.paths.
+ */
+public final class LoadTestHarness {
+    private static final Pattern TOKEN = Pattern.compile("\"token\"\\s*:\\s*\"([^\"]+)\"");
+
+    private LoadTestHarness() {}
+
+    public static void main(String[] args) throws Exception {
+        String url = System.getProperty("load.url", "http://localhost:8080");
+        String token = System.getProperty("load.token");
+        if (token == null || token.isBlank()) {
+            token = login(url, System.getProperty("load.email"), System.getProperty("load.password"));
+        }
+        Settings settings = new Settings(url, token,
+                Integer.getInteger("load.concurrency", 500),
+                Duration.parse(System.getProperty("load.duration", "PT30S")),
+                Duration.parse(System.getProperty("load.warmup", "PT10S")),
+                List.of(System.getProperty("load.paths", "/api/notes?limit=20,/api/notes/search?q=projet").split(",")));
+        System.out.println(run(settings));
+    }
+
+    public static Result run(Settings settings) throws InterruptedException {
+        // Clients are virtual threads too, so that the harness itself is not what limits concurrency
+        ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor();
+        HttpClient http = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .executor(clients)
+                .build();
+        long start = System.nanoTime();
+        long measuredFrom = start + settings.warmup().toNanos();
+        long end = measuredFrom + settings.duration().toNanos();
+        AtomicLong errors = new AtomicLong();
+        AtomicReference<String> firstError = new AtomicReference<>();
+        List<Future<long[]>> latencies = new ArrayList<>();
+        for (int client = 0; client < settings.concurrency(); client++) {
+            int id = client;
+            latencies.add(clients.submit(() -> {
+                long[] recorded = new long[1024];
+                int count = 0;
+                for (int i = id; System.nanoTime() < end; i++) {
+                    HttpRequest request = HttpRequest.newBuilder(URI.create(settings.url() + settings.paths().get(i % settings.paths().size())))
+                            .header("Authorization", "Bearer " + settings.token())
+                            .timeout(Duration.ofSeconds(30))
+                            .build();
+                    long sent = System.nanoTime();
+                    String error;
+                    try {
+                        int status = http.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+                        error = status / 100 == 2 ? null : "HTTP " + status + " on " + request.uri().getPath();
+                    } catch (IOException e) {
+                        error = e.toString();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                    if (sent < measuredFrom) {
+                        continue;
+                    }
+                    if (error != null) {
+                        firstError.compareAndSet(null, error);
+                        errors.incrementAndGet();
+                        continue;
+                    }
+                    if (count == recorded.length) {
+                        recorded = Arrays.copyOf(recorded, count * 2);
+                    }
+                    recorded[count++] = System.nanoTime() - sent;
+                }
+                return Arrays.copyOf(recorded, count);
+            }));
+        }
+        // Only shut down once the clients are done, the HttpClient runs its own tasks on this executor too
+        LongStream.Builder measured = LongStream.builder();
+        try {
+            for (Future<long[]> client : latencies) {
+                Arrays.stream(client.get()).forEach(measured);
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("A client failed", e.getCause());
+        } finally {
+            clients.shutdownNow();
+        }
+        long[] all = measured.build().sorted().toArray();
+        double seconds = settings.duration().toNanos() / 1e9;
+        return new Result(settings.concurrency(), all.length, errors.get(), all.length / seconds,
+                percentile(all, 50), percentile(all, 90), percentile(all, 99), percentile(all, 99.9),
+                all.length == 0 ? 0 : all[all.length - 1] / 1e6, firstError.get());
+    }
+
+    private static double percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))] / 1e6;
+    }
+
+    private static String login(String url, String email, String password) throws IOException, InterruptedException {
+        if (email == null || email.isBlank() || password == null || password.isBlank()) {
+            throw new IllegalArgumentException("Set load.token, or load.email and load.password of a verified account");
+        }
+        String body = "{\"email\":\"" + email + "\",\"password\":\"" + password + "\"}";
+        HttpResponse<String> response = HttpClient.newHttpClient().send(HttpRequest.newBuilder(URI.create(url + "/api/auth/login"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build(), HttpResponse.BodyHandlers.ofString());
+        Matcher matcher = TOKEN.matcher(response.body());
+        if (response.statusCode() != 200 || !matcher.find()) {
+            throw new IllegalStateException("Login failed with " + response.statusCode() + ": " + response.body());
+        }
+        return matcher.group(1);
+    }
+
+    public record Settings(String url, String token, int concurrency, Duration duration, Duration warmup, List<String> paths) {}
+
+    public record Result(int concurrency, long requests, long errors, double throughput,
+                         double p50, double p90, double p99, double p999, double max, String firstError) {
+        @Override
+        public String toString() {
+            return String.format("concurrency=%d requests=%d errors=%d throughput=%.0f req/s latency ms: p50=%.1f p90=%.1f p99=%.1f p99.9=%.1f max=%.1f",
+                    concurrency, requests, errors, throughput, p50, p90, p99, p999, max)
+                    + (firstError == null ? "" : " first error: " + firstError);
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.krypt.backend.benchmark;
+
+import io.airlift.compress.Compressor;
+import io.airlift.compress.Decompressor;
+import io.airlift.compress.lz4.Lz4Compressor;
+import io.airlift.compress.lz4.Lz4Decompressor;
+import io.airlift.compress.snappy.SnappyCompressor;
+import io.airlift.compress.snappy.SnappyDecompressor;
+import io.airlift.compress.zstd.ZstdCompressor;
+import io.airlift.compress.zstd.ZstdDecompressor;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compression speed and ratio of pure-Java codecs on Markdown note bodies.
+ * deflate stands in for PostgreSQL's pglz (same LZ77 family, no Java port of pglz exists);
+ * lz4 is the codec PostgreSQL can use for TOAST, zstd and snappy are shown for reference.
+ * The ratio of each codec/size pair is printed before its measurements.
+ * Run with: mvn -Pbenchmark test-compile exec:exec -Djmh.include=NoteCompression
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 1)
+@Fork(1)
+public class NoteCompressionBenchmark {
+
+    @Param({"lz4", "zstd", "snappy", "deflate"})
+    public String codec;
+
+    @Param({"4096", "65536", "524288"})
+    public int noteSize;
+
+    private Codec implementation;
+    private byte[] raw;
+    private byte[] compressed;
+    private int compressedLength;
+    private byte[] output;
+
+    @Setup
+    public void setUp() {
+        implementation = switch (codec) {
+            case "lz4" -> new AirliftCodec(new Lz4Compressor(), new Lz4Decompressor());
+            case "zstd" -> new AirliftCodec(new ZstdCompressor(), new ZstdDecompressor());
+            case "snappy" -> new AirliftCodec(new SnappyCompressor(), new SnappyDecompressor());
+            case "deflate" -> new DeflateCodec();
+            default -> throw new IllegalArgumentException(codec);
+        };
+        raw = NoteCorpus.markdownNote(noteSize, noteSize).getBytes(StandardCharsets.UTF_8);
+        compressed = new byte[implementation.maxCompressedLength(raw.length)];
+        compressedLength = implementation.compress(raw, compressed);
+        output = new byte[raw.length];
+        System.out.printf("%n%s on %d bytes: ratio %.2f%n", codec, raw.length, (double) raw.length / compressedLength);
+    }
+
+    @Benchmark
+    public int compress() {
+        return implementation.compress(raw, compressed);
+    }
+
+    @Benchmark
+    public int decompress() {
+        return implementation.decompress(compressed, compressedLength, output);
+    }
+
+    private interface Codec {
+        int maxCompressedLength(int length);
+        int compress(byte[] input, byte[] output);
+        int decompress(byte[] input, int length, byte[] output);
+    }
+
+    private record AirliftCodec(Compressor compressor, Decompressor decompressor) implements Codec {
+        public int maxCompressedLength(int length) {
+            return compressor.maxCompressedLength(length);
+        }
+
+        public int compress(byte[] input, byte[] output) {
+            return compressor.compress(input, 0, input.length, output, 0, output.length);
+        }
+
+        public int decompress(byte[] input, int length, byte[] output) {
+            return decompressor.decompress(input, 0, length, output, 0, output.length);
+        }
+    }
+
+    private static final class DeflateCodec implements Codec {
+        private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        private final Inflater inflater = new Inflater();
+
+        public int maxCompressedLength(int length) {
+            return length + length / 1000 + 64;
+        }
+
+        public int compress(byte[] input, byte[] output) {
+            deflater.reset();
+            deflater.setInput(input);
+            deflater.finish();
+            return deflater.deflate(output);
+        }
+
+        public int decompress(byte[] input, int length, byte[] output) {
+            inflater.reset();
+            inflater.setInput(input, 0, length);
+            try {
+                return inflater.inflate(output);
+            } catch (DataFormatException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.krypt.backend.benchmark;
+
+import java.util.Random;
+
+// Deterministic Markdown notes resembling what users write: headings, prose in French and English,
+// bullet lists, code blocks, links and tables
+public final class NoteCorpus {
+    private static final String[] SENTENCES = {
+            "La réunion de lundi a permis de clarifier le périmètre du projet et les priorités du trimestre.",
+            "Les étudiants doivent rendre le rapport de synthèse avant la fin du mois, avec une bibliographie complète.",
+            "Le théorème de Bayes relie la probabilité conditionnelle d'un événement à celle de son inverse.",
+            "Penser à appeler le client pour valider le budget et le planning de livraison.",
+            "Cette idée mérite d'être approfondie lors de la prochaine session de travail en équipe.",
+            "The deployment failed because the database migration was not applied before the new release.",
+            "Caching the verified token claims removed most of the CPU time spent in the authentication filter.",
+            "We agreed to ship the search feature behind a flag and measure latency at the 99th percentile.",
+            "Read chapter four again and summarise the key arguments about memory hierarchies and locality.",
+            "Backups run nightly and are kept for thirty days, restores are tested every quarter.",
+            "Le chapitre trois présente les structures de données persistantes et leurs compromis de performance.",
+            "Objectif de la semaine : terminer les exercices de travaux dirigés et préparer l'examen blanc."
+    };
+    private static final String[] HEADINGS = {
+            "Contexte", "Objectifs", "Décisions", "Next steps", "Questions ouvertes", "Notes de cours",
+            "Action items", "Résumé", "Références", "Retrospective"
+    };
+    private static final String[] CODE = {
+            "```java\nList<Note> notes = noteRepository.findByUserIdOrderByTitleAsc(userId);\nnotes.forEach(n -> System.out.println(n.getTitle()));\n```",
+            "```sql\nSELECT note_id, title FROM note_table WHERE user_id = 42 ORDER BY title LIMIT 50;\n```",
+            "```bash\nmvn -B test && docker compose up -d postgres\n```"
+    };
+
+    // Sentence parts combined at random by proseNote, so that sentences share some words but rarely all
+    private static final String[] SUBJECTS = {
+            "L'équipe produit", "Le client", "La direction technique", "Le professeur", "Notre groupe de travail",
+            "The backend team", "The product owner", "Our reviewer", "The support desk", "Le comité de pilotage"
+    };
+    private static final String[] VERBS = {
+            "a validé", "a remis en question", "doit préparer", "souhaite accélérer", "a documenté",
+            "wants to simplify", "reviewed", "postponed", "measured", "is rewriting"
+    };
+    private static final String[] OBJECTS = {
+            "la migration de la base de données", "le planning de livraison", "le rapport de synthèse", "la recherche plein texte",
+            "le cache des sessions", "the authentication filter", "the export pipeline", "the search latency budget",
+            "the quarterly roadmap", "les exercices de travaux dirigés", "le budget du trimestre", "the backup policy"
+    };
+    private static final String[] COMPLEMENTS = {
+            "avant la fin du mois", "pendant la réunion de lundi", "pour réduire les coûts", "sans bloquer les utilisateurs",
+            "after the incident review", "to meet the latency target", "before the next release", "with the whole team",
+            "malgré les retards", "en suivant les recommandations du rapport"
+    };
+
+    private NoteCorpus() {}
+
+    // Plain paragraphs of varied sentences, whose similarity graph is connected like real prose
+    public static String proseNote(long seed, int targetChars) {
+        Random random = new Random(seed);
+        StringBuilder note = new StringBuilder(targetChars + 256);
+        while (note.length() < targetChars) {
+            for (int i = 0; i < 3 + random.nextInt(4); i++) {
+                note.append(SUBJECTS[random.nextInt(SUBJECTS.length)]).append(' ')
+                        .append(VERBS[random.nextInt(VERBS.length)]).append(' ')
+                        .append(OBJECTS[random.nextInt(OBJECTS.length)]).append(' ')
+                        .append(COMPLEMENTS[random.nextInt(COMPLEMENTS.length)]).append(". ");
+            }
+            note.append("\n\n");
+        }
+        return note.toString();
+    }
+
+    public static String markdownNote(long seed, int targetChars) {
+        Random random = new Random(seed);
+        StringBuilder note = new StringBuilder(targetChars + 256);
+        note.append("# ").append(HEADINGS[random.nextInt(HEADINGS.length)]).append(' ').append(seed).append("\n\n");
+        while (note.length() < targetChars) {
+            switch (random.nextInt(6)) {
+                case 0 -> note.append("## ").append(HEADINGS[random.nextInt(HEADINGS.length)]).append("\n\n");
+                case 1 -> {
+                    for (int i = 0; i < 2 + random.nextInt(4); i++) {
+                        note.append("- ").append(SENTENCES[random.nextInt(SENTENCES.length)]).append('\n');
+                    }
+                    note.append('\n');
+                }
+                case 2 -> note.append(CODE[random.nextInt(CODE.length)]).append("\n\n");
+                case 3 -> note.append("| Tâche | Responsable | Échéance |\n|---|---|---|\n| Rapport | Alice | ")
+                        .append(1 + random.nextInt(28)).append("/0").append(1 + random.nextInt(9)).append(" |\n\n");
+                default -> {
+                    for (int i = 0; i < 3 + random.nextInt(5); i++) {
+                        note.append(SENTENCES[random.nextInt(SENTENCES.length)]).append(' ');
+                    }
+                    note.append("Voir [la documentation](https://krypt.dev/docs/").append(random.nextInt(500)).append(").\n\n");
+                }
+            }
+        }
+        return note.toString();
+    }
+}
@@ -0,0 +1,85 @@
+package com.krypt.backend.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.krypt.backend.model.Note;
+import com.krypt.backend.model.NoteRevision;
+import com.krypt.backend.model.User;
+import com.krypt.backend.service.NoteRevisionService;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rebuilding the latest revision of a note edited 10k times, as GET /api/notes/{id}/revisions/{revision} does
+ * once the chain is loaded. An interval of 10000 means a single snapshot, i.e. replaying the whole history.
+ * Stored size against full copies is printed before the measurements.
+ * Run with: mvn -Pbenchmark test-compile exec:exec -Djmh.include=NoteRevision
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 1)
+@Fork(1)
+public class NoteRevisionBenchmark {
+    private static final int REVISIONS = 10_000;
+    private static final String[] WORDS = {"projet", "réunion", "budget", "latency", "cache", "index", "thread", "examen"};
+
+    @Param({"10", "50", "200", "10000"})
+    public int snapshotInterval;
+
+    private NoteRevisionService noteRevisionService;
+    private List<NoteRevision> chain;
+
+    @Setup
+    public void setUp() {
+        noteRevisionService = new NoteRevisionService(null, new ObjectMapper(), snapshotInterval, Integer.MAX_VALUE, Duration.ofDays(365));
+        User user = new User();
+        user.setId(1L);
+        Note note = new Note();
+        note.setId(1L);
+        note.setUser(user);
+        note.setTitle("Benchmark");
+
+        // Typing-sized edits at random places of an 8 KB note
+        Random random = new Random(42);
+        String content = NoteCorpus.markdownNote(1, 8192);
+        String previous = null;
+        List<NoteRevision> revisions = new ArrayList<>(REVISIONS);
+        long storedBytes = 0;
+        long fullBytes = 0;
+        for (int version = 0; version < REVISIONS; version++) {
+            int at = random.nextInt(content.length());
+            content = random.nextInt(3) == 0 && content.length() > 4096
+                    ? content.substring(0, at) + content.substring(Math.min(content.length(), at + 1 + random.nextInt(20)))
+                    : content.substring(0, at) + WORDS[random.nextInt(WORDS.length)] + ' ' + content.substring(at);
+            note.setVersion(version);
+            note.setContent(content);
+            NoteRevision revision = noteRevisionService.createRevision(note, previous, previous != null);
+            revisions.add(revision);
+            storedBytes += revision.getData().length();
+            fullBytes += content.length();
+            previous = content;
+        }
+
+        int base = revisions.size() - 1;
+        while (!revisions.get(base).isSnapshot()) {
+            base--;
+        }
+        chain = List.copyOf(revisions.subList(base, revisions.size()));
+        if (!content.equals(noteRevisionService.replay(chain))) {
+            throw new IllegalStateException("Replay does not match the latest content");
+        }
+        System.out.printf("%ninterval %d: chain of %d revisions, stored %d KB vs %d KB as full copies%n",
+                snapshotInterval, chain.size(), storedBytes / 1024, fullBytes / 1024);
+    }
+
+    @Benchmark
+    public String rebuildLatest() {
+        return noteRevisionService.replay(chain);
+    }
+}
@@ -0,0 +1,44 @@
+package com.krypt.backend.benchmark;
+
+import com.krypt.backend.service.TextRankSummarizer;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Extractive summary (TextRank) of Markdown notes up to the largest sizes kept by users.
+ * Run with: mvn -Pbenchmark test-compile exec:exec -Djmh.include=NoteSummary
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 1)
+@Fork(1)
+public class NoteSummaryBenchmark {
+
+    // markdown: mixed note with code and tables; prose: varied sentences, which takes the most iterations to rank;
+    // brackets: unterminated links back to back, the worst case of the link parsing
+    @Param({"markdown", "prose", "brackets"})
+    public String corpus;
+
+    @Param({"4096", "65536", "524288"})
+    public int noteSize;
+
+    private String content;
+
+    @Setup
+    public void setUp() {
+        content = switch (corpus) {
+            case "prose" -> NoteCorpus.proseNote(noteSize, noteSize);
+            case "brackets" -> "[a](".repeat(noteSize / 4);
+            default -> NoteCorpus.markdownNote(noteSize, noteSize);
+        };
+    }
+
+    @Benchmark
+    public List<String> summarize() {
+        return TextRankSummarizer.summarize(content, 3);
+    }
+}
@@ -0,0 +1,50 @@
+package com.krypt.backend.benchmark;
+
+import com.krypt.backend.dto.NoteDTO.PassageDTO;
+import com.krypt.backend.service.HashingEmbeddingProvider;
+import com.krypt.backend.service.PassageIndex;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hybrid passage retrieval (BM25 + quantized embeddings) over a user's whole vault, and reindexing one
+ * changed note. Prose notes share a small vocabulary, so most query words hit most passages: a worst case.
+ * Run with: mvn -Pbenchmark test-compile exec:exec -Djmh.include=PassageRetrieval
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 1)
+@Fork(1)
+public class PassageRetrievalBenchmark {
+    private static final int NOTE_SIZE = 4096;
+
+    @Param({"200", "2000"})
+    public int notes;
+
+    private PassageIndex index;
+    private String changed;
+    private long version;
+
+    @Setup
+    public void setUp() {
+        index = new PassageIndex(new HashingEmbeddingProvider(256), 600);
+        for (int note = 0; note < notes; note++) {
+            index.put((long) note, 0, "Note " + note, NoteCorpus.proseNote(note, NOTE_SIZE));
+        }
+        changed = NoteCorpus.proseNote(-1, NOTE_SIZE);
+    }
+
+    @Benchmark
+    public List<PassageDTO> search() {
+        return index.search("Quand le client a-t-il validé le budget du trimestre ?", 5);
+    }
+
+    @Benchmark
+    public boolean reindexNote() {
+        return index.put(0L, ++version, "Note 0", changed);
+    }
+}
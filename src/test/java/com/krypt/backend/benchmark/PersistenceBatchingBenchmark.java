@@ -0,0 +1,171 @@
+package com.krypt.backend.benchmark;
+
+import com.krypt.backend.model.Note;
+import com.krypt.backend.model.Role;
+import com.krypt.backend.model.Token;
+import com.krypt.backend.model.User;
+import com.krypt.backend.model.enums.RoleType;
+import com.krypt.backend.model.enums.TokenType;
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.stat.Statistics;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * The note and token write paths through Hibernate, with the former IDENTITY ids of notes, users and tokens
+ * against the pooled sequences, both with the JDBC batching of application.properties. IDENTITY inserts each
+ * row as it is persisted to read its id back, so only sequence ids let the inserts be batched.
+ * createNotes persists 500 notes in one transaction, like an import. tokenChurn signs up 20 users with their
+ * verification token in one transaction and deletes the 20 tokens of the previous round, like verifications.
+ * Runs on an in-memory H2 by default, which has no network round trip to save: for the production setup
+ * (prod profile pgjdbc settings included) point it at a PostgreSQL database that it may drop tables in,
+ * with -Dbench.jdbc.url=jdbc:postgresql://localhost:5432/krypt_bench -Dbench.jdbc.user=... -Dbench.jdbc.password=...
+ * Run with: mvn -Pbenchmark test-compile exec:exec -Djmh.include=PersistenceBatching
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 2)
+@Fork(1)
+public class PersistenceBatchingBenchmark {
+    private static final int NOTES_PER_TRANSACTION = 500;
+    private static final int SIGNUPS_PER_TRANSACTION = 20;
+
+    @Param({"identity", "sequence"})
+    public String ids;
+
+    private HikariDataSource dataSource;
+    private EntityManagerFactory entityManagerFactory;
+    private User owner;
+    private Role role;
+    private List<Long> previousTokens = List.of();
+    private long signups;
+
+    @Setup
+    public void setUp() {
+        String url = System.getProperty("bench.jdbc.url", "jdbc:h2:mem:bench;MODE=PostgreSQL;DB_CLOSE_DELAY=-1");
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(url);
+        dataSource.setUsername(System.getProperty("bench.jdbc.user", "sa"));
+        dataSource.setPassword(System.getProperty("bench.jdbc.password", ""));
+        if (url.startsWith("jdbc:postgresql:")) {
+            dataSource.addDataSourceProperty("reWriteBatchedInserts", "true");
+            dataSource.addDataSourceProperty("prepareThreshold", "2");
+            dataSource.addDataSourceProperty("preparedStatementCacheQueries", "512");
+        }
+
+        Map<String, Object> properties = new HashMap<>();
+        properties.put(AvailableSettings.HBM2DDL_AUTO, "create-drop");
+        properties.put(AvailableSettings.STATEMENT_BATCH_SIZE, 50);
+        properties.put(AvailableSettings.ORDER_INSERTS, true);
+        properties.put(AvailableSettings.ORDER_UPDATES, true);
+        LocalContainerEntityManagerFactoryBean factory = new LocalContainerEntityManagerFactoryBean();
+        factory.setDataSource(dataSource);
+        factory.setPackagesToScan("com.krypt.backend.model");
+        factory.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
+        factory.setJpaPropertyMap(properties);
+        if (ids.equals("identity")) {
+            factory.setMappingResources("benchmark/identity-ids-orm.xml");
+        }
+        factory.afterPropertiesSet();
+        entityManagerFactory = factory.getObject();
+
+        inTransaction(em -> {
+            role = new Role(RoleType.STUDENT, 5, 1000, null, "Benchmark", new ArrayList<>());
+            em.persist(role);
+            owner = newUser(role, "owner@bench.dev");
+            em.persist(owner);
+        });
+
+        // Statements sent for one transaction of each kind, batches counting as one
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+        createNotes();
+        long noteStatements = statistics.getPrepareStatementCount();
+        statistics.clear();
+        tokenChurn();
+        tokenChurn();
+        long tokenStatements = statistics.getPrepareStatementCount();
+        statistics.setStatisticsEnabled(false);
+        System.out.printf("%n%s ids: %d statements for %d notes, %d for 2 rounds of %d sign-ups%n",
+                ids, noteStatements, NOTES_PER_TRANSACTION, tokenStatements, SIGNUPS_PER_TRANSACTION);
+    }
+
+    @TearDown
+    public void tearDown() {
+        entityManagerFactory.close();
+        dataSource.close();
+    }
+
+    @Benchmark
+    public List<Note> createNotes() {
+        List<Note> notes = new ArrayList<>(NOTES_PER_TRANSACTION);
+        inTransaction(em -> {
+            User user = em.getReference(User.class, owner.getId());
+            for (int i = 0; i < NOTES_PER_TRANSACTION; i++) {
+                Note note = new Note();
+                note.setUser(user);
+                note.setTitle("Note " + i);
+                note.setContent("Compte rendu de la réunion projet, point " + i);
+                em.persist(note);
+                notes.add(note);
+            }
+        });
+        return notes;
+    }
+
+    @Benchmark
+    public List<Long> tokenChurn() {
+        List<Token> issued = new ArrayList<>(SIGNUPS_PER_TRANSACTION);
+        inTransaction(em -> {
+            Role reference = em.getReference(Role.class, role.getId());
+            for (int i = 0; i < SIGNUPS_PER_TRANSACTION; i++) {
+                User user = newUser(reference, "user" + signups++ + "@bench.dev");
+                em.persist(user);
+                Token token = new Token(null, UUID.randomUUID().toString(), TokenType.VERIFY_EMAIL, false, false, user);
+                em.persist(token);
+                issued.add(token);
+            }
+            for (Long id : previousTokens) {
+                em.remove(em.getReference(Token.class, id));
+            }
+        });
+        previousTokens = issued.stream().map(Token::getId).toList();
+        return previousTokens;
+    }
+
+    private void inTransaction(Consumer<EntityManager> work) {
+        EntityManager em = entityManagerFactory.createEntityManager();
+        try {
+            em.getTransaction().begin();
+            work.accept(em);
+            em.getTransaction().commit();
+        } finally {
+            em.close();
+        }
+    }
+
+    private static User newUser(Role role, String email) {
+        User user = new User();
+        user.setFirstName("Bench");
+        user.setLastName("Mark");
+        user.setEmail(email);
+        user.setPassword("$2y$10$eqjReaDGnKGfJbGHGib7te.mCZoaLDmcby8GYw1jlIpVoLZykM4kq");
+        user.setRole(role);
+        return user;
+    }
+}
@@ -0,0 +1,70 @@
+package com.krypt.backend.benchmark;
+
+import com.krypt.backend.dto.NoteDTO.TagDTO;
+import com.krypt.backend.service.TagMatcher;
+import com.krypt.backend.service.TagSuggestionService;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Scoring one note against the dev tag catalog (tag names of the reference data migration with tags/synonyms.txt).
+ * Run with: mvn -Pbenchmark test-compile exec:exec -Djmh.include=TagSuggestion
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 1)
+@Fork(1)
+public class TagSuggestionBenchmark {
+    private static final Pattern TAG_ROW = Pattern.compile("^\\('(.+)'\\)[,;]?$");
+
+    @Param({"1024", "8192", "65536"})
+    public int noteSize;
+
+    private TagMatcher matcher;
+    private String title;
+    private String content;
+
+    @Setup
+    public void setUp() throws IOException {
+        matcher = new TagMatcher(devTags(), TagSuggestionService.loadSynonyms());
+        content = NoteCorpus.markdownNote(noteSize, noteSize);
+        title = "Réunion projet " + noteSize;
+    }
+
+    @Benchmark
+    public List<TagMatcher.TagSuggestion> suggest() {
+        return matcher.suggest(title, content, 20, 1.5);
+    }
+
+    private static List<TagDTO> devTags() throws IOException {
+        List<TagDTO> tags = new ArrayList<>();
+        try (InputStream sql = TagSuggestionBenchmark.class.getResourceAsStream("/db/migration/V3__reference_data.sql")) {
+            boolean inTags = false;
+            for (String line : new String(sql.readAllBytes(), StandardCharsets.UTF_8).split("\n")) {
+                line = line.strip();
+                if (line.startsWith("INSERT INTO tag_table")) {
+                    inTags = true;
+                } else if (inTags) {
+                    Matcher row = TAG_ROW.matcher(line);
+                    if (row.matches()) {
+                        tags.add(new TagDTO((long) tags.size() + 1, row.group(1).replace("''", "'")));
+                    }
+                    if (line.endsWith(";")) {
+                        break;
+                    }
+                }
+            }
+        }
+        return tags;
+    }
+}
@@ -0,0 +1,88 @@
+package com.krypt.backend.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class BoundedPasswordEncoderTest {
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private BoundedPasswordEncoder encoder;
+
+    @AfterEach
+    void tearDown() {
+        encoder.close();
+    }
+
+    @Test
+    void shouldMatchLegacyHashesAndAskToUpgradeWeakerOnes() {
+        encoder = new BoundedPasswordEncoder(delegating(5), 1, 4, meterRegistry);
+        String legacy = new BCryptPasswordEncoder(4).encode("secret");
+
+        assertThat(encoder.matches("secret", legacy)).isTrue();
+        assertThat(encoder.upgradeEncoding(legacy)).isTrue();
+
+        String current = encoder.encode("secret");
+        assertThat(current).startsWith("{bcrypt}$2a$05$");
+        assertThat(encoder.matches("secret", current)).isTrue();
+        assertThat(encoder.matches("wrong", current)).isFalse();
+        assertThat(encoder.upgradeEncoding(current)).isFalse();
+        assertThat(meterRegistry.get("krypt.password.hash").tag("operation", "matches").timer().count()).isEqualTo(3);
+    }
+
+    @Test
+    void shouldRejectWhenQueueIsFull() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        PasswordEncoder slow = new PasswordEncoder() {
+            @Override
+            public String encode(CharSequence rawPassword) {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return rawPassword.toString();
+            }
+
+            @Override
+            public boolean matches(CharSequence rawPassword, String encodedPassword) {
+                return rawPassword.toString().equals(encodedPassword);
+            }
+        };
+        encoder = new BoundedPasswordEncoder(slow, 1, 1, meterRegistry);
+
+        CompletableFuture<String> running = CompletableFuture.supplyAsync(() -> encoder.encode("a"));
+        started.await();
+        CompletableFuture<Boolean> queued = CompletableFuture.supplyAsync(() -> encoder.matches("b", "b"));
+        while (meterRegistry.get("krypt.password.hash.queue").gauge().value() == 0) {
+            Thread.onSpinWait();
+        }
+
+        assertThatThrownBy(() -> encoder.matches("c", "c"))
+                .isInstanceOf(ResponseStatusException.class)
+                .hasMessageContaining("503");
+        release.countDown();
+        assertThat(running.get()).isEqualTo("a");
+        assertThat(queued.get()).isTrue();
+        assertThat(meterRegistry.counter("krypt.password.hash.rejected").count()).isEqualTo(1);
+    }
+
+    private static DelegatingPasswordEncoder delegating(int strength) {
+        BCryptPasswordEncoder bcrypt = new BCryptPasswordEncoder(strength);
+        DelegatingPasswordEncoder delegating = new DelegatingPasswordEncoder("bcrypt", Map.of("bcrypt", bcrypt));
+        delegating.setDefaultPasswordEncoderForMatches(bcrypt);
+        return delegating;
+    }
+}
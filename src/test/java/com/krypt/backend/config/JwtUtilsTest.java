@@ -0,0 +1,102 @@
+package com.krypt.backend.config;
+
+import io.jsonwebtoken.JwtException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class JwtUtilsTest {
+    private static final String SECRET = "0123456789abcdef0123456789abcdef";
+
+    private JwtUtils jwtUtils;
+
+    @BeforeEach
+    void setUp() {
+        jwtUtils = new JwtUtils(SECRET, 100);
+    }
+
+    @Test
+    void verifyShouldReturnSubjectScopesAndExpiration() {
+        String token = jwtUtils.generateToken("test@example.com", "notes:read", "notes:write");
+
+        JwtClaims claims = jwtUtils.verify(token);
+
+        assertThat(claims.subject()).isEqualTo("test@example.com");
+        assertThat(claims.scopes()).containsExactly("notes:read", "notes:write");
+        assertThat(claims.isExpired()).isFalse();
+    }
+
+    @Test
+    void generateTokenShouldGiveEveryTokenItsOwnId() {
+        JwtClaims first = jwtUtils.verify(jwtUtils.generateToken("test@example.com"));
+        JwtClaims second = jwtUtils.verify(jwtUtils.generateToken("test@example.com"));
+
+        assertThat(first.id()).isNotBlank().isNotEqualTo(second.id());
+        assertThat(first.issuedAt()).isNotNull();
+    }
+
+    @Test
+    void verifyShouldKeepTheIssueTimeToTheMillisecond() {
+        long before = System.currentTimeMillis();
+        JwtClaims claims = jwtUtils.verify(jwtUtils.generateToken("test@example.com"));
+
+        assertThat(claims.issuedAt().getTime()).isBetween(before, System.currentTimeMillis());
+    }
+
+    @Test
+    void verifyShouldReturnUserIdAndRoleForPrincipal() {
+        String token = jwtUtils.generateToken(42L, "test@example.com", "STUDENT", "notes:read");
+
+        AuthenticatedUser principal = AuthenticatedUser.from(jwtUtils.verify(token));
+
+        assertThat(principal.id()).isEqualTo(42L);
+        assertThat(principal.getName()).isEqualTo("test@example.com");
+        assertThat(principal.role()).isEqualTo("STUDENT");
+        assertThat(principal.authorities()).extracting(Object::toString)
+                .containsExactly("ROLE_STUDENT", "SCOPE_notes:read");
+    }
+
+    @Test
+    void verifyShouldServeRepeatedTokensFromCache() {
+        String token = jwtUtils.generateToken("test@example.com", "notes:read");
+
+        JwtClaims first = jwtUtils.verify(token);
+        JwtClaims second = jwtUtils.verify(token);
+
+        assertThat(second).isSameAs(first);
+    }
+
+    @Test
+    void verifyShouldRejectTamperedToken() {
+        String token = jwtUtils.generateToken("test@example.com", "notes:read");
+        jwtUtils.verify(token);
+
+        String tampered = token.substring(0, token.length() - 2) + (token.endsWith("A") ? "BB" : "AA");
+
+        assertThatThrownBy(() -> jwtUtils.verify(tampered)).isInstanceOf(JwtException.class);
+    }
+
+    @Test
+    void verifyShouldRejectTokenSignedWithAnotherKey() {
+        String token = new JwtUtils("fedcba9876543210fedcba9876543210", 100).generateToken("test@example.com");
+
+        assertThatThrownBy(() -> jwtUtils.verify(token)).isInstanceOf(JwtException.class);
+    }
+
+    @Test
+    void validateTokenShouldCompareSubject() {
+        String token = jwtUtils.generateToken("test@example.com");
+
+        assertThat(jwtUtils.validateToken(token, "test@example.com")).isTrue();
+        assertThat(jwtUtils.validateToken(token, "other@example.com")).isFalse();
+    }
+
+    @Test
+    void constructorShouldRejectShortSecret() {
+        assertThatThrownBy(() -> new JwtUtils("too-short", 100))
+                .isInstanceOf(RuntimeException.class)
+                .hasMessageContaining("at least 32 characters");
+    }
+}
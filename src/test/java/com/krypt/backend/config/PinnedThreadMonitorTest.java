@@ -0,0 +1,45 @@
+package com.krypt.backend.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PinnedThreadMonitorTest {
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private PinnedThreadMonitor monitor;
+
+    @AfterEach
+    void tearDown() {
+        if (monitor != null) {
+            monitor.close();
+        }
+    }
+
+    @Test
+    void sleepingInsideSynchronizedOnAVirtualThreadShouldBeReported() throws InterruptedException {
+        monitor = new PinnedThreadMonitor(meterRegistry, Duration.ofMillis(10));
+        Object lock = new Object();
+
+        Thread.ofVirtual().start(() -> {
+            synchronized (lock) {
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }).join();
+
+        // JFR hands events to the stream about once a second
+        for (int i = 0; i < 100 && meterRegistry.get("krypt.threads.pinned").timer().count() == 0; i++) {
+            Thread.sleep(50);
+        }
+        assertThat(meterRegistry.get("krypt.threads.pinned").timer().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("krypt.threads.pinned").timer().totalTime(TimeUnit.MILLISECONDS)).isGreaterThanOrEqualTo(40);
+    }
+}
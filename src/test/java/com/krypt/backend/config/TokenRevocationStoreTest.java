@@ -0,0 +1,129 @@
+package com.krypt.backend.config;
+
+import com.krypt.backend.model.RevokedToken;
+import com.krypt.backend.repository.RevokedTokenRepository;
+import com.krypt.backend.repository.UserRepository;
+import com.krypt.backend.repository.UserTokenWatermark;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Date;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class TokenRevocationStoreTest {
+    private static final String SECRET = "0123456789abcdef0123456789abcdef";
+
+    @Mock
+    private RevokedTokenRepository revokedTokenRepository;
+    @Mock
+    private UserRepository userRepository;
+
+    private final JwtUtils jwtUtils = new JwtUtils(SECRET, 100);
+
+    @Test
+    void revokeShouldOnlyRevokeThatToken() {
+        TokenRevocationStore store = store(100);
+        JwtClaims loggedOut = claims("a", 1L, Instant.now());
+        JwtClaims otherDevice = claims("b", 1L, Instant.now());
+
+        store.revoke(loggedOut);
+
+        assertThat(store.isRevoked(loggedOut)).isTrue();
+        assertThat(store.isRevoked(otherDevice)).isFalse();
+        verify(revokedTokenRepository).save(any(RevokedToken.class));
+    }
+
+    @Test
+    void revokeIssuedBeforeShouldRevokeOlderTokensOfThatUserOnly() {
+        TokenRevocationStore store = store(100);
+        Instant now = Instant.now();
+
+        store.revokeIssuedBefore(1L, now);
+
+        assertThat(store.isRevoked(claims("a", 1L, now.minusSeconds(60)))).isTrue();
+        assertThat(store.isRevoked(claims("b", 1L, now.plusSeconds(2)))).isFalse();
+        assertThat(store.isRevoked(claims("c", 2L, now.minusSeconds(60)))).isFalse();
+        verify(userRepository).updateTokensNotBefore(1L, now.truncatedTo(ChronoUnit.MILLIS));
+    }
+
+    @Test
+    void revokeIssuedBeforeShouldRevokeTokensIssuedEarlierInTheSameSecond() {
+        TokenRevocationStore store = store(100);
+        Instant second = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+
+        store.revokeIssuedBefore(1L, second.plusMillis(500));
+
+        assertThat(store.isRevoked(claims("a", 1L, second.plusMillis(100)))).isTrue();
+        assertThat(store.isRevoked(claims("b", 1L, second.plusMillis(500)))).isTrue();
+        assertThat(store.isRevoked(legacyClaims("c", 1L, second.plusMillis(800)))).isTrue();
+        assertThat(store.isRevoked(claims("d", 1L, second.plusMillis(800)))).isFalse();
+    }
+
+    @Test
+    void revokeWithoutJtiShouldRevokeThatTokenThroughWatermark() {
+        TokenRevocationStore store = store(100);
+        Instant issuedAt = Instant.now().minusSeconds(30);
+        JwtClaims legacy = legacyClaims(null, 1L, issuedAt);
+
+        store.revoke(legacy);
+
+        assertThat(store.isRevoked(legacy)).isTrue();
+        assertThat(store.isRevoked(claims("a", 1L, Instant.now()))).isFalse();
+        verify(userRepository).updateTokensNotBefore(1L, issuedAt.truncatedTo(ChronoUnit.SECONDS));
+    }
+
+    @Test
+    void evictedTokenShouldStayRevokedThroughWatermark() {
+        TokenRevocationStore store = store(1);
+        Instant issuedAt = Instant.now().minusSeconds(30);
+        JwtClaims first = claims("a", 1L, issuedAt);
+
+        store.revoke(first);
+        store.revoke(claims("b", 2L, Instant.now()));
+
+        assertThat(store.isRevoked(first)).isTrue();
+        assertThat(store.isRevoked(claims("c", 1L, Instant.now()))).isFalse();
+    }
+
+    @Test
+    void refreshShouldLoadRevocationsMadeElsewhere() {
+        TokenRevocationStore store = store(100);
+        Instant now = Instant.now();
+        when(revokedTokenRepository.findByRevokedAtGreaterThanEqualAndExpiresAtAfter(any(), any()))
+                .thenReturn(List.of(new RevokedToken("a", 1L, now, now.plus(Duration.ofHours(1)))));
+        UserTokenWatermark watermark = mock(UserTokenWatermark.class);
+        when(watermark.getId()).thenReturn(2L);
+        when(watermark.getTokensNotBefore()).thenReturn(now);
+        when(userRepository.findTokenWatermarks(any())).thenReturn(List.of(watermark));
+
+        store.refresh();
+
+        assertThat(store.isRevoked(claims("a", 1L, now))).isTrue();
+        assertThat(store.isRevoked(claims("b", 2L, now.minusSeconds(5)))).isTrue();
+    }
+
+    private TokenRevocationStore store(long maxSize) {
+        return new TokenRevocationStore(revokedTokenRepository, userRepository, jwtUtils, maxSize);
+    }
+
+    private static JwtClaims claims(String id, Long userId, Instant issuedAt) {
+        return new JwtClaims(id, "test@example.com", userId, "STUDENT", List.of(),
+                Date.from(issuedAt.truncatedTo(ChronoUnit.MILLIS)), Date.from(issuedAt.plus(Duration.ofDays(1))));
+    }
+
+    // Issued before tokens carried iat_ms, only known to the second
+    private static JwtClaims legacyClaims(String id, Long userId, Instant issuedAt) {
+        return new JwtClaims(id, "test@example.com", userId, "STUDENT", List.of(),
+                Date.from(issuedAt.truncatedTo(ChronoUnit.SECONDS)), Date.from(issuedAt.plus(Duration.ofDays(1))));
+    }
+}
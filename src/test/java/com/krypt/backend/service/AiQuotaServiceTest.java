@@ -0,0 +1,197 @@
+package com.krypt.backend.service;
+
+import com.krypt.backend.model.Role;
+import com.krypt.backend.model.enums.RoleType;
+import com.krypt.backend.repository.UserPlanRepository;
+import com.krypt.backend.repository.UserPlanUsage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class AiQuotaServiceTest {
+    @Mock
+    private UserPlanRepository userPlanRepository;
+    @Mock
+    private RoleService roleService;
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+    @Captor
+    private ArgumentCaptor<List<Object[]>> batch;
+
+    private SimpleMeterRegistry meterRegistry;
+    private AiQuotaService aiQuotaService;
+    private String period;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        aiQuotaService = new AiQuotaService(userPlanRepository, roleService, jdbcTemplate, meterRegistry, Duration.ofMinutes(30));
+        period = YearMonth.now(ZoneOffset.UTC).toString();
+    }
+
+    @Test
+    void tryConsumeShouldAnswerFromMemoryUntilQuotaIsUsed() {
+        when(userPlanRepository.findUsage(1L)).thenReturn(Optional.of(usage(1L, 10, 8L, period)));
+
+        assertThat(aiQuotaService.tryConsume(1L, RoleType.STUDENT, "summary")).isTrue();
+        assertThat(aiQuotaService.tryConsume(1L, RoleType.STUDENT, "summary")).isTrue();
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+                () -> aiQuotaService.consume(1L, RoleType.STUDENT, "chat"));
+
+        assertThat(exception.getStatusCode().value()).isEqualTo(429);
+        assertThat(aiQuotaService.getUsage(1L, RoleType.STUDENT).used()).isEqualTo(10);
+        verify(userPlanRepository, times(1)).findUsage(1L);
+        assertThat(meterRegistry.get("krypt.quota.ai.consumed").tag("feature", "summary").counter().count()).isEqualTo(2);
+        assertThat(meterRegistry.get("krypt.quota.ai.rejected").tag("feature", "chat").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void requireAvailableShouldNotCountACall() {
+        when(userPlanRepository.findUsage(1L)).thenReturn(Optional.of(usage(1L, 10, 9L, period)));
+
+        aiQuotaService.requireAvailable(1L, RoleType.STUDENT, "summary");
+        aiQuotaService.consume(1L, RoleType.STUDENT, "summary");
+
+        assertThat(assertThrows(ResponseStatusException.class, () -> aiQuotaService.requireAvailable(1L, RoleType.STUDENT, "summary"))
+                .getStatusCode().value()).isEqualTo(429);
+        assertThat(aiQuotaService.getUsage(1L, RoleType.STUDENT).used()).isEqualTo(10);
+    }
+
+    @Test
+    void usageOfPreviousMonthShouldNotCount() {
+        when(userPlanRepository.findUsage(1L)).thenReturn(Optional.of(usage(1L, 10, 10L, "2000-01")));
+
+        assertThat(aiQuotaService.tryConsume(1L, RoleType.STUDENT, "summary")).isTrue();
+        assertThat(aiQuotaService.getUsage(1L, RoleType.STUDENT).used()).isEqualTo(1);
+    }
+
+    @Test
+    void firstUseShouldCreatePlanFromRole() {
+        Role role = new Role(RoleType.STUDENT, 5, 3, null, null, List.of());
+        role.setId(4L);
+        when(roleService.getRole(RoleType.STUDENT)).thenReturn(role);
+        when(userPlanRepository.findUsage(1L)).thenReturn(Optional.empty()).thenReturn(Optional.of(usage(1L, 3, 0L, null)));
+
+        assertThat(aiQuotaService.getUsage(1L, RoleType.STUDENT).limit()).isEqualTo(3);
+
+        verify(jdbcTemplate).update(AiQuotaService.CREATE_PLAN_SQL, 1L, 4L, 5, 3, null);
+        verify(userPlanRepository, never()).save(any());
+    }
+
+    @Test
+    void flushShouldWritePendingDeltasInOneBatchAndOnlyOnce() {
+        when(userPlanRepository.findUsage(1L)).thenReturn(Optional.of(usage(1L, 100, 5L, period)));
+        when(userPlanRepository.findUsage(2L)).thenReturn(Optional.of(usage(2L, 100, 0L, period)));
+        aiQuotaService.tryConsume(1L, RoleType.STUDENT, "summary");
+        aiQuotaService.tryConsume(1L, RoleType.STUDENT, "summary");
+        aiQuotaService.tryConsume(2L, RoleType.STUDENT, "chat");
+        when(userPlanRepository.findUsages(anyList())).thenReturn(List.of(usage(1L, 100, 7L, period), usage(2L, 100, 1L, period)));
+
+        aiQuotaService.flush();
+
+        verify(jdbcTemplate).batchUpdate(eq(AiQuotaService.FLUSH_SQL), batch.capture());
+        assertThat(batch.getValue()).hasSize(2)
+                .anySatisfy(args -> assertThat(args).containsExactly(period, 2L, 2L, period, 1L, period))
+                .anySatisfy(args -> assertThat(args).containsExactly(period, 1L, 1L, period, 2L, period));
+        assertThat(aiQuotaService.getUsage(1L, RoleType.STUDENT).used()).isEqualTo(7);
+
+        aiQuotaService.flush();
+        verify(jdbcTemplate, times(1)).batchUpdate(any(String.class), anyList());
+    }
+
+    @Test
+    void callsRacingTheEvictionOfTheirMeterShouldAllBeFlushed() throws Exception {
+        // Every meter is idle at once, so each flush evicts the meter the callers are counting on
+        AiQuotaService evicting = new AiQuotaService(userPlanRepository, roleService, jdbcTemplate, meterRegistry, Duration.ZERO);
+        when(userPlanRepository.findUsage(1L)).thenReturn(Optional.of(usage(1L, Integer.MAX_VALUE, 0L, period)));
+        AtomicLong written = new AtomicLong();
+        doAnswer(invocation -> {
+            List<Object[]> rows = invocation.getArgument(1);
+            rows.forEach(row -> written.addAndGet((Long) row[1]));
+            return null;
+        }).when(jdbcTemplate).batchUpdate(eq(AiQuotaService.FLUSH_SQL), anyList());
+        int threads = 4;
+        int callsPerThread = 20_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> callers = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                callers.add(executor.submit(() -> {
+                    for (int call = 0; call < callsPerThread; call++) {
+                        evicting.tryConsume(1L, RoleType.STUDENT, "chat");
+                    }
+                }));
+            }
+            while (!callers.stream().allMatch(Future::isDone)) {
+                evicting.flush();
+            }
+            for (Future<?> caller : callers) {
+                caller.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        evicting.flush();
+
+        assertThat(written.get()).isEqualTo((long) threads * callsPerThread);
+    }
+
+    @Test
+    void flushAfterMonthChangeShouldWriteLeftoverToItsOwnMonth() {
+        AtomicReference<String> month = new AtomicReference<>("2026-09");
+        AiQuotaService monthly = new AiQuotaService(userPlanRepository, roleService, jdbcTemplate, meterRegistry, Duration.ofMinutes(30)) {
+            @Override
+            String currentPeriod() {
+                return month.get();
+            }
+        };
+        when(userPlanRepository.findUsage(1L))
+                .thenReturn(Optional.of(usage(1L, 10, 9L, "2026-09")))
+                .thenReturn(Optional.of(usage(1L, 10, 10L, "2026-09")));
+        monthly.tryConsume(1L, RoleType.STUDENT, "chat");
+
+        month.set("2026-10");
+        monthly.flush();
+
+        verify(jdbcTemplate).batchUpdate(eq(AiQuotaService.FLUSH_SQL), batch.capture());
+        assertThat(batch.getValue()).singleElement()
+                .satisfies(args -> assertThat(args).containsExactly("2026-09", 1L, 1L, "2026-09", 1L, "2026-09"));
+        assertThat(monthly.getUsage(1L, RoleType.STUDENT).used()).isZero();
+    }
+
+    private static UserPlanUsage usage(Long userId, Integer aiQuota, Long aiUsed, String aiPeriod) {
+        return new UserPlanUsage() {
+            public Long getUserId() { return userId; }
+            public Integer getAiQuota() { return aiQuota; }
+            public Long getAiUsed() { return aiUsed; }
+            public String getAiPeriod() { return aiPeriod; }
+        };
+    }
+}
@@ -0,0 +1,259 @@
+package com.krypt.backend.service;
+
+import com.krypt.backend.dto.ChatDTO.ChatMessageDTO;
+import com.krypt.backend.dto.ChatDTO.ChatRequestDTO;
+import com.krypt.backend.dto.NoteDTO.PassageDTO;
+import com.krypt.backend.model.enums.RoleType;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class ChatServiceTest {
+    private static final List<ChatMessageDTO> MESSAGES = List.of(new ChatMessageDTO("user", "Bonjour"));
+
+    @Mock
+    private AiQuotaService aiQuotaService;
+    @Mock
+    private RetrievalService retrievalService;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private ChatService chatService;
+    private int contextPassages;
+
+    @AfterEach
+    void tearDown() {
+        if (chatService != null) {
+            chatService.shutdown();
+        }
+    }
+
+    @Test
+    void tokensShouldBeStreamedInOrderAndTheUserReleased() throws InterruptedException {
+        chatService = service((messages, onToken) -> List.of("Bon", "jour", " !").forEach(onToken), 4, 1, 1, Duration.ofSeconds(5));
+        RecordingSink sink = new RecordingSink();
+
+        chatService.start(1L, RoleType.STUDENT, MESSAGES, sink);
+
+        assertThat(sink.completed.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(sink.events).containsExactly(
+                "queued", "token:{text=Bon}", "token:{text=jour}", "token:{text= !}", "done:{tokens=3}");
+        verify(aiQuotaService).consume(1L, RoleType.STUDENT, ChatService.FEATURE);
+        // Slots are released right after the stream completes
+        for (int i = 0; i < 100 && chatService.activeUsers() > 0; i++) {
+            Thread.sleep(10);
+        }
+        assertThat(chatService.activeUsers()).isZero();
+        assertThat(meterRegistry.get("krypt.chat.first-token").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void requestsBeyondTheUsersQueueShouldBeRefused() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        chatService = service((messages, onToken) -> await(release), 4, 1, 1, Duration.ofSeconds(5));
+        RecordingSink first = new RecordingSink();
+        RecordingSink second = new RecordingSink();
+
+        chatService.start(1L, RoleType.STUDENT, MESSAGES, first);
+        chatService.start(1L, RoleType.STUDENT, MESSAGES, second);
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+                () -> chatService.start(1L, RoleType.STUDENT, MESSAGES, new RecordingSink()));
+        // Other users are not affected
+        chatService.start(2L, RoleType.STUDENT, MESSAGES, new RecordingSink());
+
+        assertThat(exception.getStatusCode().value()).isEqualTo(429);
+        verify(aiQuotaService, times(2)).requireAvailable(1L, RoleType.STUDENT, ChatService.FEATURE);
+        release.countDown();
+        assertThat(first.completed.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(second.completed.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    void exhaustedQuotaShouldRefuseBeforeStreaming() {
+        chatService = service((messages, onToken) -> onToken.accept("x"), 4, 1, 1, Duration.ofSeconds(5));
+        doThrow(new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS, "AI quota exceeded"))
+                .when(aiQuotaService).requireAvailable(1L, RoleType.STUDENT, ChatService.FEATURE);
+        RecordingSink sink = new RecordingSink();
+
+        assertThrows(ResponseStatusException.class, () -> chatService.start(1L, RoleType.STUDENT, MESSAGES, sink));
+
+        assertThat(sink.events).isEmpty();
+        assertThat(chatService.activeUsers()).isZero();
+        verify(aiQuotaService, never()).consume(any(), any(), any());
+    }
+
+    @Test
+    void quotaUsedUpWhileWaitingShouldEndWithAnErrorBeforeAnyToken() throws InterruptedException {
+        chatService = service((messages, onToken) -> onToken.accept("x"), 4, 1, 1, Duration.ofSeconds(5));
+        doThrow(new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS, "AI quota exceeded"))
+                .when(aiQuotaService).consume(1L, RoleType.STUDENT, ChatService.FEATURE);
+        RecordingSink sink = new RecordingSink();
+
+        chatService.start(1L, RoleType.STUDENT, MESSAGES, sink);
+
+        assertThat(sink.completed.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(sink.events).containsExactly("queued", "error:{error=AI quota exceeded}");
+    }
+
+    @Test
+    void aUsersRequestsShouldRunOneAtATimeWhileOthersProceed() throws InterruptedException {
+        Map<String, AtomicInteger> running = new ConcurrentHashMap<>();
+        Map<String, Integer> peak = new ConcurrentHashMap<>();
+        chatService = service((messages, onToken) -> {
+            String user = messages.get(0).content();
+            int now = running.computeIfAbsent(user, u -> new AtomicInteger()).incrementAndGet();
+            peak.merge(user, now, Math::max);
+            sleep(50);
+            running.get(user).decrementAndGet();
+            onToken.accept(user);
+        }, 4, 1, 2, Duration.ofSeconds(5));
+        List<RecordingSink> sinks = new CopyOnWriteArrayList<>();
+
+        for (int i = 0; i < 3; i++) {
+            for (long user = 1; user <= 2; user++) {
+                RecordingSink sink = new RecordingSink();
+                sinks.add(sink);
+                chatService.start(user, RoleType.STUDENT, List.of(new ChatMessageDTO("user", "u" + user)), sink);
+            }
+        }
+        for (RecordingSink sink : sinks) {
+            assertThat(sink.completed.await(5, TimeUnit.SECONDS)).isTrue();
+        }
+
+        assertThat(peak).containsEntry("u1", 1).containsEntry("u2", 1);
+        assertThat(sinks).allSatisfy(sink -> assertThat(sink.events).last().asString().startsWith("done"));
+    }
+
+    @Test
+    void requestWaitingTooLongShouldGetAnErrorEvent() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        chatService = service((messages, onToken) -> await(release), 4, 1, 1, Duration.ofMillis(100));
+        RecordingSink first = new RecordingSink();
+        RecordingSink second = new RecordingSink();
+        chatService.start(1L, RoleType.STUDENT, MESSAGES, first);
+        chatService.start(1L, RoleType.STUDENT, MESSAGES, second);
+
+        assertThat(second.completed.await(5, TimeUnit.SECONDS)).isTrue();
+        release.countDown();
+
+        assertThat(second.events).containsExactly("queued", "error:{error=The chatbot is busy, please retry}");
+        assertThat(first.completed.await(5, TimeUnit.SECONDS)).isTrue();
+        // Neither answered a single token, neither is charged
+        verify(aiQuotaService, times(2)).requireAvailable(1L, RoleType.STUDENT, ChatService.FEATURE);
+        verify(aiQuotaService, never()).consume(any(), any(), any());
+    }
+
+    @Test
+    void passagesOfTheUsersNotesShouldComeFirst() throws InterruptedException {
+        contextPassages = 2;
+        List<List<ChatMessageDTO>> prompts = new CopyOnWriteArrayList<>();
+        chatService = service((messages, onToken) -> prompts.add(messages), 4, 1, 1, Duration.ofSeconds(5));
+        when(retrievalService.search(1L, "Bonjour", 2)).thenReturn(List.of(new PassageDTO(7L, "Cours", "Le cours commence à 8h.", 0.03)));
+        RecordingSink sink = new RecordingSink();
+
+        chatService.start(1L, RoleType.STUDENT, MESSAGES, sink);
+
+        assertThat(sink.completed.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(prompts).hasSize(1);
+        assertThat(prompts.get(0)).hasSize(2);
+        assertThat(prompts.get(0).get(0).role()).isEqualTo("system");
+        assertThat(prompts.get(0).get(0).content()).contains("[Cours]\nLe cours commence à 8h.");
+        assertThat(prompts.get(0).get(1)).isEqualTo(MESSAGES.get(0));
+    }
+
+    @Test
+    void chatShouldGoOnWithoutPassagesWhenTheyCannotBeFound() throws InterruptedException {
+        contextPassages = 2;
+        chatService = service((messages, onToken) -> onToken.accept(messages.get(0).role()), 4, 1, 1, Duration.ofSeconds(5));
+        when(retrievalService.search(1L, "Bonjour", 2)).thenThrow(new IllegalStateException("database down"));
+        RecordingSink sink = new RecordingSink();
+
+        chatService.start(1L, RoleType.STUDENT, MESSAGES, sink);
+
+        assertThat(sink.completed.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(sink.events).containsExactly("queued", "token:{text=user}", "done:{tokens=1}");
+    }
+
+    @Test
+    void toMessagesShouldValidateAndKeepTheRecentHistory() {
+        assertThrows(ResponseStatusException.class, () -> ChatService.toMessages(new ChatRequestDTO(" ", null)));
+        List<ChatMessageDTO> history = IntStream.range(0, 30)
+                .mapToObj(i -> new ChatMessageDTO(i % 2 == 0 ? "user" : "assistant", "m" + i))
+                .toList();
+
+        List<ChatMessageDTO> messages = ChatService.toMessages(new ChatRequestDTO("Question", history));
+
+        assertThat(messages).hasSize(ChatService.MAX_HISTORY + 1);
+        assertThat(messages.get(0).content()).isEqualTo("m10");
+        assertThat(messages.get(messages.size() - 1)).isEqualTo(new ChatMessageDTO("user", "Question"));
+    }
+
+    @Test
+    void localGeneratorShouldStreamAReplyThatConcatenates() {
+        StringBuilder reply = new StringBuilder();
+
+        new LocalChatGenerator(Duration.ZERO).generate(MESSAGES, reply::append);
+
+        assertThat(reply.toString()).isEqualTo(String.join("", LocalChatGenerator.reply("Bonjour", 1))).contains("« Bonjour »");
+    }
+
+    private ChatService service(ChatGenerator generator, int maxActive, int maxActivePerUser, int maxQueuedPerUser, Duration queueTimeout) {
+        return new ChatService(generator, aiQuotaService, retrievalService, meterRegistry, contextPassages, maxActive, maxActivePerUser, maxQueuedPerUser,
+                queueTimeout, Duration.ofMinutes(1));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static final class RecordingSink implements ChatService.ChatSink {
+        private final List<String> events = new CopyOnWriteArrayList<>();
+        private final CountDownLatch completed = new CountDownLatch(1);
+
+        @Override
+        public void send(String event, Object data) {
+            events.add(event.equals("queued") ? event : event + ":" + data);
+        }
+
+        @Override
+        public void complete() {
+            completed.countDown();
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.krypt.backend.service;
+
+import com.icegreen.greenmail.junit5.GreenMailExtension;
+import com.icegreen.greenmail.util.ServerSetupTest;
+import com.krypt.backend.model.OutboundEmail;
+import com.krypt.backend.model.enums.EmailStatus;
+import com.krypt.backend.repository.OutboundEmailRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class EmailDispatcherTest {
+    @RegisterExtension
+    static final GreenMailExtension greenMail = new GreenMailExtension(ServerSetupTest.SMTP);
+
+    @Mock
+    private OutboundEmailRepository outboundEmailRepository;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private SimpleMeterRegistry meterRegistry;
+    private JavaMailSenderImpl mailSender;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        mailSender = new JavaMailSenderImpl();
+        mailSender.setHost("localhost");
+        mailSender.setPort(ServerSetupTest.SMTP.getPort());
+        mailSender.getJavaMailProperties().put("mail.smtp.timeout", "5000");
+    }
+
+    @Test
+    void dispatchShouldSendDueEmailsAndMarkThemSent() throws Exception {
+        List<OutboundEmail> batch = List.of(email(1L, "a@example.com"), email(2L, "b@example.com"));
+        when(outboundEmailRepository.findDue(eq(EmailStatus.PENDING), any(), any())).thenReturn(batch).thenReturn(List.of());
+
+        dispatcher(2).dispatch();
+
+        MimeMessage[] received = greenMail.getReceivedMessages();
+        assertThat(received).hasSize(2);
+        assertThat(received[0].getSubject()).isEqualTo("Subject 1");
+        assertThat(batch).extracting(OutboundEmail::getStatus).containsOnly(EmailStatus.SENT);
+        assertThat(batch).extracting(OutboundEmail::getAttempts).containsOnly(1);
+        verify(outboundEmailRepository).saveAll(batch);
+        // The second, full batch came back with nothing left to send
+        verify(outboundEmailRepository, times(2)).findDue(eq(EmailStatus.PENDING), any(), any());
+        assertThat(meterRegistry.counter("krypt.mail.sent").count()).isEqualTo(2);
+    }
+
+    @Test
+    void dispatchShouldBackOffWhenServerIsDownThenGiveUp() {
+        mailSender.setPort(ServerSetupTest.SMTP.getPort() + 7);
+        OutboundEmail email = email(1L, "a@example.com");
+        when(outboundEmailRepository.findDue(eq(EmailStatus.PENDING), any(), any())).thenReturn(List.of(email));
+        EmailDispatcher dispatcher = dispatcher(1);
+
+        Instant before = Instant.now();
+        dispatcher.dispatch();
+
+        assertThat(email.getStatus()).isEqualTo(EmailStatus.PENDING);
+        assertThat(email.getNextAttemptAt()).isAfterOrEqualTo(before.plus(Duration.ofSeconds(30)));
+        assertThat(email.getLastError()).isNotBlank();
+        // Nothing was delivered, the loop stops instead of claiming more rows
+        verify(outboundEmailRepository, times(1)).findDue(eq(EmailStatus.PENDING), any(), any());
+
+        dispatcher.dispatch();
+        dispatcher.dispatch();
+
+        assertThat(email.getStatus()).isEqualTo(EmailStatus.FAILED);
+        assertThat(meterRegistry.counter("krypt.mail.failed").count()).isEqualTo(1);
+    }
+
+    @Test
+    void backoffShouldDoubleUpToTheCap() {
+        EmailDispatcher dispatcher = dispatcher(1);
+
+        assertThat(dispatcher.backoffFor(1)).isEqualTo(Duration.ofSeconds(30));
+        assertThat(dispatcher.backoffFor(3)).isEqualTo(Duration.ofMinutes(2));
+        assertThat(dispatcher.backoffFor(40)).isEqualTo(Duration.ofHours(1));
+    }
+
+    private EmailDispatcher dispatcher(int batchSize) {
+        return new EmailDispatcher(outboundEmailRepository, mailSender, transactionManager, meterRegistry, "contact@krypt.dev",
+                batchSize, 3, Duration.ofSeconds(30), Duration.ofHours(1), Duration.ofMinutes(5), Duration.ofDays(7));
+    }
+
+    private static OutboundEmail email(Long id, String recipient) {
+        OutboundEmail email = new OutboundEmail(recipient, "Subject " + id, "<p>Body</p>");
+        email.setId(id);
+        return email;
+    }
+}
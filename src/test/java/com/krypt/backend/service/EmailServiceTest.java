@@ -1,40 +1,34 @@
 package com.krypt.backend.service;
 
-import jakarta.mail.internet.MimeMessage;
-import org.junit.jupiter.api.BeforeEach;
+import com.krypt.backend.model.OutboundEmail;
+import com.krypt.backend.model.enums.EmailStatus;
+import com.krypt.backend.repository.OutboundEmailRepository;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.mail.javamail.JavaMailSender;
-import org.springframework.mail.javamail.MimeMessageHelper;
 
-import java.util.Optional;
-
-import static org.mockito.ArgumentMatchers.any;
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
 public class EmailServiceTest {
     @Mock
-    private JavaMailSender mailSender;
-    @Mock
-    private MimeMessage mimeMessage;
+    private OutboundEmailRepository outboundEmailRepository;
 
     @InjectMocks
     private EmailService emailService;
 
-    @BeforeEach
-    void setup() {
-        when(mailSender.createMimeMessage()).thenReturn(mimeMessage);
-    }
-
     @Test
-    public void sendEmailShouldSendEmail() {
-        emailService.sendEmail("test@example.com", "Subject", "Body");
-
-        verify(mailSender).createMimeMessage();
-        verify(mailSender).send(mimeMessage);
+    public void queueEmailShouldWritePendingOutboxRow() {
+        emailService.queueEmail("test@example.com", "Subject", "Body");
+
+        ArgumentCaptor<OutboundEmail> email = ArgumentCaptor.forClass(OutboundEmail.class);
+        verify(outboundEmailRepository).save(email.capture());
+        assertThat(email.getValue().getRecipient()).isEqualTo("test@example.com");
+        assertThat(email.getValue().getStatus()).isEqualTo(EmailStatus.PENDING);
+        assertThat(email.getValue().getNextAttemptAt()).isNotNull();
     }
 }
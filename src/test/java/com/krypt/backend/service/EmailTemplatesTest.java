@@ -0,0 +1,67 @@
+package com.krypt.backend.service;
+
+import com.krypt.backend.service.EmailTemplates.RenderedEmail;
+import org.junit.jupiter.api.Test;
+
+import java.util.Locale;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class EmailTemplatesTest {
+    private final EmailTemplates emailTemplates = new EmailTemplates("classpath*:templates/email/*.html");
+
+    @Test
+    void renderShouldEscapeVariables() {
+        RenderedEmail email = emailTemplates.render("verify-email", Locale.ENGLISH,
+                Map.of("firstName", "<script>alert('x')</script>", "verificationLink", "http://localhost/verify?a=1&b=2"));
+
+        assertThat(email.subject()).isEqualTo("Verify Your Krypt Account");
+        assertThat(email.html()).contains("Welcome &lt;script&gt;alert(&#39;x&#39;)&lt;/script&gt;!")
+                .contains("href='http://localhost/verify?a=1&amp;b=2'")
+                .doesNotContain("{{");
+    }
+
+    @Test
+    void subjectShouldBeRenderedAsPlainText() {
+        EmailTemplates.Template template = EmailTemplates.parse("test", "Subject: Welcome {{name}}\n<p>Hi {{name}}</p>");
+
+        RenderedEmail email = EmailTemplates.render(template, Map.of("name", "O'Brien & Sons"));
+
+        assertThat(email.subject()).isEqualTo("Welcome O'Brien & Sons");
+        assertThat(email.html()).isEqualTo("<p>Hi O&#39;Brien &amp; Sons</p>");
+    }
+
+    @Test
+    void renderShouldPickLocaleVariantAndFallBackToDefault() {
+        Map<String, String> values = Map.of("firstName", "Léa", "verificationLink", "http://localhost/verify");
+
+        assertThat(emailTemplates.render("verify-email", Locale.CANADA_FRENCH, values).html()).contains("Bienvenue Léa !");
+        assertThat(emailTemplates.render("verify-email", Locale.GERMAN, values).html()).contains("Welcome Léa!");
+    }
+
+    @Test
+    void supportedLocaleShouldNormaliseRequestLocales() {
+        assertThat(emailTemplates.supportedLocale(Locale.CANADA_FRENCH)).isEqualTo(Locale.FRENCH);
+        assertThat(emailTemplates.supportedLocale(Locale.forLanguageTag("fr-BE-x-private"))).isEqualTo(Locale.FRENCH);
+        assertThat(emailTemplates.supportedLocale(Locale.forLanguageTag("zz-ZZ"))).isEqualTo(Locale.ROOT);
+        assertThat(emailTemplates.supportedLocale(Locale.GERMAN)).isEqualTo(Locale.ROOT);
+    }
+
+    @Test
+    void compileShouldSplitLiteralsAndVariables() {
+        EmailTemplates.CompiledTemplate template = EmailTemplates.compile("test", "Hi {{ name }}, {{name}}.");
+        StringBuilder out = new StringBuilder();
+
+        template.renderTo(out, Map.of("name", "Bob"), true);
+
+        assertThat(out).hasToString("Hi Bob, Bob.");
+        assertThat(template.literalLength()).isEqualTo("Hi , .".length());
+        assertThatThrownBy(() -> template.render(Map.of(), true))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("name");
+        assertThatThrownBy(() -> EmailTemplates.compile("test", "Hi {{name"))
+                .isInstanceOf(IllegalStateException.class);
+    }
+}
@@ -0,0 +1,122 @@
+package com.krypt.backend.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.krypt.backend.dto.NoteDTO.NoteRevisionDTO;
+import com.krypt.backend.model.Note;
+import com.krypt.backend.model.NoteRevision;
+import com.krypt.backend.model.User;
+import com.krypt.backend.repository.NoteRevisionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class NoteRevisionServiceTest {
+    private static final int SNAPSHOT_INTERVAL = 4;
+
+    @Mock
+    private NoteRevisionRepository noteRevisionRepository;
+
+    private NoteRevisionService noteRevisionService;
+    private Note note;
+
+    @BeforeEach
+    void setUp() {
+        noteRevisionService = new NoteRevisionService(noteRevisionRepository, new ObjectMapper(), SNAPSHOT_INTERVAL, 10, Duration.ofDays(30));
+        User user = new User();
+        user.setId(1L);
+        note = new Note();
+        note.setId(7L);
+        note.setUser(user);
+        note.setTitle("Title");
+    }
+
+    // ------------------- RECORD -------------------
+    @Test
+    void createRevisionShouldStoreDeltaBetweenSnapshots() {
+        note.setVersion(5);
+        note.setContent("A long enough note body, with one edited word");
+
+        NoteRevision revision = noteRevisionService.createRevision(note, "A long enough note body, with one changed word", true);
+
+        assertThat(revision.isSnapshot()).isFalse();
+        assertThat(revision.getRevisionNumber()).isEqualTo(5);
+        assertThat(revision.getData()).isEqualTo("[{\"at\":34,\"delete\":5,\"insert\":\"edit\"}]");
+    }
+
+    @Test
+    void createRevisionShouldSnapshotOnIntervalMissingPredecessorOrLargeDelta() {
+        note.setContent("A long enough note body, with one edited word");
+
+        note.setVersion(8);
+        assertThat(noteRevisionService.createRevision(note, "A long enough note body", true).isSnapshot()).isTrue();
+
+        note.setVersion(9);
+        assertThat(noteRevisionService.createRevision(note, "A long enough note body", false).isSnapshot()).isTrue();
+
+        note.setContent("short");
+        NoteRevision rewrite = noteRevisionService.createRevision(note, "entirely different", true);
+        assertThat(rewrite.isSnapshot()).isTrue();
+        assertThat(rewrite.getData()).isEqualTo("short");
+    }
+
+    @Test
+    void recordRevisionShouldApplyCountRetentionOnSnapshots() {
+        note.setVersion(12);
+        note.setContent("content");
+        when(noteRevisionRepository.save(any(NoteRevision.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(noteRevisionRepository.findBaseSnapshot(7L, 1L, 3L)).thenReturn(Optional.of(0L));
+
+        noteRevisionService.recordRevision(note, "previous");
+
+        verify(noteRevisionRepository, never()).existsByNoteIdAndRevisionNumber(any(), anyLong());
+        verify(noteRevisionRepository).deleteByNoteIdAndRevisionNumberLessThan(7L, 0L);
+    }
+
+    // ------------------- REBUILD -------------------
+    @Test
+    void getRevisionShouldReplayDeltasFromBaseSnapshot() {
+        List<NoteRevision> chain = new ArrayList<>();
+        String previous = null;
+        String tail = ", how are you? This note is long enough for deltas to be smaller than the text.";
+        String[] contents = {"Hello", "Hello world" + tail, "Hello brave world" + tail, "Hello brave new world" + tail};
+        for (int i = 0; i < contents.length; i++) {
+            note.setVersion(SNAPSHOT_INTERVAL + i);
+            note.setContent(contents[i]);
+            chain.add(noteRevisionService.createRevision(note, previous, previous != null));
+            previous = contents[i];
+        }
+        assertThat(chain).extracting(NoteRevision::isSnapshot).containsExactly(true, true, false, false);
+
+        when(noteRevisionRepository.findBaseSnapshot(7L, 1L, 7L)).thenReturn(Optional.of(5L));
+        when(noteRevisionRepository.findByNoteIdAndRevisionNumberBetweenOrderByRevisionNumberAsc(7L, 5L, 7L))
+                .thenReturn(chain.subList(1, 4));
+
+        NoteRevisionDTO revision = noteRevisionService.getRevision(7L, 1L, 7L);
+
+        assertThat(revision.revision()).isEqualTo(7L);
+        assertThat(revision.content()).isEqualTo("Hello brave new world" + tail);
+    }
+
+    @Test
+    void getRevisionShouldThrowIfRevisionIsMissing() {
+        when(noteRevisionRepository.findBaseSnapshot(7L, 2L, 3L)).thenReturn(Optional.empty());
+
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class, () -> noteRevisionService.getRevision(7L, 2L, 3L));
+
+        assertThat(exception.getStatusCode().value()).isEqualTo(404);
+    }
+}
@@ -1,9 +1,18 @@
 package com.krypt.backend.service;
 
 import com.krypt.backend.dto.NoteDTO.NoteDTO;
+import com.krypt.backend.dto.NoteDTO.NotePatchDTO;
+import com.krypt.backend.dto.NoteDTO.TextEditDTO;
+import com.krypt.backend.dto.NoteDTO.NoteSearchPageDTO;
+import com.krypt.backend.dto.NoteDTO.NoteSummaryDTO;
+import com.krypt.backend.dto.NoteDTO.NoteSummaryPageDTO;
 import com.krypt.backend.model.Note;
+import com.krypt.backend.model.NoteTombstone;
 import com.krypt.backend.model.User;
 import com.krypt.backend.repository.NoteRepository;
+import com.krypt.backend.repository.NoteSearchHit;
+import com.krypt.backend.repository.NoteTagRepository;
+import com.krypt.backend.repository.NoteTombstoneRepository;
 import com.krypt.backend.repository.UserRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -12,6 +21,9 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Pageable;
+import org.springframework.web.server.ResponseStatusException;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -20,6 +32,8 @@ import java.util.Optional;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -28,6 +42,18 @@ public class NoteServiceTest {
     private NoteRepository noteRepository;
     @Mock
     private UserRepository userRepository;
+    @Mock
+    private NoteTombstoneRepository noteTombstoneRepository;
+    @Mock
+    private NoteRevisionService noteRevisionService;
+    @Mock
+    private StorageQuotaService storageQuotaService;
+    @Mock
+    private TagService tagService;
+    @Mock
+    private NoteTagRepository noteTagRepository;
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
 
     @InjectMocks
     private NoteService noteService;
@@ -53,11 +79,14 @@ public class NoteServiceTest {
         savedNote.setTitle(dto.getTitle());
         savedNote.setContent(dto.getContent());
 
+        when(userRepository.getReferenceById(1L)).thenReturn(user);
+        when(userRepository.findNoteChangeSeq(1L)).thenReturn(Optional.of(1L));
         when(noteRepository.save(any(Note.class))).thenReturn(savedNote);
 
-        Note result = noteService.createNote(user, dto);
+        Note result = noteService.createNote(1L, dto);
 
         verify(noteRepository).save(any(Note.class));
+        verify(noteRevisionService).recordRevision(savedNote, null);
         assertThat(result.getUser()).isEqualTo(user);
         assertThat(result.getTitle()).isEqualTo("Test title");
         assertThat(result.getContent()).isEqualTo("Test content");
@@ -73,9 +102,9 @@ public class NoteServiceTest {
         note.setContent("Some content");
         notes.add(note);
 
-        when(noteRepository.findByUserOrderByTitleAsc(user)).thenReturn(notes);
+        when(noteRepository.findByUserIdOrderByTitleAsc(1L)).thenReturn(notes);
 
-        List<Note> result = noteService.getUserNotes(user);
+        List<Note> result = noteService.getUserNotes(1L);
 
         verify(noteRepository, never()).save(any(Note.class));
         assertThat(result).hasSize(1);
@@ -84,7 +113,9 @@ public class NoteServiceTest {
 
     @Test
     void getUserNotesShouldReturnNewDefaultNoteIfNotExists() {
-        when(noteRepository.findByUserOrderByTitleAsc(user)).thenReturn(new ArrayList<>());
+        when(noteRepository.findByUserIdOrderByTitleAsc(1L)).thenReturn(new ArrayList<>());
+        when(userRepository.getReferenceById(1L)).thenReturn(user);
+        when(userRepository.findNoteChangeSeq(1L)).thenReturn(Optional.of(1L));
 
         Note defaultNote = new Note();
         defaultNote.setUser(user);
@@ -93,7 +124,7 @@ public class NoteServiceTest {
 
         when(noteRepository.save(any(Note.class))).thenReturn(defaultNote);
 
-        List<Note> result = noteService.getUserNotes(user);
+        List<Note> result = noteService.getUserNotes(1L);
 
         verify(noteRepository).save(any(Note.class));
         assertThat(result).hasSize(1);
@@ -101,6 +132,148 @@ public class NoteServiceTest {
         assertThat(result.get(0).getContent()).isEmpty();
     }
 
+    @Test
+    void getUserNoteSummariesShouldReturnNextCursorWhenMoreNotesExist() {
+        List<NoteSummaryDTO> rows = List.of(
+                new NoteSummaryDTO(1L, "A", null, null, 10, null),
+                new NoteSummaryDTO(2L, "B", null, null, 20, null),
+                new NoteSummaryDTO(3L, "C", null, null, 30, null));
+        when(noteRepository.findSummaries(eq(1L), eq(0), any(Pageable.class))).thenReturn(rows);
+
+        NoteSummaryPageDTO page = noteService.getUserNoteSummaries(1L, 2, null, false);
+
+        assertThat(page.items()).extracting(NoteSummaryDTO::getTitle).containsExactly("A", "B");
+        assertThat(page.nextCursor()).isNotNull();
+    }
+
+    @Test
+    void getUserNoteSummariesShouldContinueAfterCursor() {
+        String cursor = new NoteService.NoteCursor(2L, "B: second").encode();
+        when(noteRepository.findSummariesAfter(eq(1L), eq("B: second"), eq(2L), eq(NoteService.SNIPPET_LENGTH), any(Pageable.class)))
+                .thenReturn(List.of(new NoteSummaryDTO(3L, "C", null, null, 30, "snippet")));
+
+        NoteSummaryPageDTO page = noteService.getUserNoteSummaries(1L, 2, cursor, true);
+
+        assertThat(page.items()).extracting(NoteSummaryDTO::getId).containsExactly(3L);
+        assertThat(page.nextCursor()).isNull();
+    }
+
+    @Test
+    void getUserNoteSummariesShouldRejectMalformedCursor() {
+        assertThrows(ResponseStatusException.class, () -> noteService.getUserNoteSummaries(1L, 2, "%%%", false));
+    }
+
+    // ------------------- TAG FILTER -------------------
+    @Test
+    void getNoteSummariesByTagsShouldRequireEveryTagWhenMatchingAll() {
+        when(tagService.resolve(List.of("Urgent", "Projet"), false)).thenReturn(List.of(3L, 7L));
+        when(tagService.isKnown(any())).thenReturn(true);
+        when(noteRepository.findSummariesByTags(eq(1L), eq(List.of(3L, 7L)), eq(2L), eq(0), any(Pageable.class)))
+                .thenReturn(List.of(new NoteSummaryDTO(4L, "A", null, null, 10, null)));
+
+        NoteSummaryPageDTO page = noteService.getNoteSummariesByTags(1L, List.of("Urgent", "Projet"), true, 20, null, false);
+
+        assertThat(page.items()).extracting(NoteSummaryDTO::getId).containsExactly(4L);
+        assertThat(page.nextCursor()).isNull();
+    }
+
+    @Test
+    void getNoteSummariesByTagsShouldMatchAnyKnownTag() {
+        String cursor = new NoteService.NoteCursor(2L, "B").encode();
+        when(tagService.resolve(List.of("Urgent", "Missing"), false)).thenReturn(List.of(3L));
+        when(noteRepository.findSummariesByTagsAfter(eq(1L), eq(List.of(3L)), eq(1L), eq("B"), eq(2L), eq(0), any(Pageable.class)))
+                .thenReturn(List.of());
+
+        NoteSummaryPageDTO page = noteService.getNoteSummariesByTags(1L, List.of("Urgent", "Missing"), false, 20, cursor, false);
+
+        assertThat(page.items()).isEmpty();
+        verify(noteRepository).findSummariesByTagsAfter(eq(1L), eq(List.of(3L)), eq(1L), eq("B"), eq(2L), eq(0), any(Pageable.class));
+    }
+
+    @Test
+    void getNoteSummariesByTagsShouldNotQueryWhenARequiredTagIsUnknown() {
+        when(tagService.resolve(List.of("Urgent", "Missing"), false)).thenReturn(List.of(3L));
+        when(tagService.isKnown("Urgent")).thenReturn(true);
+        when(tagService.isKnown("Missing")).thenReturn(false);
+
+        NoteSummaryPageDTO page = noteService.getNoteSummariesByTags(1L, List.of("Urgent", "Missing"), true, 20, null, false);
+
+        assertThat(page.items()).isEmpty();
+        verifyNoInteractions(noteRepository);
+    }
+
+    @Test
+    void searchNotesShouldMapHitsAndDetectNextPage() {
+        NoteSearchHit first = mock(NoteSearchHit.class);
+        when(first.getId()).thenReturn(5L);
+        when(first.getRank()).thenReturn(0.8);
+        when(first.getSnippet()).thenReturn("a \u0001match\u0002");
+        NoteSearchHit second = mock(NoteSearchHit.class);
+        when(noteRepository.search(1L, "match", 2, 0L)).thenReturn(List.of(first, second));
+
+        NoteSearchPageDTO page = noteService.searchNotes(1L, " match ", 0, 1);
+
+        assertThat(page.items()).hasSize(1);
+        assertThat(page.items().get(0).id()).isEqualTo(5L);
+        assertThat(page.items().get(0).snippet()).isEqualTo("a <mark>match</mark>");
+        assertThat(page.hasMore()).isTrue();
+    }
+
+    @Test
+    void searchSnippetShouldEscapeNoteMarkup() {
+        NoteSearchHit hit = mock(NoteSearchHit.class);
+        when(hit.getSnippet()).thenReturn("<script>alert('x')</script> \u0001match\u0002 & <b>bold</b>");
+        when(noteRepository.search(1L, "match", 21, 0L)).thenReturn(List.of(hit));
+
+        NoteSearchPageDTO page = noteService.searchNotes(1L, "match", 0, 20);
+
+        assertThat(page.items().get(0).snippet())
+                .isEqualTo("&lt;script&gt;alert(&#39;x&#39;)&lt;/script&gt; <mark>match</mark> &amp; &lt;b&gt;bold&lt;/b&gt;");
+    }
+
+    @Test
+    void searchNotesShouldNotQueryForBlankInput() {
+        NoteSearchPageDTO page = noteService.searchNotes(1L, "  ", 0, 20);
+
+        assertThat(page.items()).isEmpty();
+        verifyNoInteractions(noteRepository);
+    }
+
+    // ------------------- DELTA SYNC -------------------
+    @Test
+    void getChangesShouldNotQueryNotesWhenClientIsUpToDate() {
+        when(userRepository.findNoteChangeSeq(1L)).thenReturn(Optional.of(12L));
+
+        NoteService.NoteChanges changes = noteService.getChanges(1L, 12L, 100);
+
+        assertThat(changes.updated()).isEmpty();
+        assertThat(changes.deleted()).isEmpty();
+        assertThat(changes.cursor()).isEqualTo(12L);
+        verifyNoInteractions(noteRepository, noteTombstoneRepository);
+    }
+
+    @Test
+    void getChangesShouldMergeUpdatesAndTombstonesInChangeOrder() {
+        Note third = new Note();
+        third.setId(3L);
+        third.setChangeSeq(6L);
+        Note fourth = new Note();
+        fourth.setId(4L);
+        fourth.setChangeSeq(8L);
+        when(userRepository.findNoteChangeSeq(1L)).thenReturn(Optional.of(9L));
+        when(noteRepository.findByUserIdAndChangeSeqGreaterThanOrderByChangeSeqAsc(eq(1L), eq(5L), any(Pageable.class)))
+                .thenReturn(List.of(third, fourth));
+        when(noteTombstoneRepository.findByUserIdAndChangeSeqGreaterThanOrderByChangeSeqAsc(eq(1L), eq(5L), any(Pageable.class)))
+                .thenReturn(List.of(new NoteTombstone(1L, 2L, 7L), new NoteTombstone(1L, 5L, 9L)));
+
+        NoteService.NoteChanges page = noteService.getChanges(1L, 5L, 2);
+
+        assertThat(page.updated()).containsExactly(third);
+        assertThat(page.deleted()).containsExactly(2L);
+        assertThat(page.cursor()).isEqualTo(7L);
+        assertThat(page.hasMore()).isTrue();
+    }
+
     // ------------------- UPDATE -------------------
     @Test
     void updateNoteShouldUpdateNote() {
@@ -114,25 +287,76 @@ public class NoteServiceTest {
         dto.setTitle("New title");
         dto.setContent("New content");
 
-        when(noteRepository.findById(1L)).thenReturn(Optional.of(note));
-        when(noteRepository.save(any(Note.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(noteRepository.findByIdAndUserId(1L, 1L)).thenReturn(Optional.of(note));
+        when(userRepository.findNoteChangeSeq(1L)).thenReturn(Optional.of(7L));
+        when(noteRepository.saveAndFlush(any(Note.class))).thenAnswer(invocation -> invocation.getArgument(0));
 
-        Note updatedNote = noteService.updateNote(1L, user, dto);
+        Note updatedNote = noteService.updateNote(1L, 1L, dto);
 
         assertThat(updatedNote.getTitle()).isEqualTo("New title");
         assertThat(updatedNote.getContent()).isEqualTo("New content");
-        verify(noteRepository).save(note);
+        assertThat(updatedNote.getChangeSeq()).isEqualTo(7L);
+        verify(userRepository).incrementNoteChangeSeq(1L, 0L, 0L);
+        verify(noteRepository).saveAndFlush(note);
+        verify(noteRevisionService).recordRevision(note, "Old content");
+        verify(eventPublisher).publishEvent(new NoteChangedEvent(1L, 1L, NoteChangedEvent.Type.UPDATED, 7L, 0L));
+    }
+
+    @Test
+    void patchNoteShouldApplyEditsToBaseVersion() {
+        Note note = new Note();
+        note.setId(1L);
+        note.setUser(user);
+        note.setTitle("Title");
+        note.setContent("Hello world");
+        note.setVersion(3L);
+
+        NotePatchDTO dto = new NotePatchDTO();
+        dto.setBaseVersion(3L);
+        dto.setEdits(List.of(new TextEditDTO(5, 6, " Krypt")));
+
+        when(noteRepository.findByIdAndUserId(1L, 1L)).thenReturn(Optional.of(note));
+        when(userRepository.findNoteChangeSeq(1L)).thenReturn(Optional.of(4L));
+        when(noteRepository.saveAndFlush(any(Note.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        Note patched = noteService.patchNote(1L, 1L, dto);
+
+        assertThat(patched.getContent()).isEqualTo("Hello Krypt");
+        assertThat(patched.getTitle()).isEqualTo("Title");
+        assertThat(patched.getChangeSeq()).isEqualTo(4L);
+        verify(noteRevisionService).recordRevision(note, "Hello world");
+    }
+
+    @Test
+    void patchNoteShouldRejectStaleBaseVersion() {
+        Note note = new Note();
+        note.setId(1L);
+        note.setUser(user);
+        note.setContent("Hello world");
+        note.setVersion(4L);
+
+        NotePatchDTO dto = new NotePatchDTO();
+        dto.setBaseVersion(3L);
+        dto.setEdits(List.of(new TextEditDTO(0, 0, "x")));
+
+        when(noteRepository.findByIdAndUserId(1L, 1L)).thenReturn(Optional.of(note));
+
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class, () -> noteService.patchNote(1L, 1L, dto));
+
+        assertThat(exception.getStatusCode().value()).isEqualTo(409);
+        verify(noteRepository, never()).saveAndFlush(any(Note.class));
+        verify(noteRevisionService, never()).recordRevision(any(Note.class), any());
     }
 
     @Test
     void updateNoteShouldThrowIfNoteNotFound() {
-        when(noteRepository.findById(1L)).thenReturn(Optional.empty());
+        when(noteRepository.findByIdAndUserId(1L, 1L)).thenReturn(Optional.empty());
 
         NoteDTO dto = new NoteDTO();
         dto.setTitle("New title");
         dto.setContent("New content");
 
-        assertThrows(RuntimeException.class, () -> noteService.updateNote(1L, user, dto));
+        assertThrows(RuntimeException.class, () -> noteService.updateNote(1L, 1L, dto));
     }
 
     // ------------------- DELETE -------------------
@@ -144,19 +368,29 @@ public class NoteServiceTest {
         Note note = new Note();
         note.setId(1L);
         note.setUser(user);
+        note.setTitle("T");
+        note.setContent("héllo");
 
-        when(noteRepository.findById(1L)).thenReturn(Optional.of(note));
+        when(noteRepository.findByIdAndUserId(1L, 1L)).thenReturn(Optional.of(note));
+        when(userRepository.findNoteChangeSeq(1L)).thenReturn(Optional.of(8L));
+        when(storageQuotaService.limitFor(1L, -7L)).thenReturn(Long.MAX_VALUE);
 
-        Note deletedNote = noteService.deleteNote(1L, user);
+        Note deletedNote = noteService.deleteNote(1L, 1L);
 
+        verify(userRepository).incrementNoteChangeSeq(1L, -7L, Long.MAX_VALUE);
         verify(noteRepository).delete(note);
+        verify(noteRevisionService).deleteRevisions(1L);
+        verify(noteTagRepository).deleteByNoteId(1L);
+        verify(eventPublisher).publishEvent(new NoteChangedEvent(1L, 1L, NoteChangedEvent.Type.DELETED, 8L, 0L));
+        verify(noteTombstoneRepository).save(argThat(tombstone ->
+                tombstone.getNoteId().equals(1L) && tombstone.getUserId().equals(1L) && tombstone.getChangeSeq() == 8L));
         assertThat(deletedNote).isEqualTo(note);
     }
 
     @Test
     void deleteNoteShouldThrowIfNoteNotFound() {
-        lenient().when(noteRepository.findById(1L)).thenReturn(Optional.empty());
+        lenient().when(noteRepository.findByIdAndUserId(1L, 1L)).thenReturn(Optional.empty());
 
-        assertThrows(RuntimeException.class, () -> noteService.deleteNote(1L, user));
+        assertThrows(RuntimeException.class, () -> noteService.deleteNote(1L, 1L));
     }
 }
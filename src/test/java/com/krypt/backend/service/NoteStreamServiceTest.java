@@ -0,0 +1,156 @@
+package com.krypt.backend.service;
+
+import com.krypt.backend.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class NoteStreamServiceTest {
+    @Mock
+    private UserRepository userRepository;
+
+    private SimpleMeterRegistry meterRegistry;
+    private NoteStreamService noteStreamService;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        noteStreamService = new NoteStreamService(userRepository, meterRegistry, 4, 2, Duration.ofMinutes(1));
+    }
+
+    @AfterEach
+    void tearDown() {
+        noteStreamService.shutdown();
+    }
+
+    @Test
+    void subscribeShouldLimitConnectionsPerUser() {
+        when(userRepository.findNoteChangeSeq(1L)).thenReturn(Optional.of(3L));
+        when(userRepository.findNoteChangeSeq(2L)).thenReturn(Optional.of(0L));
+
+        noteStreamService.subscribe(1L);
+        noteStreamService.subscribe(1L);
+        noteStreamService.subscribe(2L);
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class, () -> noteStreamService.subscribe(1L));
+
+        assertThat(exception.getStatusCode().value()).isEqualTo(429);
+        assertThat(noteStreamService.connectionCount()).isEqualTo(3);
+        assertThat(meterRegistry.get("krypt.notes.stream.connections").gauge().value()).isEqualTo(3.0);
+    }
+
+    @Test
+    void onNoteChangedShouldIgnoreUsersWithoutStreams() {
+        noteStreamService.onNoteChanged(new NoteChangedEvent(9L, 1L, NoteChangedEvent.Type.UPDATED, 4L, 1L));
+
+        assertThat(noteStreamService.connectionCount()).isZero();
+        assertThat(meterRegistry.get("krypt.notes.stream.overflows").counter().count()).isZero();
+    }
+
+    @Test
+    void overflowRacingHeartbeatsShouldStillResync() throws Exception {
+        RecordingEmitter emitter = new RecordingEmitter();
+        NoteStreamService.Subscriber subscriber = noteStreamService.new Subscriber(1L, emitter, 4);
+        Thread writer = Thread.ofVirtual().start(subscriber);
+        subscriber.offer(event(1));
+
+        // The writer is stuck sending the first event while the queue overflows and heartbeats refill it
+        Thread heartbeats = Thread.ofPlatform().start(() -> {
+            for (int i = 0; i < 10_000; i++) {
+                subscriber.heartbeat();
+            }
+        });
+        for (int i = 2; i < 10_000; i++) {
+            subscriber.offer(event(i));
+        }
+        heartbeats.join();
+        emitter.release.countDown();
+
+        assertThat(emitter.awaitSent("event:resync")).isTrue();
+        assertThat(meterRegistry.get("krypt.notes.stream.overflows").counter().count()).isEqualTo(1);
+        subscriber.close();
+        writer.join(Duration.ofSeconds(5));
+        assertThat(writer.isAlive()).isFalse();
+    }
+
+    @Test
+    void closeRacingProducersShouldStopTheWriter() throws Exception {
+        RecordingEmitter emitter = new RecordingEmitter();
+        emitter.release.countDown();
+        NoteStreamService.Subscriber subscriber = noteStreamService.new Subscriber(1L, emitter, 4);
+        Thread writer = Thread.ofVirtual().start(subscriber);
+        AtomicBoolean producing = new AtomicBoolean(true);
+        List<Thread> producers = new ArrayList<>();
+        for (int p = 0; p < 2; p++) {
+            producers.add(Thread.ofPlatform().start(() -> {
+                for (int i = 0; producing.get(); i++) {
+                    subscriber.offer(event(i));
+                    subscriber.heartbeat();
+                }
+            }));
+        }
+
+        Thread.sleep(50);
+        subscriber.close();
+        Thread.sleep(50);
+        producing.set(false);
+        for (Thread producer : producers) {
+            producer.join();
+        }
+
+        writer.join(Duration.ofSeconds(5));
+        assertThat(writer.isAlive()).isFalse();
+    }
+
+    private static NoteStreamService.StreamEvent event(long changeSeq) {
+        return new NoteStreamService.StreamEvent("note", changeSeq, "{}");
+    }
+
+    // Records what the writer sends, holding its first send until released
+    private static final class RecordingEmitter extends SseEmitter {
+        private final CountDownLatch release = new CountDownLatch(1);
+        private final List<String> sent = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException(e);
+            }
+            builder.build().forEach(part -> sent.add(String.valueOf(part.getData())));
+        }
+
+        boolean awaitSent(String text) throws InterruptedException {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (System.nanoTime() < deadline) {
+                if (sent.stream().anyMatch(part -> part.contains(text))) {
+                    return true;
+                }
+                Thread.sleep(10);
+            }
+            return false;
+        }
+    }
+}
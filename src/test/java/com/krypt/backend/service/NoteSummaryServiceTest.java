@@ -0,0 +1,109 @@
+package com.krypt.backend.service;
+
+import com.krypt.backend.dto.NoteDTO.NoteSummarizationDTO;
+import com.krypt.backend.model.Note;
+import com.krypt.backend.model.enums.RoleType;
+import com.krypt.backend.repository.NoteRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class NoteSummaryServiceTest {
+    private static final String CONTENT = "La migration a échoué hier soir. Nous relancerons la migration demain matin. Il pleut encore sur Paris.";
+
+    @Mock
+    private NoteRepository noteRepository;
+    @Mock
+    private AiQuotaService aiQuotaService;
+
+    private NoteSummaryService noteSummaryService;
+
+    @BeforeEach
+    void setUp() {
+        noteSummaryService = new NoteSummaryService(noteRepository, aiQuotaService, new SimpleMeterRegistry(), 1, 4, 100, Duration.ofHours(1));
+    }
+
+    @AfterEach
+    void tearDown() {
+        noteSummaryService.shutdown();
+    }
+
+    @Test
+    void sameContentShouldBeSummarisedAndChargedOncePerUser() {
+        when(noteRepository.findByIdAndUserId(1L, 7L)).thenReturn(Optional.of(note(1L, CONTENT)));
+        when(noteRepository.findByIdAndUserId(2L, 7L)).thenReturn(Optional.of(note(2L, CONTENT)));
+        when(noteRepository.findByIdAndUserId(3L, 8L)).thenReturn(Optional.of(note(3L, CONTENT)));
+
+        NoteSummarizationDTO first = noteSummaryService.summarize(1L, 7L, RoleType.STUDENT, 2);
+        NoteSummarizationDTO second = noteSummaryService.summarize(2L, 7L, RoleType.STUDENT, 2);
+        NoteSummarizationDTO otherUser = noteSummaryService.summarize(3L, 8L, RoleType.STUDENT, 2);
+
+        assertThat(first.cached()).isFalse();
+        assertThat(first.sentences()).hasSize(2);
+        assertThat(second.cached()).isTrue();
+        assertThat(second.sentences()).isEqualTo(first.sentences());
+        // Another user's entry is never reported, nor served
+        assertThat(otherUser.cached()).isFalse();
+        assertThat(otherUser.sentences()).isEqualTo(first.sentences());
+        verify(aiQuotaService, times(1)).consume(7L, RoleType.STUDENT, NoteSummaryService.FEATURE);
+        verify(aiQuotaService, times(1)).consume(8L, RoleType.STUDENT, NoteSummaryService.FEATURE);
+    }
+
+    @Test
+    void exhaustedQuotaShouldRefuseBeforeSummarising() {
+        when(noteRepository.findByIdAndUserId(1L, 7L)).thenReturn(Optional.of(note(1L, CONTENT)));
+        doThrow(new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS, "AI quota exceeded"))
+                .when(aiQuotaService).requireAvailable(7L, RoleType.STUDENT, NoteSummaryService.FEATURE);
+
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+                () -> noteSummaryService.summarize(1L, 7L, RoleType.STUDENT, 2));
+
+        assertThat(exception.getStatusCode().value()).isEqualTo(429);
+        verify(aiQuotaService, never()).consume(anyLong(), any(), anyString());
+    }
+
+    @Test
+    void summaryRefusedAtChargeShouldNotBeCached() {
+        when(noteRepository.findByIdAndUserId(1L, 7L)).thenReturn(Optional.of(note(1L, CONTENT)));
+        doThrow(new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS, "AI quota exceeded"))
+                .doNothing()
+                .when(aiQuotaService).consume(7L, RoleType.STUDENT, NoteSummaryService.FEATURE);
+
+        assertThat(assertThrows(ResponseStatusException.class, () -> noteSummaryService.summarize(1L, 7L, RoleType.STUDENT, 2))
+                .getStatusCode().value()).isEqualTo(429);
+        assertThat(noteSummaryService.summarize(1L, 7L, RoleType.STUDENT, 2).cached()).isFalse();
+    }
+
+    @Test
+    void missingNoteAndBadLengthShouldBeRefused() {
+        when(noteRepository.findByIdAndUserId(1L, 7L)).thenReturn(Optional.empty());
+
+        assertThat(assertThrows(ResponseStatusException.class, () -> noteSummaryService.summarize(1L, 7L, RoleType.STUDENT, 3))
+                .getStatusCode().value()).isEqualTo(404);
+        assertThat(assertThrows(ResponseStatusException.class, () -> noteSummaryService.summarize(1L, 7L, RoleType.STUDENT, 0))
+                .getStatusCode().value()).isEqualTo(400);
+        verifyNoInteractions(aiQuotaService);
+    }
+
+    private static Note note(Long id, String content) {
+        Note note = new Note();
+        note.setId(id);
+        note.setTitle("T");
+        note.setContent(content);
+        return note;
+    }
+}
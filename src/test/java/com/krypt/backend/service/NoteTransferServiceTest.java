@@ -0,0 +1,186 @@
+package com.krypt.backend.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.krypt.backend.model.Note;
+import com.krypt.backend.model.User;
+import com.krypt.backend.repository.NoteRepository;
+import com.krypt.backend.repository.UserRepository;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class NoteTransferServiceTest {
+    @Mock
+    private NoteRepository noteRepository;
+    @Mock
+    private UserRepository userRepository;
+    @Mock
+    private EntityManager entityManager;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+    @Mock
+    private StorageQuotaService storageQuotaService;
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+    @Captor
+    private ArgumentCaptor<List<Note>> batches;
+
+    private NoteTransferService noteTransferService;
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules().disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        noteTransferService = new NoteTransferService(noteRepository, userRepository, entityManager, objectMapper, transactionManager, storageQuotaService, eventPublisher);
+        user = new User();
+        user.setId(1L);
+    }
+
+    // ------------------- IMPORT -------------------
+    @Test
+    void importNdjsonShouldSaveNotesInBatchesWithConsecutiveChangeSeqs() throws IOException {
+        int count = NoteTransferService.BATCH_SIZE + 20;
+        StringBuilder ndjson = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            ndjson.append("{\"title\":\"Note ").append(i).append("\",\"content\":\"Body ").append(i).append("\"}\n");
+        }
+        when(userRepository.getReferenceById(1L)).thenReturn(user);
+        when(userRepository.findNoteChangeSeq(1L)).thenReturn(Optional.of(105L)).thenReturn(Optional.of(125L));
+
+        int imported = noteTransferService.importNdjson(1L, input(ndjson.toString()));
+
+        assertThat(imported).isEqualTo(count);
+        verify(userRepository).incrementNoteChangeSeqBy(eq(1L), eq((long) NoteTransferService.BATCH_SIZE), anyLong(), anyLong());
+        verify(userRepository).incrementNoteChangeSeqBy(eq(1L), eq(20L), anyLong(), anyLong());
+        verify(entityManager, times(2)).clear();
+        verify(eventPublisher).publishEvent(new NoteChangedEvent(1L, null, NoteChangedEvent.Type.IMPORTED, 125L, 0));
+
+        verify(noteRepository, times(2)).saveAll(batches.capture());
+        List<Note> first = batches.getAllValues().get(0);
+        List<Note> second = batches.getAllValues().get(1);
+        assertThat(first).hasSize(NoteTransferService.BATCH_SIZE);
+        assertThat(first.get(0).getChangeSeq()).isEqualTo(6L);
+        assertThat(first.get(99).getChangeSeq()).isEqualTo(105L);
+        assertThat(second).extracting(Note::getChangeSeq).first().isEqualTo(106L);
+        assertThat(second.get(19).getTitle()).isEqualTo("Note 119");
+        assertThat(second.get(19).getUser()).isEqualTo(user);
+    }
+
+    @Test
+    void importNdjsonShouldRejectInvalidLine() {
+        String ndjson = "{\"title\":\"Ok\",\"content\":\"\"}\n{not json}\n";
+
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+                () -> noteTransferService.importNdjson(1L, input(ndjson)));
+
+        assertThat(exception.getStatusCode().value()).isEqualTo(400);
+        verify(noteRepository, never()).saveAll(anyList());
+    }
+
+    @Test
+    void importMarkdownZipShouldUseFileNamesAsTitlesAndSkipOtherFiles() throws IOException {
+        ByteArrayOutputStream archive = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(archive)) {
+            addEntry(zip, "vault/Cours/Algèbre.md", "# Groupes");
+            addEntry(zip, "vault/image.png", "binary");
+            addEntry(zip, "__MACOSX/vault/._Algèbre.md", "junk");
+            addEntry(zip, "readme.txt", "Plain");
+        }
+        when(userRepository.getReferenceById(1L)).thenReturn(user);
+        when(userRepository.findNoteChangeSeq(1L)).thenReturn(Optional.of(2L));
+
+        int imported = noteTransferService.importMarkdownZip(1L, new ByteArrayInputStream(archive.toByteArray()));
+
+        assertThat(imported).isEqualTo(2);
+        verify(userRepository).incrementNoteChangeSeqBy(1L, 2L, 28L, 0L);
+        verify(noteRepository).saveAll(batches.capture());
+        assertThat(batches.getValue()).extracting(Note::getTitle).containsExactly("Algèbre", "readme");
+        assertThat(batches.getValue()).extracting(Note::getContent).containsExactly("# Groupes", "Plain");
+        assertThat(batches.getValue().get(0).getModificationDate()).isNotNull();
+    }
+
+    // ------------------- EXPORT -------------------
+    @Test
+    void exportNdjsonShouldWriteOneLinePerNoteAndDetachThem() throws IOException {
+        Note first = note(1L, "First", "a\nb");
+        Note second = note(2L, "Second", "c");
+        when(noteRepository.streamByUserIdOrderByIdAsc(1L)).thenReturn(Stream.of(first, second));
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        noteTransferService.exportNdjson(1L, output);
+
+        String[] lines = output.toString(StandardCharsets.UTF_8).split("\n");
+        assertThat(lines).hasSize(2);
+        assertThat(lines[0]).contains("\"title\":\"First\"", "\"content\":\"a\\nb\"", "\"creationDate\":\"2025-01-02T03:04:05\"");
+        verify(entityManager).detach(first);
+        verify(entityManager).detach(second);
+    }
+
+    @Test
+    void exportMarkdownZipShouldDeduplicateFileNames() throws IOException {
+        when(noteRepository.streamByUserIdOrderByIdAsc(1L))
+                .thenReturn(Stream.of(note(1L, "Todo", "one"), note(2L, "Todo", "two"), note(3L, "a/b", "three")));
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        noteTransferService.exportMarkdownZip(1L, output);
+
+        List<String> names = new ArrayList<>();
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(output.toByteArray()))) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                names.add(entry.getName());
+            }
+        }
+        assertThat(names).containsExactly("Todo.md", "Todo (2).md", "a_b.md");
+    }
+
+    private static ByteArrayInputStream input(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void addEntry(ZipOutputStream zip, String name, String content) throws IOException {
+        zip.putNextEntry(new ZipEntry(name));
+        zip.write(content.getBytes(StandardCharsets.UTF_8));
+        zip.closeEntry();
+    }
+
+    private static Note note(Long id, String title, String content) {
+        Note note = new Note();
+        note.setId(id);
+        note.setTitle(title);
+        note.setContent(content);
+        note.setCreationDate(LocalDateTime.of(2025, 1, 2, 3, 4, 5));
+        note.setModificationDate(LocalDateTime.of(2025, 1, 2, 3, 4, 5));
+        return note;
+    }
+}
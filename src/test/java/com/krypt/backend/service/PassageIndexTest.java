@@ -0,0 +1,118 @@
+package com.krypt.backend.service;
+
+import com.krypt.backend.dto.NoteDTO.PassageDTO;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PassageIndexTest {
+    private static final String BIOLOGY = """
+            # Biologie
+
+            La photosynthèse transforme la lumière en énergie chimique. Elle a lieu dans les chloroplastes des feuilles.
+            La chlorophylle absorbe surtout le rouge et le bleu.
+            """;
+    private static final String HISTORY = """
+            La Révolution française commence en 1789. Les états généraux sont convoqués par le roi.
+            La prise de la Bastille a lieu le 14 juillet.
+            """;
+    private static final String COOKING = """
+            - Faire fondre le beurre avec le chocolat.
+            - Ajouter les œufs un à un, puis la farine.
+            """;
+
+    private final HashingEmbeddingProvider embeddings = new HashingEmbeddingProvider(256);
+
+    @Test
+    void sentencesShouldBeGroupedIntoPassagesOfBoundedLength() {
+        String content = "Première phrase assez longue. ".repeat(10) + "x".repeat(90) + " " + "mot ".repeat(40);
+
+        List<String> passages = PassageIndex.passages(content, 80);
+
+        assertThat(passages).hasSizeGreaterThan(4).allSatisfy(passage -> assertThat(passage.length()).isLessThanOrEqualTo(90));
+        assertThat(passages.get(0)).isEqualTo("Première phrase assez longue. Première phrase assez longue.");
+        assertThat(String.join(" ", passages).replace(" ", "")).isEqualTo(content.replace(" ", ""));
+    }
+
+    @Test
+    void queryShouldRankThePassageSharingItsWordsFirst() {
+        PassageIndex index = index();
+
+        List<PassageDTO> passages = index.search("Où se trouve la chlorophylle des feuilles ?", 3);
+
+        assertThat(passages).isNotEmpty();
+        assertThat(passages.get(0).noteId()).isEqualTo(1L);
+        assertThat(passages.get(0).title()).isEqualTo("Biologie");
+        assertThat(passages.get(0).text()).contains("chlorophylle");
+        assertThat(index.search("bastille", 3).get(0).noteId()).isEqualTo(2L);
+        // Folded like the notes: accents and plurals do not matter
+        assertThat(index.search("OEUF", 3).get(0).noteId()).isEqualTo(3L);
+    }
+
+    @Test
+    void newerVersionShouldReplaceTheNotesPassagesAndOlderOnesBeIgnored() {
+        PassageIndex index = index();
+
+        assertThat(index.put(2L, 2, "Histoire", "Napoléon devient empereur en 1804 à Notre-Dame.")).isTrue();
+        assertThat(index.put(2L, 1, "Histoire", HISTORY)).isFalse();
+
+        assertThat(index.search("bastille", 5)).noneMatch(passage -> passage.noteId() == 2L);
+        assertThat(index.search("napoleon empereur", 5).get(0).text()).startsWith("Napoléon");
+        assertThat(index.isCurrent(2L, 2)).isTrue();
+    }
+
+    @Test
+    void deletedNoteShouldStayDeleted() {
+        PassageIndex index = index();
+
+        index.remove(1L);
+        // A write read before the deletion and applied after it
+        index.put(1L, 5, "Biologie", BIOLOGY);
+
+        assertThat(index.search("photosynthese chlorophylle", 5)).noneMatch(passage -> passage.noteId() == 1L);
+        assertThat(index.size()).isEqualTo(2);
+    }
+
+    @Test
+    void compactionShouldKeepTheLiveNotesSearchable() {
+        PassageIndex index = index();
+        String content = "Une phrase qui parle de géologie et de volcans. ".repeat(40);
+        for (int version = 1; version <= 100; version++) {
+            index.put(4L, version, "Géologie", content + "Version " + version + " du magma.");
+        }
+
+        assertThat(index.size()).isEqualTo(3 + PassageIndex.passages(content + "Version 100 du magma.", 600).size());
+        assertThat(index.search("volcan magma", 1).get(0).noteId()).isEqualTo(4L);
+        assertThat(index.search("bastille", 1).get(0).noteId()).isEqualTo(2L);
+        assertThat(index.offHeapBytes()).isLessThan(4096L * 256);
+    }
+
+    @Test
+    void embeddingsShouldBeDeterministicUnitVectors() {
+        float[] first = embeddings.embed("La photosynthèse dans les feuilles");
+        float[] same = new HashingEmbeddingProvider(256).embed("la photosynthese dans les feuille");
+        float[] other = embeddings.embed("La prise de la Bastille");
+
+        assertThat(first).containsExactly(same);
+        assertThat(dot(first, first)).isCloseTo(1.0, org.assertj.core.data.Offset.offset(1e-5));
+        assertThat(dot(first, other)).isLessThan(0.5);
+    }
+
+    private PassageIndex index() {
+        PassageIndex index = new PassageIndex(embeddings, 600);
+        index.put(1L, 0, "Biologie", BIOLOGY);
+        index.put(2L, 0, "Histoire", HISTORY);
+        index.put(3L, 0, "Gâteau", COOKING);
+        return index;
+    }
+
+    private static double dot(float[] a, float[] b) {
+        double sum = 0;
+        for (int k = 0; k < a.length; k++) {
+            sum += a[k] * b[k];
+        }
+        return sum;
+    }
+}
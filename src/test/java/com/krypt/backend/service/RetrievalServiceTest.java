@@ -0,0 +1,124 @@
+package com.krypt.backend.service;
+
+import com.krypt.backend.dto.NoteDTO.PassageDTO;
+import com.krypt.backend.model.Note;
+import com.krypt.backend.repository.NoteRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class RetrievalServiceTest {
+    @Mock
+    private NoteRepository noteRepository;
+    @Mock
+    private EntityManager entityManager;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private RetrievalService retrievalService;
+
+    @BeforeEach
+    void setUp() {
+        retrievalService = new RetrievalService(noteRepository, entityManager, new HashingEmbeddingProvider(64), transactionManager,
+                new SimpleMeterRegistry(), 600, 100, Duration.ofMinutes(30));
+    }
+
+    @AfterEach
+    void tearDown() {
+        retrievalService.shutdown();
+    }
+
+    @Test
+    void firstQueryShouldIndexTheUsersNotesOnce() {
+        when(noteRepository.streamByUserIdOrderByIdAsc(1L)).thenAnswer(invocation -> Stream.of(
+                note(1L, 0, "Biologie", "La chlorophylle absorbe la lumière du soleil."),
+                note(2L, 0, "Histoire", "La prise de la Bastille a lieu le 14 juillet 1789.")));
+
+        List<PassageDTO> first = retrievalService.search(1L, "chlorophylle", 5);
+        List<PassageDTO> second = retrievalService.search(1L, "bastille", 5);
+
+        assertThat(first.get(0).noteId()).isEqualTo(1L);
+        assertThat(second.get(0).noteId()).isEqualTo(2L);
+        verify(noteRepository, times(1)).streamByUserIdOrderByIdAsc(1L);
+        verify(entityManager, times(2)).detach(any(Note.class));
+    }
+
+    @Test
+    void updatedNoteShouldBeIndexedAgainInTheBackground() throws InterruptedException {
+        when(noteRepository.streamByUserIdOrderByIdAsc(1L)).thenAnswer(invocation -> Stream.of(
+                note(1L, 0, "Biologie", "La chlorophylle absorbe la lumière du soleil.")));
+        retrievalService.search(1L, "chlorophylle", 5);
+        when(noteRepository.findByIdAndUserId(1L, 1L)).thenReturn(Optional.of(
+                note(1L, 1, "Biologie", "Les mitochondries produisent l'énergie de la cellule.")));
+
+        retrievalService.onNoteChanged(new NoteChangedEvent(1L, 1L, NoteChangedEvent.Type.UPDATED, 2, 1));
+
+        List<PassageDTO> passages = List.of();
+        for (int i = 0; i < 100 && passages.isEmpty(); i++) {
+            Thread.sleep(10);
+            passages = retrievalService.search(1L, "mitochondrie", 5);
+        }
+        assertThat(passages).extracting(PassageDTO::text).containsExactly("Les mitochondries produisent l'énergie de la cellule.");
+        assertThat(retrievalService.index(1L).size()).isEqualTo(1);
+    }
+
+    @Test
+    void deletedNoteShouldLeaveTheIndexAtOnce() {
+        when(noteRepository.streamByUserIdOrderByIdAsc(1L)).thenAnswer(invocation -> Stream.of(
+                note(1L, 0, "Biologie", "La chlorophylle absorbe la lumière du soleil.")));
+        retrievalService.search(1L, "chlorophylle", 5);
+
+        retrievalService.onNoteChanged(new NoteChangedEvent(1L, 1L, NoteChangedEvent.Type.DELETED, 2, 0));
+
+        assertThat(retrievalService.search(1L, "chlorophylle", 5)).isEmpty();
+    }
+
+    @Test
+    void writesOfUsersWithoutAnIndexShouldBeSkippedAndImportsRebuildIt() {
+        retrievalService.onNoteChanged(new NoteChangedEvent(1L, 1L, NoteChangedEvent.Type.UPDATED, 2, 1));
+        verifyNoInteractions(noteRepository);
+
+        when(noteRepository.streamByUserIdOrderByIdAsc(1L)).thenAnswer(invocation -> Stream.of(
+                note(1L, 0, "Biologie", "La chlorophylle absorbe la lumière du soleil.")));
+        retrievalService.search(1L, "chlorophylle", 5);
+        retrievalService.onNoteChanged(new NoteChangedEvent(1L, null, NoteChangedEvent.Type.IMPORTED, 10, 0));
+        retrievalService.search(1L, "chlorophylle", 5);
+
+        verify(noteRepository, times(2)).streamByUserIdOrderByIdAsc(1L);
+        verify(noteRepository, never()).findByIdAndUserId(any(), any());
+    }
+
+    @Test
+    void invalidQueriesShouldBeRefused() {
+        assertThrows(ResponseStatusException.class, () -> retrievalService.search(1L, " ", 5));
+        assertThrows(ResponseStatusException.class, () -> retrievalService.search(1L, "x".repeat(RetrievalService.MAX_QUERY_CHARS + 1), 5));
+        assertThrows(ResponseStatusException.class, () -> retrievalService.search(1L, "chlorophylle", RetrievalService.MAX_LIMIT + 1));
+        verifyNoInteractions(noteRepository);
+    }
+
+    private static Note note(Long id, long version, String title, String content) {
+        Note note = new Note();
+        note.setId(id);
+        note.setVersion(version);
+        note.setTitle(title);
+        note.setContent(content);
+        return note;
+    }
+}
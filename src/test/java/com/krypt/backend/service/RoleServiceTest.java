@@ -0,0 +1,61 @@
+package com.krypt.backend.service;
+
+import com.krypt.backend.model.Role;
+import com.krypt.backend.model.enums.RoleType;
+import com.krypt.backend.repository.RoleRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class RoleServiceTest {
+    @Mock
+    private RoleRepository roleRepository;
+
+    private SimpleMeterRegistry meterRegistry;
+    private RoleService roleService;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        roleService = new RoleService(roleRepository, meterRegistry, Duration.ofMinutes(10));
+    }
+
+    @Test
+    void getRoleShouldReadRoleTableOnceForTypeAndIdLookups() {
+        Role student = role(1L, RoleType.STUDENT);
+        when(roleRepository.findAll()).thenReturn(List.of(student, role(2L, RoleType.PROFESSIONAL)));
+
+        assertThat(roleService.getRole(RoleType.STUDENT)).isSameAs(student);
+        assertThat(roleService.getRole(2L).getRoleType()).isEqualTo(RoleType.PROFESSIONAL);
+        assertThat(roleService.getRole(1L)).isSameAs(student);
+
+        verify(roleRepository, times(1)).findAll();
+        assertThat(meterRegistry.get("cache.gets").tag("cache", "roles").tag("result", "hit").functionCounter().count()).isEqualTo(2);
+    }
+
+    @Test
+    void getRoleShouldThrowIfRoleIsMissing() {
+        when(roleRepository.findAll()).thenReturn(List.of());
+
+        assertThatThrownBy(() -> roleService.getRole(RoleType.STUDENT))
+                .isInstanceOf(RuntimeException.class)
+                .hasMessageContaining("Role not found");
+    }
+
+    private static Role role(Long id, RoleType roleType) {
+        Role role = new Role(roleType, 5, 100, null, null, List.of());
+        role.setId(id);
+        return role;
+    }
+}
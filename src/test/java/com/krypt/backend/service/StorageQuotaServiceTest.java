@@ -0,0 +1,91 @@
+package com.krypt.backend.service;
+
+import com.krypt.backend.dto.UserDTO.QuotaDTO;
+import com.krypt.backend.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class StorageQuotaServiceTest {
+    @Mock
+    private UserRepository userRepository;
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private StorageQuotaService storageQuotaService;
+
+    @BeforeEach
+    void setUp() {
+        storageQuotaService = new StorageQuotaService(userRepository, jdbcTemplate, transactionManager,
+                new SimpleMeterRegistry(), Duration.ofMinutes(10), 2);
+    }
+
+    @Test
+    void sizeOfShouldMatchUtf8EncodedLength() {
+        String text = "Réunion 会議 😀 plain";
+
+        assertThat(StorageQuotaService.sizeOf(text, null)).isEqualTo(text.getBytes(StandardCharsets.UTF_8).length);
+        assertThat(StorageQuotaService.sizeOf("T", "abc")).isEqualTo(4);
+    }
+
+    @Test
+    void limitShouldOnlyBeLookedUpOnGrowthAndBeCached() {
+        when(userRepository.findStorageLimitGb(1L)).thenReturn(Optional.of(5));
+
+        assertThat(storageQuotaService.limitFor(1L, -10)).isEqualTo(Long.MAX_VALUE);
+        assertThat(storageQuotaService.limitFor(1L, 10)).isEqualTo(5L * 1024 * 1024 * 1024);
+        assertThat(storageQuotaService.limitFor(1L, 20)).isEqualTo(5L * 1024 * 1024 * 1024);
+
+        verify(userRepository, times(1)).findStorageLimitGb(1L);
+    }
+
+    @Test
+    void checkUpdatedShouldRefuseGrowthThatUpdatedNothing() {
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+                () -> storageQuotaService.checkUpdated(0, 10));
+
+        assertThat(exception.getStatusCode().value()).isEqualTo(507);
+        storageQuotaService.checkUpdated(0, -10);
+        storageQuotaService.checkUpdated(1, 10);
+    }
+
+    @Test
+    void getUsageShouldReportMissingLimitAsUnlimited() {
+        when(userRepository.findStorageUsedBytes(1L)).thenReturn(Optional.of(42L));
+        when(userRepository.findStorageLimitGb(1L)).thenReturn(Optional.empty());
+
+        assertThat(storageQuotaService.getUsage(1L)).isEqualTo(new QuotaDTO(42, -1));
+    }
+
+    @Test
+    void reconcileShouldWalkUsersInChunks() {
+        when(jdbcTemplate.queryForList(StorageQuotaService.LOCK_CHUNK_SQL, Long.class, 0L, 2)).thenReturn(List.of(1L, 4L));
+        when(jdbcTemplate.queryForList(StorageQuotaService.LOCK_CHUNK_SQL, Long.class, 4L, 2)).thenReturn(List.of(7L));
+        when(jdbcTemplate.queryForList(StorageQuotaService.LOCK_CHUNK_SQL, Long.class, 7L, 2)).thenReturn(List.of());
+
+        storageQuotaService.reconcile();
+
+        verify(jdbcTemplate).update(StorageQuotaService.RECONCILE_SQL, 1L, 4L);
+        verify(jdbcTemplate).update(StorageQuotaService.RECONCILE_SQL, 7L, 7L);
+        verify(jdbcTemplate, times(2)).update(eq(StorageQuotaService.RECONCILE_SQL), anyLong(), anyLong());
+    }
+}
@@ -0,0 +1,65 @@
+package com.krypt.backend.service;
+
+import com.krypt.backend.dto.NoteDTO.TagDTO;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TagMatcherTest {
+    private static final TagDTO TODO = new TagDTO(1L, "À faire");
+    private static final TagDTO MEETING = new TagDTO(2L, "Réunion");
+    private static final TagDTO IDEA = new TagDTO(3L, "Idée");
+    private static final TagDTO TASK = new TagDTO(4L, "Tâche");
+
+    private final TagMatcher matcher = new TagMatcher(List.of(TODO, MEETING, IDEA, TASK), Map.of(
+            "Réunion", List.of("meeting", "rendez-vous"),
+            "Tâche", List.of("task"),
+            "à faire", List.of("todo", "reste à faire")));
+
+    @Test
+    void wordsShouldFoldCaseAccentsLigaturesAndPlurals() {
+        assertThat(TagMatcher.words("Réunions ÉTÉ, cœur; Tâches-travaux"))
+                .containsExactly("reunion", "ete", "coeur", "tache", "travau");
+        assertThat(TagMatcher.words("REUNION")).isEqualTo(TagMatcher.words("réunion"));
+    }
+
+    @Test
+    void accentedLabelsShouldMatchWithOrWithoutAccents() {
+        assertThat(tags(matcher.suggest("", "Compte rendu de la reunion", 5, 0.5))).containsExactly(MEETING);
+        assertThat(tags(matcher.suggest("", "Nouvelle IDÉE", 5, 0.5))).containsExactly(IDEA);
+        assertThat(tags(matcher.suggest("", "Deux réunions cette semaine", 5, 0.5))).containsExactly(MEETING);
+    }
+
+    @Test
+    void phraseWordsShouldFollowEachOther() {
+        assertThat(tags(matcher.suggest("", "Ce qui reste à faire demain", 5, 0.5))).containsExactly(TODO);
+        assertThat(tags(matcher.suggest("", "à la fin, faire le point", 5, 0.5))).isEmpty();
+    }
+
+    @Test
+    void synonymsShouldCountForTheirTag() {
+        assertThat(tags(matcher.suggest("", "Weekly meeting then a rendez-vous", 5, 0.5))).containsExactly(MEETING);
+    }
+
+    @Test
+    void titleAndRepeatedPhrasesShouldRankHigher() {
+        List<TagMatcher.TagSuggestion> suggestions = matcher.suggest("Meeting", "One task, une idée, une autre idee", 5, 0.5);
+
+        assertThat(tags(suggestions)).containsExactly(MEETING, IDEA, TASK);
+        assertThat(suggestions.get(0).score()).isGreaterThan(suggestions.get(1).score());
+        assertThat(tags(matcher.suggest("Meeting", "One task, une idée, une autre idee", 1, 0.5))).containsExactly(MEETING);
+    }
+
+    @Test
+    void minScoreShouldDropWeakMatches() {
+        assertThat(matcher.suggest("", "a task", 5, 1.5)).isEmpty();
+        assertThat(matcher.suggest(null, null, 5, 0)).isEmpty();
+    }
+
+    private static List<TagDTO> tags(List<TagMatcher.TagSuggestion> suggestions) {
+        return suggestions.stream().map(TagMatcher.TagSuggestion::tag).toList();
+    }
+}
@@ -0,0 +1,98 @@
+package com.krypt.backend.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.krypt.backend.dto.NoteDTO.NoteTagsDTO;
+import com.krypt.backend.model.Tag;
+import com.krypt.backend.repository.NoteRepository;
+import com.krypt.backend.repository.NoteTagRepository;
+import com.krypt.backend.repository.TagRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class TagServiceTest {
+    @Mock
+    private TagRepository tagRepository;
+    @Mock
+    private NoteRepository noteRepository;
+    @Mock
+    private NoteTagRepository noteTagRepository;
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+    @Captor
+    private ArgumentCaptor<List<Object[]>> links;
+
+    private TagService tagService;
+
+    @BeforeEach
+    void setUp() {
+        tagService = new TagService(tagRepository, noteRepository, noteTagRepository, jdbcTemplate, new ObjectMapper(),
+                new SimpleMeterRegistry(), Duration.ofMinutes(10));
+        lenient().when(tagRepository.findAllByOrderByNameAsc()).thenReturn(List.of(tag(1L, "À faire"), tag(2L, "Urgent")));
+    }
+
+    @Test
+    void catalogShouldBeLoadedOnceWithAStableETag() {
+        TagService.TagCatalog catalog = tagService.getCatalog();
+
+        assertThat(new String(catalog.json(), StandardCharsets.UTF_8)).isEqualTo("[{\"id\":1,\"name\":\"À faire\"},{\"id\":2,\"name\":\"Urgent\"}]");
+        assertThat(catalog.etag()).startsWith("\"").endsWith("\"").hasSize(26);
+        assertThat(tagService.getCatalog()).isSameAs(catalog);
+        verify(tagRepository, times(1)).findAllByOrderByNameAsc();
+    }
+
+    @Test
+    void resolveShouldIgnoreCaseAndRejectUnknownTagsWhenStrict() {
+        assertThat(tagService.resolve(List.of("urgent", " À FAIRE ", "Urgent", "nope"), false)).containsExactly(2L, 1L);
+
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+                () -> tagService.resolve(List.of("urgent", "nope"), true));
+        assertThat(exception.getStatusCode().value()).isEqualTo(400);
+    }
+
+    @Test
+    void tagNotesShouldBatchOneLinkPerOwnedNoteAndTag() {
+        when(noteRepository.findOwnedIds(1L, List.of(10L, 11L, 99L))).thenReturn(List.of(10L, 11L));
+        when(jdbcTemplate.batchUpdate(eq(TagService.INSERT_SQL), anyList())).thenReturn(new int[]{1, 1, 0, -2});
+
+        int added = tagService.tagNotes(1L, new NoteTagsDTO(List.of(10L, 11L, 99L), List.of("Urgent", "À faire")));
+
+        assertThat(added).isEqualTo(2);
+        verify(jdbcTemplate).batchUpdate(eq(TagService.INSERT_SQL), links.capture());
+        assertThat(links.getValue()).hasSize(4)
+                .anySatisfy(args -> assertThat(args).containsExactly(10L, 2L, 1L))
+                .anySatisfy(args -> assertThat(args).containsExactly(11L, 1L, 1L));
+    }
+
+    @Test
+    void tagNotesShouldRejectTooManyNotes() {
+        List<Long> noteIds = java.util.stream.LongStream.range(0, TagService.MAX_NOTES + 1).boxed().toList();
+
+        assertThrows(ResponseStatusException.class, () -> tagService.tagNotes(1L, new NoteTagsDTO(noteIds, List.of("Urgent"))));
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    private static Tag tag(Long id, String name) {
+        Tag tag = new Tag(name);
+        tag.setId(id);
+        return tag;
+    }
+}
@@ -0,0 +1,122 @@
+package com.krypt.backend.service;
+
+import com.krypt.backend.dto.NoteDTO.TagDTO;
+import com.krypt.backend.model.Note;
+import com.krypt.backend.repository.NoteRepository;
+import com.krypt.backend.repository.NoteTagRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class TagSuggestionServiceTest {
+    private static final TagDTO MEETING = new TagDTO(1L, "Réunion");
+    private static final TagDTO TODO = new TagDTO(2L, "À faire");
+
+    @Mock
+    private NoteRepository noteRepository;
+    @Mock
+    private NoteTagRepository noteTagRepository;
+    @Mock
+    private TagService tagService;
+
+    private SimpleMeterRegistry meterRegistry;
+    private TagSuggestionService tagSuggestionService;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        tagSuggestionService = new TagSuggestionService(noteRepository, noteTagRepository, tagService, meterRegistry,
+                Duration.ofMillis(200), 5, 1.0, 100);
+        lenient().when(tagService.getCatalog()).thenReturn(
+                new TagService.TagCatalog(List.of(MEETING, TODO), Map.of(), Map.of(), new byte[0], "\"x\""));
+    }
+
+    @AfterEach
+    void tearDown() {
+        tagSuggestionService.shutdown();
+    }
+
+    @Test
+    void synonymsShouldBeReadFromTheClasspath() {
+        assertThat(TagSuggestionService.loadSynonyms().get("Réunion")).contains("meeting");
+    }
+
+    @Test
+    void burstOfUpdatesShouldBeScoredOnce() throws InterruptedException {
+        when(noteRepository.findByIdAndUserId(10L, 1L)).thenReturn(Optional.of(note(10L, "Réunion", "todo")));
+
+        for (int i = 0; i < 5; i++) {
+            tagSuggestionService.onNoteChanged(new NoteChangedEvent(1L, 10L, NoteChangedEvent.Type.UPDATED, i, i));
+        }
+        Thread.sleep(600);
+
+        verify(noteRepository, times(1)).findByIdAndUserId(10L, 1L);
+        assertThat(meterRegistry.get("krypt.tags.suggest").tag("result", "scored").counter().count()).isEqualTo(1);
+        assertThat(tagSuggestionService.getSuggestions(10L, 1L)).containsExactly(MEETING, TODO);
+        // Served from the cache, the note is not read again
+        verify(noteRepository, times(1)).findByIdAndUserId(10L, 1L);
+    }
+
+    @Test
+    void unchangedContentShouldNotBeScoredAgain() {
+        when(noteRepository.findByIdAndUserId(10L, 1L)).thenReturn(Optional.of(note(10L, "Réunion", "todo")));
+
+        tagSuggestionService.refresh(1L, 10L);
+        tagSuggestionService.refresh(1L, 10L);
+
+        assertThat(meterRegistry.get("krypt.tags.suggest").tag("result", "scored").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("krypt.tags.suggest").tag("result", "unchanged").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void editWithSameStringHashCodeShouldBeScoredAgain() {
+        assertThat("Aa todo".hashCode()).isEqualTo("BB todo".hashCode());
+        when(noteRepository.findByIdAndUserId(10L, 1L))
+                .thenReturn(Optional.of(note(10L, "Réunion", "Aa todo")))
+                .thenReturn(Optional.of(note(10L, "Réunion", "BB todo")));
+
+        tagSuggestionService.refresh(1L, 10L);
+        tagSuggestionService.refresh(1L, 10L);
+
+        assertThat(meterRegistry.get("krypt.tags.suggest").tag("result", "scored").counter().count()).isEqualTo(2);
+    }
+
+    @Test
+    void linkedTagsShouldBeLeftOut() {
+        when(noteRepository.findByIdAndUserId(10L, 1L)).thenReturn(Optional.of(note(10L, "Réunion", "todo")));
+        when(noteTagRepository.findTagIds(10L, 1L)).thenReturn(List.of(1L));
+
+        assertThat(tagSuggestionService.getSuggestions(10L, 1L)).containsExactly(TODO);
+    }
+
+    @Test
+    void suggestionsOfAnotherUsersNoteShouldNotBeServed() {
+        when(noteRepository.findByIdAndUserId(10L, 1L)).thenReturn(Optional.of(note(10L, "Réunion", "todo")));
+        tagSuggestionService.refresh(1L, 10L);
+
+        assertThrows(ResponseStatusException.class, () -> tagSuggestionService.getSuggestions(10L, 2L));
+    }
+
+    private static Note note(Long id, String title, String content) {
+        Note note = new Note();
+        note.setId(id);
+        note.setTitle(title);
+        note.setContent(content);
+        return note;
+    }
+}
@@ -0,0 +1,36 @@
+package com.krypt.backend.service;
+
+import com.krypt.backend.dto.NoteDTO.TextEditDTO;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TextDiffTest {
+
+    @Test
+    void diffShouldProduceSingleEditBetweenCommonPrefixAndSuffix() {
+        List<TextEditDTO> edits = TextDiff.diff("Hello world, this is Krypt", "Hello brave world, this is Krypt");
+
+        assertThat(edits).containsExactly(new TextEditDTO(6, 0, "brave "));
+    }
+
+    @Test
+    void diffShouldRoundTripThroughTextPatch() {
+        String[][] cases = {
+                {"", "new"}, {"old", ""}, {null, "text"}, {"aaaa", "aa"}, {"abcabc", "abXbc"}, {"same", "same"},
+                {"emoji 😀 end", "emoji 😁 end"}
+        };
+        for (String[] pair : cases) {
+            assertThat(TextPatch.apply(pair[0], TextDiff.diff(pair[0], pair[1]))).isEqualTo(pair[1]);
+        }
+    }
+
+    @Test
+    void diffShouldNotSplitSurrogatePairs() {
+        List<TextEditDTO> edits = TextDiff.diff("a😀b", "a😁b");
+
+        assertThat(edits).containsExactly(new TextEditDTO(1, 2, "😁"));
+    }
+}
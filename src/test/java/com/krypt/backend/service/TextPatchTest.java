@@ -0,0 +1,48 @@
+package com.krypt.backend.service;
+
+import com.krypt.backend.dto.NoteDTO.TextEditDTO;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class TextPatchTest {
+
+    @Test
+    void applyShouldInsertDeleteAndReplace() {
+        String base = "Hello world, this is Krypt";
+
+        String result = TextPatch.apply(base, List.of(
+                new TextEditDTO(0, 5, "Bonjour"),
+                new TextEditDTO(11, 0, "!"),
+                new TextEditDTO(13, 13, "")));
+
+        assertThat(result).isEqualTo("Bonjour world!, ");
+    }
+
+    @Test
+    void applyShouldReturnBaseWithoutEdits() {
+        assertThat(TextPatch.apply("unchanged", List.of())).isEqualTo("unchanged");
+        assertThat(TextPatch.apply(null, List.of(new TextEditDTO(0, 0, "new")))).isEqualTo("new");
+    }
+
+    @Test
+    void applyShouldRejectOverlappingEdits() {
+        assertThatThrownBy(() -> TextPatch.apply("abcdef", List.of(new TextEditDTO(2, 3, ""), new TextEditDTO(3, 0, "x"))))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void applyShouldRejectEditPastEnd() {
+        assertThatThrownBy(() -> TextPatch.apply("abc", List.of(new TextEditDTO(2, 5, ""))))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void applyShouldRejectDeleteLengthThatOverflows() {
+        assertThatThrownBy(() -> TextPatch.apply("abc", List.of(new TextEditDTO(1, Integer.MAX_VALUE, ""))))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,90 @@
+package com.krypt.backend.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+public class TextRankSummarizerTest {
+
+    @Test
+    void sentencesShouldSkipCodeTablesAndHeadingsAndStripMarkdown() {
+        String markdown = """
+                # Réunion de lundi
+                Le **budget** du projet est validé. Voir [le compte rendu](https://example.com) pour le détail !
+                ```java
+                System.out.println("Ceci n'est pas une phrase.");
+                ```
+                | Tâche | Responsable |
+                |---|---|
+                - [x] Envoyer le planning au client
+                1. Relire le rapport final
+                """;
+
+        assertThat(TextRankSummarizer.sentences(markdown)).containsExactly(
+                "Le budget du projet est validé.",
+                "Voir le compte rendu pour le détail !",
+                "Envoyer le planning au client",
+                "Relire le rapport final");
+    }
+
+    @Test
+    void linksShouldKeepTheirTextOnly() {
+        String markdown = "Voir [note] puis [le lien](https://example.com/a_b) et ![le schéma](schema.png) ici. "
+                + "Un [crochet sans lien reste tel quel. Puis [un](a) [deux](b) liens collés.";
+
+        assertThat(TextRankSummarizer.sentences(markdown)).containsExactly(
+                "Voir [note] puis le lien et le schéma ici.",
+                "Un [crochet sans lien reste tel quel.",
+                "Puis un deux liens collés.");
+    }
+
+    @Test
+    void bracketHeavyTextShouldBeSplitInLinearTime() {
+        // Every '[' used to search the rest of the paragraph again: seconds for a few hundred kilobytes
+        String markdown = "[a](".repeat(250_000);
+
+        assertTimeoutPreemptively(Duration.ofSeconds(2), () -> TextRankSummarizer.sentences(markdown));
+    }
+
+    @Test
+    void summaryShouldKeepTheMostCentralSentencesInDocumentOrder() {
+        String markdown = """
+                Le chat dort sur le canapé du salon.
+                La migration de la base de données a échoué pendant la livraison.
+                Nous relancerons la migration de la base après la correction du script.
+                Il pleut depuis ce matin sur toute la région.
+                La livraison attend la migration de la base de données.
+                """;
+
+        List<String> summary = TextRankSummarizer.summarize(markdown, 2);
+
+        assertThat(summary).containsExactly(
+                "La migration de la base de données a échoué pendant la livraison.",
+                "La livraison attend la migration de la base de données.");
+    }
+
+    @Test
+    void shortNotesShouldBeReturnedWhole() {
+        assertThat(TextRankSummarizer.summarize("Une seule phrase assez longue.", 3)).containsExactly("Une seule phrase assez longue.");
+        assertThat(TextRankSummarizer.summarize("", 3)).isEmpty();
+        assertThat(TextRankSummarizer.summarize(null, 3)).isEmpty();
+    }
+
+    @Test
+    void scoresShouldFormADistribution() {
+        double[] scores = TextRankSummarizer.rank(List.of(
+                "Alpha beta gamma delta.", "Gamma delta epsilon zeta.", "Completely unrelated words here.", "Beta gamma again today."));
+
+        double sum = 0;
+        for (double score : scores) {
+            sum += score;
+        }
+        assertThat(sum).isCloseTo(1.0, within(1e-6));
+        assertThat(scores[2]).isLessThan(scores[0]);
+    }
+}
@@ -3,21 +3,26 @@ package com.krypt.backend.service;
 import com.krypt.backend.config.JwtUtils;
 import com.krypt.backend.dto.UserDTO.AuthenticationDTO;
 import com.krypt.backend.dto.UserDTO.PasswordChangeDTO;
+import com.krypt.backend.dto.UserDTO.PatchUserDTO;
 import com.krypt.backend.dto.UserDTO.RegisterDTO;
+import com.krypt.backend.dto.UserDTO.UserDTO;
+import com.krypt.backend.model.Role;
 import com.krypt.backend.model.Token;
 import com.krypt.backend.model.User;
+import com.krypt.backend.model.enums.RoleType;
 import com.krypt.backend.repository.TokenRepository;
 import com.krypt.backend.repository.UserRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.crypto.password.PasswordEncoder;
 
+import java.time.Duration;
 import java.util.List;
 import java.util.Optional;
 
@@ -40,14 +45,19 @@ public class UserServiceTest {
     private EmailService emailService;
     @Mock
     private AuthenticationManager authenticationManager;
+    @Mock
+    private RoleService roleService;
+    @Mock
+    private EmailTemplates emailTemplates;
 
-    @InjectMocks
     private UserService userService;
 
     private RegisterDTO registerDTO;
 
     @BeforeEach
     void setup() {
+        userService = new UserService(userRepository, passwordEncoder, jwtUtils, authenticationManager, tokenRepository, emailService,
+                roleService, emailTemplates, new SimpleMeterRegistry(), 100, Duration.ofMinutes(10));
         registerDTO = new RegisterDTO();
         registerDTO.setEmail("test@example.com");
         registerDTO.setFirstName("Test");
@@ -59,13 +69,15 @@ public class UserServiceTest {
     @Test
     void registerShouldSaveUserAndSendEmail() {
         when(userRepository.findByEmail(registerDTO.getEmail())).thenReturn(Optional.empty());
+        when(roleService.getRole(RoleType.STUDENT)).thenReturn(new Role());
         when(passwordEncoder.encode("password")).thenReturn("encodedPassword");
+        when(emailTemplates.render(eq("verify-email"), any(), anyMap())).thenReturn(new EmailTemplates.RenderedEmail("Subject", "<p>Body</p>"));
 
         userService.register(registerDTO);
 
         verify(userRepository).save(any(User.class));
         verify(tokenRepository).save(any(Token.class));
-        verify(emailService).sendEmail(eq("test@example.com"), anyString(), anyString());
+        verify(emailService).queueEmail("test@example.com", "Subject", "<p>Body</p>");
     }
 
     @Test
@@ -78,7 +90,7 @@ public class UserServiceTest {
 
         verify(userRepository, never()).save(any());
         verify(tokenRepository, never()).save(any());
-        verify(emailService, never()).sendEmail(any(), any(), any());
+        verify(emailService, never()).queueEmail(any(), any(), any());
     }
 
     // ------------------- UPDATE -------------------
@@ -122,25 +134,54 @@ public class UserServiceTest {
 
     // ------------------- READ -------------------
     @Test
-    void authenticateUserShouldAuthenticateUserAndSaveToken() {
+    void authenticateUserShouldReturnJwtWithoutStoringIt() {
         AuthenticationDTO dto = new AuthenticationDTO();
         dto.setEmail("test@example.com");
         dto.setPassword("password");
 
         User user = new User();
+        user.setId(1L);
         user.setEmail("test@example.com");
+        Role role = new Role(RoleType.STUDENT, 5, 1000, null, null, List.of());
+        role.setId(3L);
+        user.setRole(role);
 
         Authentication auth = mock(Authentication.class);
         when(auth.getName()).thenReturn("test@example.com");
 
         when(authenticationManager.authenticate(any())).thenReturn(auth);
-        when(jwtUtils.generateToken(anyString(), any(), any(), any())).thenReturn("jwt-token");
+        when(roleService.getRole(3L)).thenReturn(role);
+        when(jwtUtils.generateToken(eq(1L), eq("test@example.com"), eq("STUDENT"), any(String[].class))).thenReturn("jwt-token");
         when(userRepository.findByEmail("test@example.com")).thenReturn(Optional.of(user));
-        when(tokenRepository.findAllByUser(user)).thenReturn(List.of());
 
         String jwt = userService.authenticateUser(dto);
 
         assertThat(jwt).isEqualTo("jwt-token");
-        verify(tokenRepository).save(any());
+        verify(tokenRepository, never()).save(any());
+    }
+
+    @Test
+    void getUserInfoByEmailShouldBeCachedUntilProfileIsPatched() {
+        Role role = new Role(RoleType.STUDENT, 5, 1000, null, null, List.of());
+        role.setId(3L);
+        User user = new User();
+        user.setEmail("test@example.com");
+        user.setFirstName("Test");
+        user.setRole(role);
+        when(userRepository.findByEmail("test@example.com")).thenReturn(Optional.of(user));
+        when(roleService.getRole(3L)).thenReturn(role);
+
+        UserDTO first = userService.getUserInfoByEmail("test@example.com").orElseThrow();
+        userService.getUserInfoByEmail("test@example.com");
+        verify(userRepository, times(1)).findByEmail("test@example.com");
+        assertThat(first.getRole().roleType()).isEqualTo(RoleType.STUDENT);
+
+        PatchUserDTO patch = new PatchUserDTO();
+        patch.setFirstName("Renamed");
+        userService.PatchUserInfoByEmail("test@example.com", patch);
+        UserDTO updated = userService.getUserInfoByEmail("test@example.com").orElseThrow();
+
+        assertThat(updated.getFirstName()).isEqualTo("Renamed");
+        verify(userRepository, times(3)).findByEmail("test@example.com");
     }
 }
@@ -0,0 +1,80 @@
+-- Full-text search benchmark: one tenant with 100k notes.
+-- Run against a database migrated by the application (db/migration):
+--   psql "$BENCH_DB" -v ON_ERROR_STOP=1 -f src/test/resources/benchmark/note-search-dataset.sql
+-- The dataset is rebuilt on every run; the timings at the end are the ones to compare.
+
+\set notes 100000
+
+DELETE FROM note_table WHERE user_id IN (SELECT user_id FROM user_table WHERE email = 'search-bench@example.com');
+DELETE FROM user_table WHERE email = 'search-bench@example.com';
+
+INSERT INTO user_table(user_id, last_name, first_name, email, password, role_id, creation_date, modification_date, email_verified)
+SELECT nextval('user_seq'), 'Bench', 'Search', 'search-bench@example.com', 'x', role_id, now()::text, now()::text, true
+FROM role_table WHERE role_type = 'PROFESSIONAL';
+
+-- Markdown-like notes of 50 to 400 words drawn from a mixed French/English vocabulary,
+-- with a few rare terms so that selective and unselective queries can both be measured
+WITH vocabulary AS (
+    SELECT ARRAY[
+        'projet', 'réunion', 'budget', 'planning', 'objectif', 'client', 'rapport', 'analyse', 'synthèse', 'examen',
+        'cours', 'chapitre', 'théorème', 'démonstration', 'exercice', 'lecture', 'recherche', 'mémoire', 'thèse', 'note',
+        'project', 'meeting', 'roadmap', 'release', 'feature', 'bug', 'deploy', 'database', 'index', 'query',
+        'search', 'latency', 'throughput', 'cache', 'memory', 'thread', 'kernel', 'network', 'storage', 'backup',
+        'the', 'and', 'with', 'for', 'from', 'le', 'la', 'les', 'des', 'pour',
+        'recette', 'voyage', 'budget', 'sport', 'santé', 'idée', 'tâche', 'rappel', 'agenda', 'priorité'
+    ] AS words
+)
+INSERT INTO note_table(note_id, user_id, title, content, creation_date, modification_date, change_seq, version)
+SELECT nextval('note_seq'), u.user_id,
+       'Note ' || g || ' ' || v.words[1 + (g % 60)],
+       '# ' || v.words[1 + (g % 37)] || E'\n\n' ||
+       (SELECT string_agg(v.words[1 + floor(random() * 60)::int], ' ')
+        FROM generate_series(1, 50 + (g % 350)) AS w(i)) ||
+       CASE WHEN g % 1000 = 0 THEN ' zeppelin' ELSE '' END,
+       now() - (g || ' minutes')::interval,
+       now() - (g || ' seconds')::interval,
+       g,
+       0
+FROM user_table u, vocabulary v, generate_series(1, :notes) AS g
+WHERE u.email = 'search-bench@example.com';
+
+UPDATE user_table SET note_change_seq = :notes WHERE email = 'search-bench@example.com';
+
+VACUUM ANALYZE note_table;
+
+SELECT count(*) AS notes, pg_size_pretty(pg_total_relation_size('note_table')) AS table_size,
+       pg_size_pretty(pg_relation_size('idx_note_search_vector')) AS gin_size
+FROM note_table WHERE user_id = (SELECT user_id FROM user_table WHERE email = 'search-bench@example.com');
+
+\timing on
+
+-- Same statement as NoteRepository.search, first page of 20
+PREPARE note_search(bigint, text, int, bigint) AS
+SELECT r.note_id AS id, r.title AS title, r.modification_date AS modificationDate, r.rank AS rank,
+       ts_headline('simple', coalesce(r.content, ''), r.query,
+                   'StartSel=<mark>, StopSel=</mark>, MaxFragments=2, MaxWords=25, MinWords=8') AS snippet
+FROM (
+    SELECT n.note_id, n.title, n.modification_date, n.content, q.query,
+           ts_rank_cd(n.search_vector, q.query) AS rank
+    FROM note_table n, websearch_to_tsquery('simple', $2) AS q(query)
+    WHERE n.user_id = $1 AND n.search_vector @@ q.query
+    ORDER BY rank DESC, n.note_id
+    LIMIT $3 OFFSET $4
+) r
+ORDER BY r.rank DESC, r.note_id;
+
+SELECT user_id AS bench_user FROM user_table WHERE email = 'search-bench@example.com' \gset
+
+-- Rare term (~100 matches)
+EXECUTE note_search(:bench_user, 'zeppelin', 21, 0);
+EXECUTE note_search(:bench_user, 'zeppelin', 21, 0);
+-- Two-term AND on mid-frequency words
+EXECUTE note_search(:bench_user, 'théorème démonstration', 21, 0);
+EXECUTE note_search(:bench_user, 'théorème démonstration', 21, 0);
+-- Phrase query
+EXECUTE note_search(:bench_user, '"database index"', 21, 0);
+-- Very common term, deep page: ranking cost dominates
+EXECUTE note_search(:bench_user, 'projet', 21, 0);
+EXECUTE note_search(:bench_user, 'projet', 21, 2000);
+
+EXPLAIN (ANALYZE, BUFFERS) EXECUTE note_search(:bench_user, 'théorème démonstration', 21, 0);